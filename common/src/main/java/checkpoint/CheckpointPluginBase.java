@@ -7,21 +7,32 @@ import checkpoint.i18n.Messages;
 import checkpoint.i18n.Messages.Lang;
 import checkpoint.listener.ChatInputListener;
 import checkpoint.listener.InventoryClickListener;
+import checkpoint.listener.PlayerDataListener;
 import checkpoint.listener.PlayerListener;
+import checkpoint.manager.CheckpointArena;
+import checkpoint.manager.CheckpointEvent;
 import checkpoint.manager.CheckpointManager;
-import checkpoint.storage.CheckpointStorage;
+import checkpoint.storage.BinaryCheckpointStore;
+import checkpoint.storage.BinarySnapshot;
+import checkpoint.storage.CheckpointStore;
+import checkpoint.storage.JournalCheckpointStore;
+import checkpoint.storage.LanguagePreferenceStore;
+import checkpoint.storage.LazyPlayerLoader;
+import checkpoint.storage.ShardedCheckpointStore;
+import checkpoint.storage.SqliteCheckpointStore;
+import checkpoint.storage.WriteBehindSaver;
+import checkpoint.storage.YamlCheckpointStore;
 import java.io.File;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.command.PluginCommand;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
@@ -34,32 +45,61 @@ import org.bukkit.plugin.java.JavaPlugin;
  */
 public abstract class CheckpointPluginBase extends JavaPlugin {
 
+    /** How often idle offline players are checked for eviction (1 minute). */
+    private static final long EVICTION_CHECK_MILLIS = 60_000L;
+
     private CheckpointManager checkpointManager;
     private MenuManager menuManager;
-    private File languagesFile;
-    private File checkpointsFile;
+    private CheckpointStore checkpointStore;
+    private WriteBehindSaver checkpointSaver;
+    private LazyPlayerLoader playerLoader;
+    private LanguagePreferenceStore languageStore;
 
     @Override
     public void onEnable() {
-        this.checkpointManager = new CheckpointManager();
+        saveDefaultConfig();
+        this.checkpointManager = new CheckpointManager(
+            getConfig().getBoolean("storage.off-heap", false) ? new CheckpointArena() : null);
         this.menuManager = new MenuManager(this, checkpointManager);
 
-        // Load persisted checkpoint data
-        this.checkpointsFile = new File(getDataFolder(), "checkpoints.yml");
-        CheckpointStorage.load(checkpointsFile, checkpointManager, getLogger());
+        // Load persisted checkpoint data from the configured backend
+        this.checkpointStore = createCheckpointStore();
+        if (getConfig().getBoolean("storage.lazy-load", false)) {
+            startLazyLoading();
+        }
+        if (playerLoader == null) {
+            checkpointStore.loadAll(checkpointManager);
+        }
+        // Language preferences go through the same backend and saver
+        this.languageStore = new LanguagePreferenceStore(
+            new File(getDataFolder(), "languages.yml"), checkpointStore, getLogger());
+        loadLanguagePreferences();
 
-        // Auto-save on every data change
-        checkpointManager.setOnDataChanged(() ->
-            CheckpointStorage.save(checkpointsFile, checkpointManager, getLogger())
-        );
+        BooleanSupplier saveTask = () -> {
+            boolean saved = checkpointStore.saveChanges(checkpointManager);
+            saved &= languageStore.saveIfDirty();
+            checkpointManager.moveToArena();
+            // Evict only after a save; players whose write failed stay dirty and are kept
+            if (playerLoader != null) playerLoader.evictIdle();
+            return saved;
+        };
+
+        // Coalesced background save on data change
+        long saveIntervalMillis = getConfig().getLong("storage.save-interval-seconds", 5L) * 1000L;
+        this.checkpointSaver = new WriteBehindSaver(saveTask, saveIntervalMillis, getLogger());
+        checkpointManager.events().subscribe(CheckpointEvent.class, event -> checkpointSaver.markDirty());
+        languageStore.setOnChanged(checkpointSaver::markDirty);
+        if (playerLoader != null) {
+            // Idle players are also evicted without new changes, on the saver thread between saves
+            checkpointSaver.schedulePeriodic(playerLoader::evictIdle, EVICTION_CHECK_MILLIS);
+            playerLoader.setOnChanged(checkpointSaver::markDirty);
+            Bukkit.getPluginManager().registerEvents(new PlayerDataListener(playerLoader), this);
+        }
 
         Bukkit.getPluginManager().registerEvents(new InventoryClickListener(menuManager), this);
         Bukkit.getPluginManager().registerEvents(new ChatInputListener(menuManager), this);
         Bukkit.getPluginManager().registerEvents(new PlayerListener(menuManager), this);
 
-        this.languagesFile = new File(getDataFolder(), "languages.yml");
-        loadLanguagePreferences();
-
         PluginCommand cpCommand = getCommand("cp");
         if (cpCommand != null) {
             CheckpointCommand executor = new CheckpointCommand(this, checkpointManager);
@@ -74,9 +114,24 @@ public abstract class CheckpointPluginBase extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        // Final save before shutdown
-        if (checkpointManager != null && checkpointsFile != null) {
-            CheckpointStorage.save(checkpointsFile, checkpointManager, getLogger());
+        // Final synchronous save before shutdown
+        if (playerLoader != null) {
+            playerLoader.shutdown();
+            this.playerLoader = null;
+        }
+        if (checkpointSaver != null) {
+            checkpointSaver.shutdown();
+            this.checkpointSaver = null;
+        }
+        if (checkpointStore != null && checkpointManager.hasDirtyPlayers()) {
+            // Changes the saver was never told about, or whose final flush failed, get one more try
+            if (!checkpointStore.saveChanges(checkpointManager)) {
+                getLogger().severe("Some checkpoint changes could not be saved before shutdown.");
+            }
+        }
+        if (checkpointStore != null) {
+            checkpointStore.close(checkpointManager);
+            this.checkpointStore = null;
         }
         menuManager.clearAll();
         Messages.clearAll();
@@ -84,6 +139,59 @@ public abstract class CheckpointPluginBase extends JavaPlugin {
         getLogger().info("Checkpoint plugin disabled.");
     }
 
+    // -----------------------------------------------------------------------
+    // Checkpoint storage
+    // -----------------------------------------------------------------------
+
+    /**
+     * Switches to on-demand loading if the backend supports it, loading the
+     * players that are already online (plugin reload).
+     */
+    private void startLazyLoading() {
+        if (!checkpointStore.openLazy(checkpointManager)) {
+            getLogger().warning("storage.lazy-load needs storage.type sharded or sqlite; loading everything.");
+            return;
+        }
+        long idleMillis = getConfig().getLong("storage.evict-idle-minutes", 30L) * 60_000L;
+        this.playerLoader = new LazyPlayerLoader(checkpointStore, checkpointManager,
+            task -> Bukkit.getScheduler().runTask(this, task), idleMillis, getLogger());
+        playerLoader.start();
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            playerLoader.loadBlocking(online.getUniqueId(), 5000L);
+            playerLoader.pin(online.getUniqueId());
+        }
+        menuManager.setPlayerLoader(playerLoader);
+    }
+
+    /** Creates the backend selected by {@code storage.type}. */
+    private CheckpointStore createCheckpointStore() {
+        File dataFolder = getDataFolder();
+        File yamlFile = new File(dataFolder, "checkpoints.yml");
+        File binaryFile = new File(dataFolder, "checkpoints.bin");
+        boolean mapped = getConfig().getBoolean("storage.memory-mapped-load", true)
+            && BinarySnapshot.isMappingPreferred();
+
+        String type = getConfig().getString("storage.type", "binary");
+        if ("yaml".equalsIgnoreCase(type)) {
+            return new YamlCheckpointStore(yamlFile, binaryFile, getLogger());
+        }
+        if ("journal".equalsIgnoreCase(type)) {
+            long thresholdBytes = getConfig().getLong("storage.journal-compact-threshold-kb", 256L) * 1024L;
+            return new JournalCheckpointStore(binaryFile, yamlFile,
+                new File(dataFolder, "checkpoints.journal"), thresholdBytes, mapped, getLogger());
+        }
+        if ("sharded".equalsIgnoreCase(type)) {
+            return new ShardedCheckpointStore(new File(dataFolder, "data"), yamlFile, binaryFile, getLogger());
+        }
+        if ("sqlite".equalsIgnoreCase(type)) {
+            return new SqliteCheckpointStore(new File(dataFolder, "checkpoints.db"), getLogger());
+        }
+        if (!"binary".equalsIgnoreCase(type)) {
+            getLogger().warning("Unknown storage.type '" + type + "'; using binary.");
+        }
+        return new BinaryCheckpointStore(binaryFile, yamlFile, mapped, getLogger());
+    }
+
     // -----------------------------------------------------------------------
     // Notification methods (called from CheckpointCommand)
     // -----------------------------------------------------------------------
@@ -92,10 +200,6 @@ public abstract class CheckpointPluginBase extends JavaPlugin {
         menuManager.notifyNamedCheckpointSet(player, rawName);
     }
 
-    public void notifyNamedCheckpointDeleted(UUID playerId, String rawName) {
-        menuManager.notifyNamedCheckpointDeleted(playerId, rawName);
-    }
-
     // -----------------------------------------------------------------------
     // Give utility items (called from CheckpointCommand)
     // -----------------------------------------------------------------------
@@ -151,7 +255,7 @@ public abstract class CheckpointPluginBase extends JavaPlugin {
 
     public void setPlayerLanguageManual(UUID playerId, Lang lang) {
         Messages.setLangManual(playerId, lang);
-        saveLanguagePreference(playerId, lang);
+        languageStore.set(playerId, lang.name());
     }
 
     // -----------------------------------------------------------------------
@@ -159,32 +263,9 @@ public abstract class CheckpointPluginBase extends JavaPlugin {
     // -----------------------------------------------------------------------
 
     private void loadLanguagePreferences() {
-        if (!languagesFile.exists()) return;
-        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(languagesFile);
-        for (String key : cfg.getKeys(false)) {
-            try {
-                UUID uuid = UUID.fromString(key);
-                String langStr = cfg.getString(key, "JP");
-                Lang lang = "EN".equalsIgnoreCase(langStr) ? Lang.EN : Lang.JP;
-                Messages.loadManualLang(uuid, lang);
-            } catch (IllegalArgumentException ignored) {
-                // Skip malformed keys
-            }
-        }
-    }
-
-    private void saveLanguagePreference(UUID playerId, Lang lang) {
-        if (!languagesFile.getParentFile().exists()) {
-            languagesFile.getParentFile().mkdirs();
-        }
-        YamlConfiguration cfg = languagesFile.exists()
-            ? YamlConfiguration.loadConfiguration(languagesFile)
-            : new YamlConfiguration();
-        cfg.set(playerId.toString(), lang.name());
-        try {
-            cfg.save(languagesFile);
-        } catch (IOException e) {
-            getLogger().warning("Failed to save language preferences: " + e.getMessage());
+        for (Map.Entry<UUID, String> entry : languageStore.load().entrySet()) {
+            Lang lang = "EN".equalsIgnoreCase(entry.getValue()) ? Lang.EN : Lang.JP;
+            Messages.loadManualLang(entry.getKey(), lang);
         }
     }
 
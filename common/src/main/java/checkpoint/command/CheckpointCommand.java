@@ -18,6 +18,9 @@ import org.bukkit.entity.Player;
 
 public class CheckpointCommand implements TabExecutor {
 
+    /** Most checkpoint names offered per tab completion. */
+    private static final int MAX_NAME_COMPLETIONS = 100;
+
     private final CheckpointPluginBase plugin;
     private final CheckpointManager checkpointManager;
     private final SubcommandHandlers handlers;
@@ -200,11 +203,7 @@ public class CheckpointCommand implements TabExecutor {
         }
 
         if (args.length >= 2 && ("delete".equalsIgnoreCase(args[0]) || "update".equalsIgnoreCase(args[0]))) {
-            List<String> names = new ArrayList<>(checkpointManager.getNamedCheckpointNames(player.getUniqueId()));
-            String entered = String.join(" ", Arrays.copyOfRange(args, 1, args.length)).toLowerCase(Locale.ROOT);
-            return names.stream()
-                .filter(candidate -> candidate.toLowerCase(Locale.ROOT).startsWith(entered))
-                .collect(Collectors.toList());
+            return completeNames(player, args);
         }
 
         if (args.length >= 2 && "set".equalsIgnoreCase(args[0])) {
@@ -225,11 +224,7 @@ public class CheckpointCommand implements TabExecutor {
                         .filter(opt -> opt.startsWith(last))
                         .collect(Collectors.toList());
                 }
-                List<String> names = new ArrayList<>(checkpointManager.getNamedCheckpointNames(player.getUniqueId()));
-                String entered = String.join(" ", Arrays.copyOfRange(args, 1, args.length)).toLowerCase(Locale.ROOT);
-                return names.stream()
-                    .filter(candidate -> candidate.toLowerCase(Locale.ROOT).startsWith(entered))
-                    .collect(Collectors.toList());
+                return completeNames(player, args);
             }
             return Collections.emptyList();
         }
@@ -242,15 +237,19 @@ public class CheckpointCommand implements TabExecutor {
                         .filter(opt -> opt.startsWith(last))
                         .collect(Collectors.toList());
                 }
-                List<String> names = new ArrayList<>(checkpointManager.getNamedCheckpointNames(player.getUniqueId()));
-                String entered = String.join(" ", Arrays.copyOfRange(args, 1, args.length)).toLowerCase(Locale.ROOT);
-                return names.stream()
-                    .filter(candidate -> candidate.toLowerCase(Locale.ROOT).startsWith(entered))
-                    .collect(Collectors.toList());
+                return completeNames(player, args);
             }
             return Collections.emptyList();
         }
 
         return Collections.emptyList();
     }
+
+    /** Checkpoint names starting with everything typed after the subcommand. */
+    private List<String> completeNames(Player player, String[] args) {
+        String entered = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        // Copied because the server may modify the completions it is given
+        return new ArrayList<>(checkpointManager.getNamedCheckpointNamesStartingWith(
+            player.getUniqueId(), entered, MAX_NAME_COMPLETIONS));
+    }
 }
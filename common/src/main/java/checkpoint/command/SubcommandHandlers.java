@@ -51,16 +51,17 @@ class SubcommandHandlers {
 
         boolean success;
         try {
-            success = checkpointManager.addNamedCheckpoint(playerId, name, checkpoint);
+            success = checkpointManager.batch(cm -> {
+                if (!cm.addNamedCheckpoint(playerId, name, checkpoint)) return false;
+                if (!description.isEmpty()) cm.setNamedCheckpointDescription(playerId, name, description);
+                return true;
+            });
         } catch (IllegalArgumentException ex) {
             player.sendMessage(ChatColor.RED + ex.getMessage());
             return;
         }
 
         if (success) {
-            if (!description.isEmpty()) {
-                checkpointManager.setNamedCheckpointDescription(playerId, name, description);
-            }
             player.sendMessage(ChatColor.GREEN + Messages.cmdSetSuccess(playerId, name));
             plugin.notifyNamedCheckpointSet(player, name);
         } else {
@@ -139,7 +140,6 @@ class SubcommandHandlers {
 
         if (removed) {
             player.sendMessage(ChatColor.GREEN + Messages.cmdDeleteSuccess(playerId, name));
-            plugin.notifyNamedCheckpointDeleted(playerId, name);
         } else {
             player.sendMessage(ChatColor.RED + Messages.cmdDeleteNotFound(playerId, name));
         }
@@ -96,7 +96,8 @@ class MenuClickHandler {
         String psQuery = mgr.playerSelectSearchQuery.get(viewerId);
         double px = player.getLocation().getX();
         double pz = player.getLocation().getZ();
-        List<UUID> playerList = mgr.getSortedFilteredPlayers(viewerId, psOrder, psQuery, px, pz);
+        String world = player.getWorld().getName();
+        List<UUID> playerList = mgr.getSortedFilteredPlayers(viewerId, psOrder, psQuery, world, px, pz);
         int totalPages = Math.max(1, (int) Math.ceil(playerList.size() / (double) ITEMS_PER_PAGE));
 
         if (rawSlot == SLOT_PREVIOUS && event.isLeftClick() && psPage > 0) {
@@ -185,9 +186,10 @@ class MenuClickHandler {
         String query = mgr.playerSearchQuery.get(playerId);
         double px = player.getLocation().getX();
         double pz = player.getLocation().getZ();
+        String world = player.getWorld().getName();
         ClearSortOrder csOrder = mgr.clearSortOrders.getOrDefault(playerId, ClearSortOrder.NONE);
         List<String> names = mgr.getSortedFilteredCheckpointNamesWithClearSort(
-            targetId, order, query, px, pz, csOrder);
+            targetId, order, query, world, px, pz, csOrder);
         int page = mgr.menuPages.getOrDefault(playerId, 0);
         int totalPages = Math.max(1, (int) Math.ceil(Math.max(1, names.size()) / (double) ITEMS_PER_PAGE));
 
@@ -1,13 +1,18 @@
 package checkpoint.gui;
 
 import checkpoint.compat.VersionCompat;
+import checkpoint.manager.CheckpointEvent;
 import checkpoint.manager.CheckpointManager;
 import checkpoint.model.ClearSortOrder;
 import checkpoint.model.PlayerSortOrder;
 import checkpoint.model.SortOrder;
+import checkpoint.storage.LazyPlayerLoader;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -63,6 +68,8 @@ public class MenuManager {
     // ---- Dependencies (package-private for handler access) ----------------
     final JavaPlugin          plugin;
     final CheckpointManager   checkpointManager;
+    /** Null unless storage.lazy-load is active. */
+    private LazyPlayerLoader  playerLoader;
 
     // ---- Handlers ---------------------------------------------------------
     private final MenuRenderer      renderer;
@@ -77,12 +84,18 @@ public class MenuManager {
         this.clickHandler = new MenuClickHandler(this);
         this.chatInputHandler = new ChatInputHandler(this);
         this.teleportHandler = new TeleportHandler(this);
+        checkpointManager.events().subscribe(CheckpointEvent.Removed.class, this::onNamedCheckpointRemoved);
+        checkpointManager.events().subscribe(CheckpointEvent.Renamed.class, this::onNamedCheckpointRenamed);
     }
 
     // -----------------------------------------------------------------------
     // Lifecycle
     // -----------------------------------------------------------------------
 
+    public void setPlayerLoader(LazyPlayerLoader playerLoader) {
+        this.playerLoader = playerLoader;
+    }
+
     public void clearAll() {
         menuPages.clear();
         lastSelections.clear();
@@ -145,12 +158,33 @@ public class MenuManager {
         }
     }
 
-    public void notifyNamedCheckpointDeleted(UUID playerId, String rawName) {
+    // -----------------------------------------------------------------------
+    // Checkpoint events (however the change was made)
+    // -----------------------------------------------------------------------
+
+    private void onNamedCheckpointRemoved(CheckpointEvent.Removed event) {
+        retargetNamed(event.playerId(), event.name(), null);
+    }
+
+    private void onNamedCheckpointRenamed(CheckpointEvent.Renamed event) {
+        retargetNamed(event.playerId(), event.oldName(), event.newName());
+    }
+
+    /**
+     * Points the player's last selection and any open operation menu on the
+     * player's checkpoint {@code name} at {@code newName}, or drops them if
+     * {@code newName} is null.
+     */
+    private void retargetNamed(UUID playerId, String name, String newName) {
         lastSelections.computeIfPresent(playerId, (id, selection) ->
-            selection.type() == SelectionType.NAMED && selection.identifier() != null
-                && selection.identifier().equalsIgnoreCase(rawName)
-                ? null
+            selection.type() == SelectionType.NAMED && name.equalsIgnoreCase(selection.identifier())
+                ? (newName != null ? new LastSelection(SelectionType.NAMED, newName) : null)
                 : selection);
+        for (UUID viewerId : pendingOperationCp.keySet()) {
+            if (!viewingPlayerId.getOrDefault(viewerId, viewerId).equals(playerId)) continue;
+            pendingOperationCp.computeIfPresent(viewerId, (id, cpName) ->
+                name.equalsIgnoreCase(cpName) ? newName : cpName);
+        }
     }
 
     // -----------------------------------------------------------------------
@@ -159,22 +193,22 @@ public class MenuManager {
 
     public void handleQuickCheckpointSave(Player player)                       { teleportHandler.handleQuickCheckpointSave(player); }
     public void handleCheckpointTeleport(Player player)                        { teleportHandler.handleCheckpointTeleport(player); }
-    public void executeTeleportToCp(Player v, UUID t, String n)                { teleportHandler.executeTeleportToCp(v, t, n); }
+    public void executeTeleportToCp(Player v, UUID t, String n)                { withPlayerData(v, t, () -> teleportHandler.executeTeleportToCp(v, t, n)); }
     void executeUpdateCp(Player viewer, String cpName)                         { teleportHandler.executeUpdateCp(viewer, cpName); }
     void executeDeleteCp(Player viewer, String cpName)                         { teleportHandler.executeDeleteCp(viewer, cpName); }
-    void executeCloneCp(Player viewer, UUID targetId, String cpName)           { teleportHandler.executeCloneCp(viewer, targetId, cpName); }
+    void executeCloneCp(Player viewer, UUID targetId, String cpName)           { withPlayerData(viewer, targetId, () -> teleportHandler.executeCloneCp(viewer, targetId, cpName)); }
 
     // -----------------------------------------------------------------------
     // Delegated to MenuRenderer
     // -----------------------------------------------------------------------
 
-    public void openCheckpointMenu(Player viewer, int page)                    { renderer.openCheckpointMenu(viewer, page); }
-    public void openCheckpointMenuFor(Player viewer, int page, UUID targetId)  { renderer.openCheckpointMenuFor(viewer, page, targetId); }
+    public void openCheckpointMenu(Player viewer, int page)                    { withPlayerData(viewer, viewedPlayer(viewer), () -> renderer.openCheckpointMenu(viewer, page)); }
+    public void openCheckpointMenuFor(Player viewer, int page, UUID targetId)  { withPlayerData(viewer, targetId, () -> renderer.openCheckpointMenuFor(viewer, page, targetId)); }
     public void openSortMenu(Player player)                                    { renderer.openSortMenu(player); }
-    public void openPlayerSelectMenu(Player viewer)                            { renderer.openPlayerSelectMenu(viewer); }
+    public void openPlayerSelectMenu(Player viewer)                            { openPlayerSelectMenu(viewer, renderer.playerSelectList(viewer)); }
     public void openPlayerSortMenu(Player player)                              { renderer.openPlayerSortMenu(player); }
     public void openClearSortMenu(Player player)                               { renderer.openClearSortMenu(player); }
-    public void openCpOperationMenu(Player viewer, String cpName, UUID target) { renderer.openCpOperationMenu(viewer, cpName, target); }
+    public void openCpOperationMenu(Player viewer, String cpName, UUID target) { withPlayerData(viewer, target, () -> renderer.openCpOperationMenu(viewer, cpName, target)); }
 
     // -----------------------------------------------------------------------
     // Delegated to MenuClickHandler
@@ -223,29 +257,9 @@ public class MenuManager {
 
     List<String> getSortedFilteredCheckpointNamesWithClearSort(
             UUID targetId, SortOrder order, String query,
-            double px, double pz, ClearSortOrder csOrder) {
-        List<String> base = checkpointManager.getSortedFilteredCheckpointNames(
-            targetId, order, query, px, pz);
-        if (csOrder == ClearSortOrder.NONE) return base;
-
-        List<String> clearedList = new ArrayList<>();
-        List<String> unclearedList = new ArrayList<>();
-        for (String name : base) {
-            if (checkpointManager.isCleared(targetId, name)) {
-                clearedList.add(name);
-            } else {
-                unclearedList.add(name);
-            }
-        }
-        List<String> result = new ArrayList<>(base.size());
-        if (csOrder == ClearSortOrder.CLEARED_FIRST) {
-            result.addAll(clearedList);
-            result.addAll(unclearedList);
-        } else {
-            result.addAll(unclearedList);
-            result.addAll(clearedList);
-        }
-        return result;
+            String world, double px, double pz, ClearSortOrder csOrder) {
+        return checkpointManager.getSortedFilteredCheckpointNames(
+            targetId, order, query, world, px, pz, csOrder);
     }
 
     // -----------------------------------------------------------------------
@@ -253,8 +267,8 @@ public class MenuManager {
     // -----------------------------------------------------------------------
 
     List<UUID> getSortedFilteredPlayers(UUID viewerId, PlayerSortOrder order,
-            String query, double px, double pz) {
-        Set<UUID> allPlayers = checkpointManager.getAllPlayersWithData();
+            String query, String world, double px, double pz) {
+        Set<UUID> allPlayers = listedPlayers();
         List<UUID> players = new ArrayList<>(allPlayers);
 
         if (query != null && !query.trim().isEmpty()) {
@@ -265,38 +279,48 @@ public class MenuManager {
             });
         }
 
+        // Players not loaded yet rank as having no data, so ties fall back to the name
+        Comparator<UUID> byName = Comparator.comparing(
+            (UUID uuid) -> {
+                String n = Bukkit.getOfflinePlayer(uuid).getName();
+                return n != null ? n : "";
+            }, String.CASE_INSENSITIVE_ORDER);
+
+        if (order == PlayerSortOrder.DISTANCE_ASC) {
+            // Served nearest first from the server-wide index; only a search query or unloaded players read it all
+            List<UUID> byDistance = checkpointManager.getPlayersByNearestCheckpoint(world, px, pz);
+            if (players.size() == byDistance.size() && players.size() == allPlayers.size()) return byDistance;
+            Set<UUID> matching = new HashSet<>(players);
+            List<UUID> filtered = new ArrayList<>(players.size());
+            for (UUID uuid : byDistance) {
+                if (matching.remove(uuid)) filtered.add(uuid);
+            }
+            List<UUID> unloaded = new ArrayList<>(matching);
+            unloaded.sort(byName);
+            filtered.addAll(unloaded);
+            return filtered;
+        }
+
         Comparator<UUID> comparator;
         if (order == PlayerSortOrder.NAME_DESC) {
-            Comparator<UUID> c = Comparator.comparing(
-                (UUID uuid) -> {
-                    String n = Bukkit.getOfflinePlayer(uuid).getName();
-                    return n != null ? n : "";
-                }, String.CASE_INSENSITIVE_ORDER);
-            comparator = c.reversed();
+            comparator = byName.reversed();
         } else if (order == PlayerSortOrder.CLONED_BY_ME_DESC) {
             Comparator<UUID> c = Comparator.comparing(
                 (UUID uuid) -> checkpointManager.getCloneTime(viewerId, uuid).orElse(Instant.MIN));
-            comparator = c.reversed();
+            comparator = c.reversed().thenComparing(byName);
         } else if (order == PlayerSortOrder.CLONED_COUNT_DESC) {
             Comparator<UUID> c = Comparator.comparingInt(
-                (UUID uuid) -> checkpointManager.getClonedCount(uuid));
-            comparator = c.reversed();
-        } else if (order == PlayerSortOrder.DISTANCE_ASC) {
-            comparator = Comparator.comparingDouble(
-                (UUID uuid) -> checkpointManager.getNearestCpDistanceSq(uuid, px, pz));
+                (UUID uuid) -> checkpointManager.getPlayerStats(uuid).clonedCount());
+            comparator = c.reversed().thenComparing(byName);
         } else if (order == PlayerSortOrder.LAST_ACTIVITY_DESC) {
             Comparator<UUID> c = Comparator.comparing(
-                (UUID uuid) -> checkpointManager.getLastActivityTime(uuid).orElse(Instant.MIN));
-            comparator = c.reversed();
+                (UUID uuid) -> lastActivityOr(uuid, Instant.MIN));
+            comparator = c.reversed().thenComparing(byName);
         } else if (order == PlayerSortOrder.LAST_ACTIVITY_ASC) {
             comparator = Comparator.comparing(
-                (UUID uuid) -> checkpointManager.getLastActivityTime(uuid).orElse(Instant.MAX));
+                (UUID uuid) -> lastActivityOr(uuid, Instant.MAX)).thenComparing(byName);
         } else {
-            comparator = Comparator.comparing(
-                (UUID uuid) -> {
-                    String n = Bukkit.getOfflinePlayer(uuid).getName();
-                    return n != null ? n : "";
-                }, String.CASE_INSENSITIVE_ORDER);
+            comparator = byName;
         }
 
         players.sort(comparator);
@@ -307,7 +331,63 @@ public class MenuManager {
     // Internal
     // -----------------------------------------------------------------------
 
+    private Instant lastActivityOr(UUID playerId, Instant fallback) {
+        Instant last = checkpointManager.getPlayerStats(playerId).lastActivity();
+        return last != null ? last : fallback;
+    }
+
     void markLastSelection(UUID playerId, SelectionType type, String identifier) {
         lastSelections.put(playerId, new LastSelection(type, identifier));
     }
+
+    private UUID viewedPlayer(Player viewer) {
+        UUID viewerId = viewer.getUniqueId();
+        return viewingPlayerId.getOrDefault(viewerId, viewerId);
+    }
+
+    /**
+     * Opens the player select menu once the players on its current page are
+     * in memory. Only those are loaded: the list itself comes from
+     * {@link #listedPlayers()}, and the player picked from it is loaded when
+     * their menu opens.
+     */
+    private void openPlayerSelectMenu(Player viewer, List<UUID> playerList) {
+        withPlayerData(viewer, renderer.playerSelectPage(viewer.getUniqueId(), playerList),
+            () -> renderer.openPlayerSelectMenu(viewer, playerList));
+    }
+
+    /**
+     * Players the select menu lists: those with named checkpoints in memory
+     * and, with lazy loading, every stored player not loaded yet. A stored
+     * player without named checkpoints drops out once something loads them.
+     */
+    private Set<UUID> listedPlayers() {
+        Set<UUID> withData = checkpointManager.getAllPlayersWithData();
+        if (playerLoader == null) return withData;
+        Set<UUID> listed = new HashSet<>(withData);
+        for (UUID playerId : playerLoader.getKnownPlayers()) {
+            if (!playerLoader.isLoaded(playerId)) listed.add(playerId);
+        }
+        return listed;
+    }
+
+    private void withPlayerData(Player viewer, UUID playerId, Runnable task) {
+        withPlayerData(viewer, Collections.singleton(playerId), task);
+    }
+
+    /**
+     * Runs a menu action once the players it reads are in memory. Without lazy
+     * loading, or when they are already loaded, it runs right away; otherwise
+     * it runs on the main thread after the background load, if the viewer is
+     * still online.
+     */
+    private void withPlayerData(Player viewer, Collection<UUID> playerIds, Runnable task) {
+        if (playerLoader == null) {
+            task.run();
+            return;
+        }
+        playerLoader.ensureLoaded(playerIds, () -> {
+            if (viewer.isOnline()) task.run();
+        });
+    }
 }
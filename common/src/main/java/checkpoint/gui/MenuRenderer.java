@@ -5,6 +5,7 @@ import checkpoint.i18n.Messages;
 import checkpoint.model.Checkpoint;
 import checkpoint.model.ClearSortOrder;
 import checkpoint.model.PlayerSortOrder;
+import checkpoint.model.PlayerStats;
 import checkpoint.model.SortOrder;
 import java.util.List;
 import java.util.Optional;
@@ -49,10 +50,11 @@ class MenuRenderer {
         String query = mgr.playerSearchQuery.get(viewerId);
         double px = viewer.getLocation().getX();
         double pz = viewer.getLocation().getZ();
+        String world = viewer.getWorld().getName();
 
         ClearSortOrder csOrder = mgr.clearSortOrders.getOrDefault(viewerId, ClearSortOrder.NONE);
         List<String> names = mgr.getSortedFilteredCheckpointNamesWithClearSort(
-            targetId, order, query, px, pz, csOrder);
+            targetId, order, query, world, px, pz, csOrder);
 
         int totalPages = Math.max(1, (int) Math.ceil(Math.max(1, names.size()) / (double) ITEMS_PER_PAGE));
         int page = Math.max(0, Math.min(requestedPage, totalPages - 1));
@@ -164,20 +166,38 @@ class MenuRenderer {
     // Player select menu
     // -----------------------------------------------------------------------
 
-    void openPlayerSelectMenu(Player viewer) {
+    /** The players of the viewer's player select menu, searched and sorted as they chose. */
+    List<UUID> playerSelectList(Player viewer) {
+        UUID viewerId = viewer.getUniqueId();
+        PlayerSortOrder psOrder = mgr.playerSelectSortOrders.getOrDefault(viewerId, PlayerSortOrder.NAME_ASC);
+        String psQuery = mgr.playerSelectSearchQuery.get(viewerId);
+        return mgr.getSortedFilteredPlayers(viewerId, psOrder, psQuery, viewer.getWorld().getName(),
+            viewer.getLocation().getX(), viewer.getLocation().getZ());
+    }
+
+    /** The part of {@code playerList} shown on the viewer's current page. */
+    List<UUID> playerSelectPage(UUID viewerId, List<UUID> playerList) {
+        int start = playerSelectPageIndex(viewerId, playerList) * ITEMS_PER_PAGE;
+        return playerList.subList(start, Math.min(start + ITEMS_PER_PAGE, playerList.size()));
+    }
+
+    private int playerSelectPageIndex(UUID viewerId, List<UUID> playerList) {
+        int totalPages = Math.max(1, (int) Math.ceil(playerList.size() / (double) ITEMS_PER_PAGE));
+        return Math.max(0, Math.min(mgr.playerSelectPages.getOrDefault(viewerId, 0), totalPages - 1));
+    }
+
+    void openPlayerSelectMenu(Player viewer, List<UUID> playerList) {
         UUID viewerId = viewer.getUniqueId();
         VersionCompat compat = VersionCompat.get();
         PlayerSortOrder psOrder = mgr.playerSelectSortOrders.getOrDefault(viewerId, PlayerSortOrder.NAME_ASC);
         String psQuery = mgr.playerSelectSearchQuery.get(viewerId);
         double px = viewer.getLocation().getX();
         double pz = viewer.getLocation().getZ();
+        String world = viewer.getWorld().getName();
 
-        List<UUID> playerList = mgr.getSortedFilteredPlayers(viewerId, psOrder, psQuery, px, pz);
-
-        int psPage = mgr.playerSelectPages.getOrDefault(viewerId, 0);
         int totalItems = playerList.size();
         int totalPages = Math.max(1, (int) Math.ceil(totalItems / (double) ITEMS_PER_PAGE));
-        psPage = Math.max(0, Math.min(psPage, totalPages - 1));
+        int psPage = playerSelectPageIndex(viewerId, playerList);
         mgr.playerSelectPages.put(viewerId, psPage);
 
         Inventory inv = Bukkit.createInventory(viewer, GUI_SIZE,
@@ -207,17 +227,16 @@ class MenuRenderer {
                     OfflinePlayer target = Bukkit.getOfflinePlayer(targetId);
                     boolean isSelf = targetId.equals(viewerId);
                     boolean isViewing = targetId.equals(currentTarget);
-                    int cpCount = mgr.checkpointManager.getNamedCheckpointNames(targetId).size();
+                    PlayerStats stats = mgr.checkpointManager.getPlayerStats(targetId);
                     String lastCloneStr = mgr.checkpointManager.getCloneTime(viewerId, targetId)
                         .map(ItemFactory::formatInstant).orElse(null);
-                    int totalClonedCount = mgr.checkpointManager.getClonedCount(targetId);
-                    double nearestDist = Math.sqrt(mgr.checkpointManager.getNearestCpDistanceSq(targetId, px, pz));
-                    String lastActivityStr = mgr.checkpointManager.getLastActivityTime(targetId)
-                        .map(ItemFactory::formatInstant).orElse(null);
+                    double nearestDist = Math.sqrt(mgr.checkpointManager.getNearestCpDistanceSq(targetId, world, px, pz));
+                    String lastActivityStr = stats.lastActivity() != null
+                        ? ItemFactory.formatInstant(stats.lastActivity()) : null;
 
                     inv.setItem(slot, PlayerItemFactory.createPlayerSelectHead(
-                        viewerId, target, isSelf, isViewing, cpCount, lastCloneStr,
-                        totalClonedCount, nearestDist, lastActivityStr));
+                        viewerId, target, isSelf, isViewing, stats.namedCount(), lastCloneStr,
+                        stats.clonedCount(), nearestDist, lastActivityStr));
                 }
                 itemIndex++;
             }
@@ -154,7 +154,6 @@ class TeleportHandler {
     void executeDeleteCp(Player viewer, String cpName) {
         UUID viewerId = viewer.getUniqueId();
         boolean success = mgr.checkpointManager.removeNamedCheckpoint(viewerId, cpName);
-        mgr.notifyNamedCheckpointDeleted(viewerId, cpName);
         viewer.closeInventory();
         if (success) {
             viewer.sendMessage(ChatColor.GREEN + Messages.cpDeleteSuccess(viewerId, cpName));
@@ -177,10 +176,13 @@ class TeleportHandler {
         Checkpoint cloned = new Checkpoint(src.worldName(),
             src.x(), src.y(), src.z(), src.yaw(), src.pitch(),
             Instant.now(), Instant.now(), src.description());
-        boolean success = mgr.checkpointManager.addNamedCheckpoint(viewerId, cpName, cloned);
+        boolean success = mgr.checkpointManager.batch(cm -> {
+            if (!cm.addNamedCheckpoint(viewerId, cpName, cloned)) return false;
+            cm.recordClone(viewerId, targetId);
+            return true;
+        });
         viewer.closeInventory();
         if (success) {
-            mgr.checkpointManager.recordClone(viewerId, targetId);
             viewer.sendMessage(ChatColor.GREEN + Messages.cpCloneSuccess(viewerId, cpName));
             viewer.playSound(viewer.getLocation(), VersionCompat.get().soundButtonClick(), 0.6f, 1.4f);
         } else {
@@ -0,0 +1,47 @@
+package checkpoint.listener;
+
+import checkpoint.storage.LazyPlayerLoader;
+import java.util.UUID;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Loads a player's checkpoints when they log in and releases them for
+ * eviction when they leave. Registered only when {@code storage.lazy-load}
+ * is active.
+ */
+public class PlayerDataListener implements Listener {
+
+    /** Upper bound on how long a login waits for the store. */
+    private static final long LOGIN_LOAD_TIMEOUT_MILLIS = 5000L;
+
+    private final LazyPlayerLoader playerLoader;
+
+    public PlayerDataListener(LazyPlayerLoader playerLoader) {
+        this.playerLoader = playerLoader;
+    }
+
+    /** Runs off the main thread, so the login can simply wait for the read. */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        playerLoader.loadBlocking(event.getUniqueId(), LOGIN_LOAD_TIMEOUT_MILLIS);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        playerLoader.pin(playerId);
+        // Fallback if the pre-login load timed out; a no-op otherwise.
+        playerLoader.ensureLoaded(playerId, () -> {});
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        playerLoader.unpin(event.getPlayer().getUniqueId());
+    }
+}
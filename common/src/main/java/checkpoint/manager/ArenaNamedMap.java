@@ -0,0 +1,145 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * One player's named checkpoints as records in a {@link CheckpointArena}.
+ * Read-only; lookups go through an open-addressing table of record ids
+ * keyed by the name hash stored in each record, and values are decoded on
+ * every read. The records stay allocated as long as this map is reachable,
+ * so every read of a record ends with a read of {@link #alive}.
+ */
+final class ArenaNamedMap extends AbstractMap<String, Checkpoint> {
+
+    private final CheckpointArena arena;
+    private final int[] records;
+    /** Index into {@link #records} plus one, or 0 for a free slot. */
+    private final int[] table;
+    /**
+     * Always true. Read after decoding a record: a volatile read of this
+     * map's field cannot be dropped or moved ahead of the decode, so the map
+     * stays strongly reachable, and the arena cannot reclaim the record,
+     * until the read is done (Java 8 has no {@code reachabilityFence}).
+     */
+    private volatile boolean alive = true;
+
+    ArenaNamedMap(CheckpointArena arena, int[] records) {
+        this.arena = arena;
+        this.records = records;
+        this.table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, records.length) * 2 - 1) << 1)];
+        for (int i = 0; i < records.length; i++) {
+            int slot = arena.nameHash(records[i]) & (table.length - 1);
+            while (table[slot] != 0) slot = (slot + 1) & (table.length - 1);
+            table[slot] = i + 1;
+        }
+    }
+
+    CheckpointArena arena() {
+        return arena;
+    }
+
+    /** Returns {@code value}, read from this map's records, once this map is known to be still reachable. */
+    private <T> T reachable(T value) {
+        return alive ? value : null;
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) return -1;
+        String name = (String) key;
+        int hash = name.hashCode();
+        int found = -1;
+        for (int slot = hash & (table.length - 1); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int record = records[table[slot] - 1];
+            if (arena.nameHash(record) == hash && arena.nameEquals(record, name)) {
+                found = table[slot] - 1;
+                break;
+            }
+        }
+        return alive ? found : -1;
+    }
+
+    @Override
+    public Checkpoint get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? reachable(arena.read(records[index])) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return records.length;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Records<String>() {
+                    @Override
+                    String at(int record) {
+                        return arena.name(record);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return records.length;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, Checkpoint>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Checkpoint>>() {
+            @Override
+            public Iterator<Map.Entry<String, Checkpoint>> iterator() {
+                return new Records<Map.Entry<String, Checkpoint>>() {
+                    @Override
+                    Map.Entry<String, Checkpoint> at(int record) {
+                        return new SimpleImmutableEntry<>(arena.name(record), arena.read(record));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return records.length;
+            }
+        };
+    }
+
+    /** Iterates over the records in storage order. */
+    private abstract class Records<T> implements Iterator<T> {
+        private int next;
+
+        abstract T at(int record);
+
+        @Override
+        public boolean hasNext() {
+            return next < records.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return reachable(at(records[next++]));
+        }
+    }
+}
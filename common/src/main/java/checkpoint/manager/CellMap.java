@@ -0,0 +1,305 @@
+package checkpoint.manager;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent map from a {@link SpatialIndex} cell key to the value stored
+ * for that cell: a hash array mapped trie like {@link PlayerTable}, five bits
+ * of the key's hash per level. A change copies only the nodes on the path to
+ * the cell, so changing one checkpoint costs O(log cells) however many cells
+ * the world has, and every other node is shared with the map it came from.
+ * Keys whose hashes are equal in all 32 bits share a collision node.
+ */
+final class CellMap<V> implements Iterable<CellMap.Cell<V>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /** Node levels on the deepest path: seven hash levels, then collision nodes. */
+    private static final int MAX_DEPTH = 8;
+
+    private static final CellMap<?> EMPTY = new CellMap<>(Node.EMPTY, 0);
+
+    /** One occupied cell. */
+    static final class Cell<V> {
+        private final long key;
+        private final V value;
+
+        Cell(long key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        long key() {
+            return key;
+        }
+
+        V value() {
+            return value;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private CellMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> CellMap<V> empty() {
+        return (CellMap<V>) EMPTY;
+    }
+
+    /** Builds a map holding {@code cells}, whose keys must be distinct, without intermediate copies. */
+    static <V> CellMap<V> of(List<Cell<V>> cells) {
+        if (cells.isEmpty()) return empty();
+        long[] paths = new long[cells.size()];
+        Integer[] order = new Integer[cells.size()];
+        for (int i = 0; i < order.length; i++) {
+            paths[i] = pathKey(hash(cells.get(i).key));
+            order[i] = i;
+        }
+        // Sorted by the hash chunks in the order the levels read them, each node's entries are one run
+        Arrays.sort(order, (a, b) -> Long.compare(paths[a], paths[b]));
+        Cell<?>[] sorted = new Cell<?>[order.length];
+        int[] hashes = new int[order.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = cells.get(order[i]);
+            hashes[i] = hash(sorted[i].key);
+        }
+        return new CellMap<>(Node.build(sorted, hashes, 0, sorted.length, 0), sorted.length);
+    }
+
+    /** Returns the value stored for the cell, or null if the cell is empty. */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        Cell<?> cell = root.get(key, hash(key), 0);
+        return cell != null ? (V) cell.value : null;
+    }
+
+    /** Returns a copy holding {@code value} for the cell. */
+    CellMap<V> with(long key, V value) {
+        int hash = hash(key);
+        boolean added = root.get(key, hash, 0) == null;
+        return new CellMap<>(root.put(new Cell<>(key, value), hash, 0), added ? size + 1 : size);
+    }
+
+    /** Returns a copy without the cell. */
+    CellMap<V> without(long key) {
+        int hash = hash(key);
+        if (root.get(key, hash, 0) == null) return this;
+        return size == 1 ? empty() : new CellMap<>(root.remove(key, hash, 0), size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<Cell<V>> iterator() {
+        return new Iterator<Cell<V>>() {
+            private final Object[][] path = new Object[MAX_DEPTH + 1][];
+            private final int[] positions = new int[MAX_DEPTH + 1];
+            private int depth = 0;
+            private Cell<V> next;
+
+            {
+                path[0] = root.slots;
+                advance();
+            }
+
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                next = null;
+                while (depth >= 0) {
+                    Object[] slots = path[depth];
+                    if (positions[depth] == slots.length) {
+                        depth--;
+                        continue;
+                    }
+                    Object slot = slots[positions[depth]++];
+                    if (slot instanceof Node) {
+                        depth++;
+                        path[depth] = ((Node) slot).slots;
+                        positions[depth] = 0;
+                    } else {
+                        next = (Cell<V>) slot;
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Cell<V> next() {
+                if (next == null) throw new NoSuchElementException();
+                Cell<V> result = next;
+                advance();
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Mixes both packed cell coordinates into every hash bit; folding the
+     * halves with a plain xor would collide along each diagonal.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 29)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h >>> 32);
+    }
+
+    /** The hash chunks from the first level down, packed so that sorting by it groups every node's entries. */
+    private static long pathKey(int hash) {
+        long key = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += BITS) {
+            key = (key << BITS) | ((hash >>> shift) & MASK);
+        }
+        return key;
+    }
+
+    /**
+     * A trie node. Below 32 bits of hash, a bitmap says which of the 32
+     * chunk values are present and {@code slots} holds them in chunk order,
+     * each a {@link Cell} or a child node. Past the last hash bit the node is
+     * a collision node: {@code slots} lists cells in no order.
+     */
+    private static final class Node {
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        static Node build(Cell<?>[] cells, int[] hashes, int from, int to, int shift) {
+            if (shift >= Integer.SIZE) return new Node(0, Arrays.copyOfRange(cells, from, to, Object[].class));
+            int bitmap = 0;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int bit = 1 << ((hashes[i] >>> shift) & MASK);
+                if ((bitmap & bit) == 0) count++;
+                bitmap |= bit;
+            }
+            Object[] slots = new Object[count];
+            int slot = 0;
+            for (int start = from; start < to; ) {
+                int chunk = (hashes[start] >>> shift) & MASK;
+                int end = start + 1;
+                while (end < to && ((hashes[end] >>> shift) & MASK) == chunk) end++;
+                slots[slot++] = end - start == 1 ? cells[start] : build(cells, hashes, start, end, shift + BITS);
+                start = end;
+            }
+            return new Node(bitmap, slots);
+        }
+
+        Cell<?> get(long key, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (Object slot : slots) {
+                    if (keyOf(slot) == key) return (Cell<?>) slot;
+                }
+                return null;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) return ((Node) slot).get(key, hash, shift + BITS);
+            return keyOf(slot) == key ? (Cell<?>) slot : null;
+        }
+
+        Node put(Cell<?> cell, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (keyOf(slots[i]) == cell.key) return new Node(0, replaced(i, cell));
+                }
+                Object[] grown = Arrays.copyOf(slots, slots.length + 1);
+                grown[slots.length] = cell;
+                return new Node(0, grown);
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, grown, 0, index);
+                grown[index] = cell;
+                System.arraycopy(slots, index, grown, index + 1, slots.length - index);
+                return new Node(bitmap | bit, grown);
+            }
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                return new Node(bitmap, replaced(index, ((Node) slot).put(cell, hash, shift + BITS)));
+            }
+            if (keyOf(slot) == cell.key) return new Node(bitmap, replaced(index, cell));
+            Cell<?> existing = (Cell<?>) slot;
+            return new Node(bitmap, replaced(index,
+                pair(existing, hash(existing.key), cell, hash, shift + BITS)));
+        }
+
+        /** Removes a cell the node is known to hold. */
+        Node remove(long key, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (keyOf(slots[i]) == key) return new Node(0, removed(i));
+                }
+                return this;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = ((Node) slot).remove(key, hash, shift + BITS);
+                // A child left with a single cell is folded into this node
+                if (child.slots.length == 1 && !(child.slots[0] instanceof Node)) {
+                    return new Node(bitmap, replaced(index, child.slots[0]));
+                }
+                return new Node(bitmap, replaced(index, child));
+            }
+            return new Node(bitmap & ~bit, removed(index));
+        }
+
+        private static Node pair(Cell<?> a, int hashA, Cell<?> b, int hashB, int shift) {
+            if (shift >= Integer.SIZE) return new Node(0, new Object[] {a, b});
+            int chunkA = (hashA >>> shift) & MASK;
+            int chunkB = (hashB >>> shift) & MASK;
+            if (chunkA == chunkB) return new Node(1 << chunkA, new Object[] {pair(a, hashA, b, hashB, shift + BITS)});
+            return new Node((1 << chunkA) | (1 << chunkB), chunkA < chunkB ? new Object[] {a, b} : new Object[] {b, a});
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Object[] replaced(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return copy;
+        }
+
+        private Object[] removed(int index) {
+            Object[] shrunk = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, shrunk, 0, index);
+            System.arraycopy(slots, index + 1, shrunk, index, slots.length - index - 1);
+            return shrunk;
+        }
+
+        private static long keyOf(Object slot) {
+            return ((Cell<?>) slot).key;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Off-heap home for named checkpoints ({@code storage.off-heap}). Each
+ * checkpoint is a fixed-width record in a direct {@link ByteBuffer} slab;
+ * names and descriptions live in a separate string arena of power-of-two
+ * blocks, and worlds are stored as ids into a small dictionary. The garbage
+ * collector sees a few large buffers instead of millions of objects.
+ * <p>
+ * The manager keeps its immutable {@code Map<String, Checkpoint>} API on top:
+ * {@link #store} copies one player's checkpoints into records and returns a
+ * read-only map over them that decodes a {@link Checkpoint} whenever one is
+ * read. Records are never changed once written, so any number of snapshots
+ * can read them without locking. They are released, and their space reused
+ * through free lists, only after the map that owns them has become
+ * unreachable.
+ * <p>
+ * Allocation is synchronized; reads are not.
+ */
+public final class CheckpointArena {
+
+    /**
+     * Record layout: x, y, z (double), yaw, pitch (float), createdAt,
+     * updatedAt (epoch millis), world id, name hash, name and description
+     * string references.
+     */
+    static final int RECORD_BYTES = 64;
+    private static final int X = 0;
+    private static final int Y = 8;
+    private static final int Z = 16;
+    private static final int YAW = 24;
+    private static final int PITCH = 28;
+    private static final int CREATED = 32;
+    private static final int UPDATED = 40;
+    private static final int WORLD = 48;
+    private static final int NAME_HASH = 52;
+    private static final int NAME = 56;
+    private static final int DESCRIPTION = 60;
+
+    /** 16384 records of 64 bytes: 1 MiB per slab. */
+    private static final int RECORD_SLAB_SHIFT = 14;
+    private static final int RECORDS_PER_SLAB = 1 << RECORD_SLAB_SHIFT;
+
+    /** String references are a slab index above a 20-bit offset. */
+    private static final int STRING_OFFSET_BITS = 20;
+    private static final int STRING_SLAB_BYTES = 1 << STRING_OFFSET_BITS;
+    private static final int MAX_STRING_SLABS = 1 << (31 - STRING_OFFSET_BITS);
+    private static final int MIN_BLOCK_SHIFT = 4;
+    /** Reference of the empty description. */
+    private static final int NO_STRING = -1;
+
+    private volatile ByteBuffer[] recordSlabs = new ByteBuffer[0];
+    private volatile ByteBuffer[] stringSlabs = new ByteBuffer[0];
+    private volatile String[] worlds = new String[0];
+
+    // Allocation state, guarded by this
+    private final Map<String, Integer> worldIds = new HashMap<>();
+    private final IntStack freeRecords = new IntStack();
+    private int nextRecord;
+    /** Free string blocks per size class (block size 1 << class). */
+    private final IntStack[] freeBlocks = new IntStack[STRING_OFFSET_BITS + 1];
+    /** Slab indexes whose oversized string was released. */
+    private final IntStack freeStringSlabs = new IntStack();
+    private int bumpSlab = -1;
+    private int bumpOffset = STRING_SLAB_BYTES;
+    private int liveRecords;
+
+    private final ReferenceQueue<ArenaNamedMap> released = new ReferenceQueue<>();
+    /** Keeps the release handles reachable until their map is collected. */
+    private final Set<Release> pending = new HashSet<>();
+
+    /** Frees a map's records once the map itself is unreachable. */
+    private static final class Release extends PhantomReference<ArenaNamedMap> {
+        final int[] records;
+
+        Release(ArenaNamedMap map, ReferenceQueue<ArenaNamedMap> queue, int[] records) {
+            super(map, queue);
+            this.records = records;
+        }
+    }
+
+    public CheckpointArena() {
+        for (int i = 0; i < freeBlocks.length; i++) freeBlocks[i] = new IntStack();
+    }
+
+    /** Returns true if {@code named} is a map stored in this arena. */
+    boolean holds(Map<String, Checkpoint> named) {
+        return named instanceof ArenaNamedMap && ((ArenaNamedMap) named).arena() == this;
+    }
+
+    /** Copies {@code named} into records and returns a read-only map over them. */
+    synchronized Map<String, Checkpoint> store(Map<String, Checkpoint> named) {
+        reclaim();
+        int[] records = new int[named.size()];
+        int i = 0;
+        for (Map.Entry<String, Checkpoint> entry : named.entrySet()) {
+            records[i++] = write(entry.getKey(), entry.getValue());
+        }
+        ArenaNamedMap map = new ArenaNamedMap(this, records);
+        pending.add(new Release(map, released, records));
+        return map;
+    }
+
+    /** Releases the records of every map that has been collected since the last call. */
+    synchronized void reclaim() {
+        Reference<? extends ArenaNamedMap> ref;
+        while ((ref = released.poll()) != null) {
+            Release release = (Release) ref;
+            pending.remove(release);
+            release.clear();
+            for (int record : release.records) free(record);
+        }
+    }
+
+    /** Number of checkpoint records in use. */
+    public synchronized int liveRecords() {
+        return liveRecords;
+    }
+
+    /** Direct memory held by the record and string slabs, in bytes. */
+    public long offHeapBytes() {
+        long total = 0;
+        for (ByteBuffer slab : recordSlabs) total += slab.capacity();
+        for (ByteBuffer slab : stringSlabs) total += slab != null ? slab.capacity() : 0;
+        return total;
+    }
+
+    // -----------------------------------------------------------------------
+    // Reading records
+    // -----------------------------------------------------------------------
+
+    Checkpoint read(int record) {
+        ByteBuffer slab = recordSlab(record);
+        int at = recordOffset(record);
+        int description = slab.getInt(at + DESCRIPTION);
+        return new Checkpoint(worlds[slab.getInt(at + WORLD)],
+            slab.getDouble(at + X), slab.getDouble(at + Y), slab.getDouble(at + Z),
+            slab.getFloat(at + YAW), slab.getFloat(at + PITCH),
+            slab.getLong(at + CREATED), slab.getLong(at + UPDATED),
+            description == NO_STRING ? "" : readString(description));
+    }
+
+    String name(int record) {
+        return readString(recordSlab(record).getInt(recordOffset(record) + NAME));
+    }
+
+    int nameHash(int record) {
+        return recordSlab(record).getInt(recordOffset(record) + NAME_HASH);
+    }
+
+    /** Compares the record's name with {@code key} without decoding it. */
+    boolean nameEquals(int record, String key) {
+        int ref = recordSlab(record).getInt(recordOffset(record) + NAME);
+        ByteBuffer slab = stringSlabs[ref >>> STRING_OFFSET_BITS];
+        int at = ref & (STRING_SLAB_BYTES - 1);
+        int length = slab.getInt(at);
+        if (length != key.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (slab.getChar(at + 4 + 2 * i) != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private ByteBuffer recordSlab(int record) {
+        return recordSlabs[record >>> RECORD_SLAB_SHIFT];
+    }
+
+    private static int recordOffset(int record) {
+        return (record & (RECORDS_PER_SLAB - 1)) * RECORD_BYTES;
+    }
+
+    private String readString(int ref) {
+        ByteBuffer slab = stringSlabs[ref >>> STRING_OFFSET_BITS];
+        int at = ref & (STRING_SLAB_BYTES - 1);
+        char[] chars = new char[slab.getInt(at)];
+        for (int i = 0; i < chars.length; i++) chars[i] = slab.getChar(at + 4 + 2 * i);
+        return new String(chars);
+    }
+
+    // -----------------------------------------------------------------------
+    // Allocation (callers hold this)
+    // -----------------------------------------------------------------------
+
+    private int write(String name, Checkpoint cp) {
+        int record = freeRecords.isEmpty() ? newRecord() : freeRecords.pop();
+        ByteBuffer slab = recordSlab(record);
+        int at = recordOffset(record);
+        slab.putDouble(at + X, cp.x());
+        slab.putDouble(at + Y, cp.y());
+        slab.putDouble(at + Z, cp.z());
+        slab.putFloat(at + YAW, cp.yaw());
+        slab.putFloat(at + PITCH, cp.pitch());
+        slab.putLong(at + CREATED, cp.createdAtMillis());
+        slab.putLong(at + UPDATED, cp.updatedAtMillis());
+        slab.putInt(at + WORLD, worldId(cp.worldName()));
+        slab.putInt(at + NAME_HASH, name.hashCode());
+        slab.putInt(at + NAME, writeString(name));
+        slab.putInt(at + DESCRIPTION, cp.description().isEmpty() ? NO_STRING : writeString(cp.description()));
+        liveRecords++;
+        return record;
+    }
+
+    private void free(int record) {
+        ByteBuffer slab = recordSlab(record);
+        int at = recordOffset(record);
+        freeString(slab.getInt(at + NAME));
+        int description = slab.getInt(at + DESCRIPTION);
+        if (description != NO_STRING) freeString(description);
+        freeRecords.push(record);
+        liveRecords--;
+    }
+
+    private int newRecord() {
+        if (nextRecord == recordSlabs.length * RECORDS_PER_SLAB) {
+            ByteBuffer[] grown = Arrays.copyOf(recordSlabs, recordSlabs.length + 1);
+            grown[recordSlabs.length] = ByteBuffer.allocateDirect(RECORDS_PER_SLAB * RECORD_BYTES)
+                .order(ByteOrder.nativeOrder());
+            recordSlabs = grown;
+        }
+        return nextRecord++;
+    }
+
+    private int worldId(String world) {
+        Integer id = worldIds.get(world);
+        if (id != null) return id;
+        String[] grown = Arrays.copyOf(worlds, worlds.length + 1);
+        grown[worlds.length] = world;
+        worlds = grown;
+        worldIds.put(world, worlds.length - 1);
+        return worlds.length - 1;
+    }
+
+    /** Stores {@code value} as its length followed by its UTF-16 chars. */
+    private int writeString(String value) {
+        int bytes = 4 + 2 * value.length();
+        int sizeClass = Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+        int ref;
+        if (sizeClass > STRING_OFFSET_BITS) {
+            // Larger than a slab: give it a slab of its own
+            ref = newStringSlab(bytes) << STRING_OFFSET_BITS;
+        } else if (!freeBlocks[sizeClass].isEmpty()) {
+            ref = freeBlocks[sizeClass].pop();
+        } else {
+            int block = 1 << sizeClass;
+            if (bumpOffset + block > STRING_SLAB_BYTES) {
+                bumpSlab = newStringSlab(STRING_SLAB_BYTES);
+                bumpOffset = 0;
+            }
+            ref = (bumpSlab << STRING_OFFSET_BITS) | bumpOffset;
+            bumpOffset += block;
+        }
+        ByteBuffer slab = stringSlabs[ref >>> STRING_OFFSET_BITS];
+        int at = ref & (STRING_SLAB_BYTES - 1);
+        slab.putInt(at, value.length());
+        for (int i = 0; i < value.length(); i++) slab.putChar(at + 4 + 2 * i, value.charAt(i));
+        return ref;
+    }
+
+    private void freeString(int ref) {
+        int slabIndex = ref >>> STRING_OFFSET_BITS;
+        int bytes = 4 + 2 * stringSlabs[slabIndex].getInt(ref & (STRING_SLAB_BYTES - 1));
+        int sizeClass = Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+        if (sizeClass > STRING_OFFSET_BITS) {
+            ByteBuffer[] changed = stringSlabs.clone();
+            changed[slabIndex] = null;
+            stringSlabs = changed;
+            freeStringSlabs.push(slabIndex);
+        } else {
+            freeBlocks[sizeClass].push(ref);
+        }
+    }
+
+    private int newStringSlab(int bytes) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        ByteBuffer[] changed;
+        int index;
+        if (!freeStringSlabs.isEmpty()) {
+            index = freeStringSlabs.pop();
+            changed = stringSlabs.clone();
+        } else {
+            index = stringSlabs.length;
+            if (index == MAX_STRING_SLABS) throw new IllegalStateException("checkpoint string arena is full");
+            changed = Arrays.copyOf(stringSlabs, index + 1);
+        }
+        changed[index] = slab;
+        stringSlabs = changed;
+        return index;
+    }
+
+    /** Growable stack of ints, so free lists do not box. */
+    private static final class IntStack {
+        private int[] items = new int[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        int pop() {
+            return items[--size];
+        }
+    }
+}
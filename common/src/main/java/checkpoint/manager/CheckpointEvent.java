@@ -0,0 +1,195 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * A change made through {@link CheckpointManager}, as delivered by its
+ * {@link CheckpointEventBus}. Each kind of change is its own subclass, so
+ * subscribers pick the ones they care about by type. Names are the stored
+ * keys, not the caller's input.
+ */
+public abstract class CheckpointEvent {
+
+    private final UUID playerId;
+
+    CheckpointEvent(UUID playerId) {
+        this.playerId = playerId;
+    }
+
+    /** The player whose data changed (for a clone, the player who cloned). */
+    public UUID playerId() { return playerId; }
+
+    /** Adds every player whose data the change touched to {@code players}. */
+    void addPlayers(Collection<UUID> players) {
+        players.add(playerId);
+    }
+
+    /** Quick checkpoint was set, or removed if {@link #checkpoint()} is null. */
+    public static final class QuickChanged extends CheckpointEvent {
+        private final Checkpoint checkpoint;
+
+        QuickChanged(UUID playerId, Checkpoint checkpoint) {
+            super(playerId);
+            this.checkpoint = checkpoint;
+        }
+
+        public Checkpoint checkpoint() { return checkpoint; }
+
+        @Override
+        public String toString() {
+            return "QuickChanged{player=" + playerId() + ", checkpoint=" + checkpoint + '}';
+        }
+    }
+
+    /** Named checkpoint was added. */
+    public static final class Added extends CheckpointEvent {
+        private final String name;
+        private final Checkpoint checkpoint;
+
+        Added(UUID playerId, String name, Checkpoint checkpoint) {
+            super(playerId);
+            this.name = name;
+            this.checkpoint = checkpoint;
+        }
+
+        public String name() { return name; }
+        public Checkpoint checkpoint() { return checkpoint; }
+
+        @Override
+        public String toString() {
+            return "Added{player=" + playerId() + ", name=" + name + '}';
+        }
+    }
+
+    /** Named checkpoint was moved or had its description changed. */
+    public static final class Updated extends CheckpointEvent {
+        private final String name;
+        private final Checkpoint checkpoint;
+
+        Updated(UUID playerId, String name, Checkpoint checkpoint) {
+            super(playerId);
+            this.name = name;
+            this.checkpoint = checkpoint;
+        }
+
+        public String name() { return name; }
+        public Checkpoint checkpoint() { return checkpoint; }
+
+        @Override
+        public String toString() {
+            return "Updated{player=" + playerId() + ", name=" + name + '}';
+        }
+    }
+
+    /** Named checkpoint was removed, together with its selection and cleared mark. */
+    public static final class Removed extends CheckpointEvent {
+        private final String name;
+
+        Removed(UUID playerId, String name) {
+            super(playerId);
+            this.name = name;
+        }
+
+        public String name() { return name; }
+
+        @Override
+        public String toString() {
+            return "Removed{player=" + playerId() + ", name=" + name + '}';
+        }
+    }
+
+    /** Named checkpoint was renamed; selection and cleared mark follow the new name. */
+    public static final class Renamed extends CheckpointEvent {
+        private final String oldName;
+        private final String newName;
+        private final Checkpoint checkpoint;
+
+        Renamed(UUID playerId, String oldName, String newName, Checkpoint checkpoint) {
+            super(playerId);
+            this.oldName = oldName;
+            this.newName = newName;
+            this.checkpoint = checkpoint;
+        }
+
+        public String oldName() { return oldName; }
+        public String newName() { return newName; }
+        public Checkpoint checkpoint() { return checkpoint; }
+
+        @Override
+        public String toString() {
+            return "Renamed{player=" + playerId() + ", " + oldName + " -> " + newName + '}';
+        }
+    }
+
+    /** Named checkpoint was selected, or the selection cleared if {@link #name()} is null. */
+    public static final class Selected extends CheckpointEvent {
+        private final String name;
+
+        Selected(UUID playerId, String name) {
+            super(playerId);
+            this.name = name;
+        }
+
+        public String name() { return name; }
+
+        @Override
+        public String toString() {
+            return "Selected{player=" + playerId() + ", name=" + name + '}';
+        }
+    }
+
+    /** Named checkpoint was marked or unmarked as cleared. */
+    public static final class ClearedChanged extends CheckpointEvent {
+        private final String name;
+        private final boolean cleared;
+
+        ClearedChanged(UUID playerId, String name, boolean cleared) {
+            super(playerId);
+            this.name = name;
+            this.cleared = cleared;
+        }
+
+        public String name() { return name; }
+        public boolean cleared() { return cleared; }
+
+        @Override
+        public String toString() {
+            return "ClearedChanged{player=" + playerId() + ", name=" + name + ", cleared=" + cleared + '}';
+        }
+    }
+
+    /** {@link #playerId()} cloned a checkpoint of {@link #sourcePlayerId()}. */
+    public static final class CloneRecorded extends CheckpointEvent {
+        private final UUID sourcePlayerId;
+        private final Instant time;
+        private final int sourceClonedCount;
+
+        CloneRecorded(UUID clonerId, UUID sourcePlayerId, Instant time, int sourceClonedCount) {
+            super(clonerId);
+            this.sourcePlayerId = sourcePlayerId;
+            this.time = time;
+            this.sourceClonedCount = sourceClonedCount;
+        }
+
+        public UUID sourcePlayerId() { return sourcePlayerId; }
+        /** When the clone happened, as stored for both players. */
+        public Instant time() { return time; }
+        /** The source player's new total. */
+        public int sourceClonedCount() { return sourceClonedCount; }
+
+        @Override
+        void addPlayers(Collection<UUID> players) {
+            super.addPlayers(players);
+            players.add(sourcePlayerId);
+        }
+
+        @Override
+        public String toString() {
+            return "CloneRecorded{cloner=" + playerId() + ", source=" + sourcePlayerId
+                + ", count=" + sourceClonedCount + '}';
+        }
+    }
+}
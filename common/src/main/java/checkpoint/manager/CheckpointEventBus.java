@@ -0,0 +1,88 @@
+package checkpoint.manager;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers {@link CheckpointEvent}s to any number of subscribers, each for
+ * the event types it asked for.
+ * <p>
+ * {@link CheckpointManager} queues each event while it holds the changed
+ * player's lock and delivers the queue after releasing it, one event at a
+ * time, so a subscriber sees one player's events in the order they happened
+ * and may read or change checkpoints itself; the events of its own changes
+ * follow once it returns. Subscribers without an executor run on the
+ * delivering thread, which holds up later events, so anything slower should
+ * pass an executor (a single-threaded one keeps the order). A subscriber that
+ * throws is logged and does not affect the change or the other subscribers.
+ */
+public final class CheckpointEventBus {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckpointEventBus.class.getName());
+
+    /** Handle returned by {@link #subscribe}; cancelling stops further deliveries. */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private final List<Subscriber<?>> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Subscribes to events of {@code type} (use {@code CheckpointEvent.class} for all), run on the delivering thread. */
+    public <E extends CheckpointEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        return subscribe(type, handler, null);
+    }
+
+    /** Subscribes to events of {@code type}, each delivered through {@code executor} (null for the delivering thread). */
+    public <E extends CheckpointEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler,
+                                                              Executor executor) {
+        Subscriber<E> subscriber = new Subscriber<>(
+            Objects.requireNonNull(type, "type cannot be null"),
+            Objects.requireNonNull(handler, "handler cannot be null"),
+            executor);
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    void post(CheckpointEvent event) {
+        for (Subscriber<?> subscriber : subscribers) subscriber.offer(event);
+    }
+
+    private static final class Subscriber<E extends CheckpointEvent> {
+        final Class<E> type;
+        final Consumer<? super E> handler;
+        final Executor executor;
+
+        Subscriber(Class<E> type, Consumer<? super E> handler, Executor executor) {
+            this.type = type;
+            this.handler = handler;
+            this.executor = executor;
+        }
+
+        void offer(CheckpointEvent event) {
+            if (!type.isInstance(event)) return;
+            E typed = type.cast(event);
+            if (executor == null) {
+                deliver(typed);
+                return;
+            }
+            try {
+                executor.execute(() -> deliver(typed));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not dispatch " + event, e);
+            }
+        }
+
+        private void deliver(E event) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Checkpoint event subscriber failed on " + event, e);
+            }
+        }
+    }
+}
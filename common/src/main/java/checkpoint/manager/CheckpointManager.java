@@ -1,6 +1,9 @@
 package checkpoint.manager;
 
 import checkpoint.model.Checkpoint;
+import checkpoint.model.ClearSortOrder;
+import checkpoint.model.PlayerData;
+import checkpoint.model.PlayerStats;
 import checkpoint.model.RenameResult;
 import checkpoint.model.SortOrder;
 import java.time.Instant;
@@ -13,81 +16,253 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * Keeps track of per-player checkpoints in memory. Supports quick checkpoints
  * (slime ball) and named checkpoints (via commands / GUI).
  */
 public class CheckpointManager {
-    private final Map<UUID, Checkpoint> quickCheckpoints = new ConcurrentHashMap<>();
-    private final Map<UUID, Map<String, Checkpoint>> namedCheckpoints = new ConcurrentHashMap<>();
-    private final Map<UUID, String> selectedNamedCheckpoints = new ConcurrentHashMap<>();
-    private final Map<UUID, Map<UUID, Instant>> cloneHistory = new ConcurrentHashMap<>();
-    private final Map<UUID, Integer> clonedCounts = new ConcurrentHashMap<>();
-    private final Map<UUID, Set<String>> clearedCheckpoints = new ConcurrentHashMap<>();
-    private Runnable onDataChanged;
+    /**
+     * Everything held in memory, as one immutable value. Readers use whatever
+     * snapshot is current without locking; writers hold the {@link #stripe}
+     * of each player they change, derive those players' new
+     * {@link PlayerState} and publish a new snapshot.
+     */
+    private volatile CheckpointSnapshot snapshot = CheckpointSnapshot.EMPTY;
+    private static final AtomicReferenceFieldUpdater<CheckpointManager, CheckpointSnapshot> SNAPSHOT =
+        AtomicReferenceFieldUpdater.newUpdater(CheckpointManager.class, CheckpointSnapshot.class, "snapshot");
+    /** Writer locks, one per group of players; a compound change to a player holds its stripe throughout. */
+    private final Object[] stripes = new Object[64];
+    /** Players whose persisted data changed since the last {@link #drainDirtyPlayers()}. */
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    /** Players whose stored data is not in memory yet; see {@link #holdPlayer}. */
+    private final Set<UUID> heldPlayers = ConcurrentHashMap.newKeySet();
+    private final CheckpointEventBus events = new CheckpointEventBus();
+    /**
+     * Events of published changes, waiting for delivery. One queue for all
+     * players keeps each player's order, including events that touch two.
+     */
+    private final Queue<CheckpointEvent> outbox = new ConcurrentLinkedQueue<>();
+    /** Set while a thread is delivering the {@link #outbox}. */
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    /** The running {@link #batch}, if any; only its own thread sees its changes before commit. */
+    private volatile Batch batch;
+    /** Off-heap home for named checkpoints, or null to keep them on the heap. */
+    private final CheckpointArena arena;
+    /**
+     * Each player's latest name search. It is reused while the player's
+     * {@link #getPlayerVersion version} equals the one it was run on, which
+     * also holds when a player only moves to the arena.
+     */
+    private final Map<UUID, NameSearch> searches = new ConcurrentHashMap<>();
+
+    public CheckpointManager() {
+        this(null);
+    }
+
+    /**
+     * @param arena where loaded players' named checkpoints are kept
+     *              ({@code storage.off-heap}), or null for the heap
+     */
+    public CheckpointManager(CheckpointArena arena) {
+        this.arena = arena;
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Object();
+    }
 
     // -----------------------------------------------------------------------
     // Persistence support
     // -----------------------------------------------------------------------
 
-    /** Register a callback that is invoked whenever persistent data changes. */
-    public void setOnDataChanged(Runnable callback) {
-        this.onDataChanged = callback;
+    /**
+     * Typed events for every change, for any number of subscribers: the
+     * saver, the journal, menus, caches. Each event is delivered after the
+     * change is visible and its player's lock released, so subscribers may
+     * read or change checkpoints themselves.
+     */
+    public CheckpointEventBus events() {
+        return events;
+    }
+
+    /**
+     * Marks the event's players dirty and queues it for delivery, or, inside
+     * a batch, holds it until commit. Caller holds the stripe of every player
+     * the event touches, so the queue has each player's events in the order
+     * the changes were made.
+     */
+    private void post(CheckpointEvent event) {
+        Batch own = ownBatch();
+        if (own != null) {
+            own.posted.add(event);
+            return;
+        }
+        event.addPlayers(dirtyPlayers);
+        outbox.add(event);
+    }
+
+    /**
+     * Delivers queued events; called once the caller holds no stripe. Inside a
+     * batch, leaves that to its commit. Whichever thread finds no delivery
+     * running delivers everything queued, including events queued by other
+     * threads or by its own subscribers meanwhile, so subscribers receive the
+     * events one at a time in queue order.
+     */
+    private void deliver() {
+        if (ownBatch() != null) return;
+        while (!outbox.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                CheckpointEvent event;
+                while ((event = outbox.poll()) != null) events.post(event);
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    /**
+     * Returns and clears the set of players whose data changed since the last
+     * call. Used by per-player storage to rewrite only the affected files.
+     * {@link #holdPlayer Held} players are left dirty and not returned.
+     */
+    public Set<UUID> drainDirtyPlayers() {
+        Set<UUID> drained = new HashSet<>();
+        for (UUID playerId : dirtyPlayers) {
+            if (heldPlayers.contains(playerId)) continue;
+            if (dirtyPlayers.remove(playerId)) drained.add(playerId);
+        }
+        return drained;
+    }
+
+    /**
+     * Keeps the player out of {@link #drainDirtyPlayers()} until
+     * {@link #releasePlayer}: their stored data has not been loaded, so what
+     * is in memory is not all they have and must not overwrite the store.
+     * Changes made meanwhile stay dirty and are kept by
+     * {@link #mergeLoadedPlayerData}.
+     */
+    public void holdPlayer(UUID playerId) {
+        if (playerId != null) heldPlayers.add(playerId);
+    }
+
+    /** Ends a {@link #holdPlayer hold}; pending changes go out with the next save. */
+    public void releasePlayer(UUID playerId) {
+        if (playerId != null) heldPlayers.remove(playerId);
     }
 
-    private void notifyDataChanged() {
-        if (onDataChanged != null) onDataChanged.run();
+    /** Returns true while the player is {@link #holdPlayer held}. */
+    public boolean isPlayerHeld(UUID playerId) {
+        return heldPlayers.contains(playerId);
+    }
+
+    /** Marks a player's data as changed (e.g. to retry after a failed write). */
+    public void markPlayerDirty(UUID playerId) {
+        if (playerId != null) dirtyPlayers.add(playerId);
+    }
+
+    /** Returns true if any player has changes that have not been drained yet. */
+    public boolean hasDirtyPlayers() {
+        return !dirtyPlayers.isEmpty();
+    }
+
+    /** Returns true if the player has changes that have not been drained yet. */
+    public boolean isPlayerDirty(UUID playerId) {
+        return dirtyPlayers.contains(playerId);
+    }
+
+    /**
+     * Returns the current state of every player. This is a constant-time read;
+     * the result never changes, so it can be serialized on another thread
+     * while the manager keeps being modified.
+     */
+    public CheckpointSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /** Returns an immutable snapshot of everything persisted for the given player. */
+    public PlayerData getPlayerData(UUID playerId) {
+        Objects.requireNonNull(playerId, "playerId cannot be null");
+        return data(playerId);
+    }
+
+    /**
+     * Returns the player's data version: a number that grows with every
+     * change to the player (including loads), in constant time. A cache that
+     * remembers it can tell whether it is still current with one comparison.
+     * For a player without data it may also grow when other players are
+     * removed.
+     */
+    public long getPlayerVersion(UUID playerId) {
+        Objects.requireNonNull(playerId, "playerId cannot be null");
+        Batch own = ownBatch();
+        return (own != null ? own.pending : snapshot).version(playerId);
     }
 
     /** Returns an unmodifiable snapshot of all quick checkpoints. */
     public Map<UUID, Checkpoint> getAllQuickCheckpoints() {
-        return Collections.unmodifiableMap(new HashMap<>(quickCheckpoints));
+        Map<UUID, Checkpoint> copy = new HashMap<>();
+        for (PlayerData data : snapshot) {
+            if (data.quick() != null) copy.put(data.playerId(), data.quick());
+        }
+        return Collections.unmodifiableMap(copy);
     }
 
-    /** Returns a deep-copy snapshot of all named checkpoints. */
+    /** Returns a snapshot of all named checkpoints. */
     public Map<UUID, Map<String, Checkpoint>> getAllNamedCheckpoints() {
         Map<UUID, Map<String, Checkpoint>> copy = new HashMap<>();
-        for (Map.Entry<UUID, Map<String, Checkpoint>> entry : namedCheckpoints.entrySet()) {
-            copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+        for (PlayerData data : snapshot) {
+            if (!data.named().isEmpty()) copy.put(data.playerId(), data.named());
         }
         return Collections.unmodifiableMap(copy);
     }
 
     /** Returns an unmodifiable snapshot of all selected checkpoint names. */
     public Map<UUID, String> getAllSelectedCheckpoints() {
-        return Collections.unmodifiableMap(new HashMap<>(selectedNamedCheckpoints));
+        Map<UUID, String> copy = new HashMap<>();
+        for (PlayerData data : snapshot) {
+            if (data.selected() != null) copy.put(data.playerId(), data.selected());
+        }
+        return Collections.unmodifiableMap(copy);
     }
 
-    /** Returns a deep-copy snapshot of all clone history. */
+    /** Returns a snapshot of all clone history. */
     public Map<UUID, Map<UUID, Instant>> getAllCloneHistory() {
         Map<UUID, Map<UUID, Instant>> copy = new HashMap<>();
-        for (Map.Entry<UUID, Map<UUID, Instant>> entry : cloneHistory.entrySet()) {
-            copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+        for (PlayerData data : snapshot) {
+            if (!data.cloneHistory().isEmpty()) copy.put(data.playerId(), data.cloneHistory());
         }
         return Collections.unmodifiableMap(copy);
     }
 
     /** Returns an unmodifiable snapshot of all cloned counts. */
     public Map<UUID, Integer> getAllClonedCounts() {
-        return Collections.unmodifiableMap(new HashMap<>(clonedCounts));
+        Map<UUID, Integer> copy = new HashMap<>();
+        for (PlayerData data : snapshot) {
+            if (data.clonedCount() > 0) copy.put(data.playerId(), data.clonedCount());
+        }
+        return Collections.unmodifiableMap(copy);
     }
 
-    /** Returns a deep-copy snapshot of all cleared checkpoint sets. */
+    /** Returns a snapshot of all cleared checkpoint sets. */
     public Map<UUID, Set<String>> getAllClearedCheckpoints() {
         Map<UUID, Set<String>> copy = new HashMap<>();
-        for (Map.Entry<UUID, Set<String>> entry : clearedCheckpoints.entrySet()) {
-            copy.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+        for (PlayerData data : snapshot) {
+            if (!data.cleared().isEmpty()) copy.put(data.playerId(), data.cleared());
         }
         return Collections.unmodifiableMap(copy);
     }
 
     /**
      * Bulk-load persisted data into this manager, replacing any existing data.
-     * Does NOT trigger the onDataChanged callback.
+     * Posts no events and marks no player dirty.
      */
     public void loadData(
             Map<UUID, Checkpoint> quickCps,
@@ -96,104 +271,338 @@ public class CheckpointManager {
             Map<UUID, Map<UUID, Instant>> clones,
             Map<UUID, Integer> counts,
             Map<UUID, Set<String>> cleared) {
-        quickCheckpoints.clear();
-        if (quickCps != null) quickCheckpoints.putAll(quickCps);
+        if (quickCps == null) quickCps = Collections.emptyMap();
+        if (namedCps == null) namedCps = Collections.emptyMap();
+        if (selected == null) selected = Collections.emptyMap();
+        if (clones == null) clones = Collections.emptyMap();
+        if (counts == null) counts = Collections.emptyMap();
+        if (cleared == null) cleared = Collections.emptyMap();
+
+        Set<UUID> playerIds = new HashSet<>(quickCps.keySet());
+        playerIds.addAll(namedCps.keySet());
+        playerIds.addAll(selected.keySet());
+        playerIds.addAll(clones.keySet());
+        playerIds.addAll(counts.keySet());
+        playerIds.addAll(cleared.keySet());
+
+        List<PlayerData> players = new ArrayList<>(playerIds.size());
+        for (UUID playerId : playerIds) {
+            Integer count = counts.get(playerId);
+            players.add(new PlayerData(playerId, quickCps.get(playerId), namedCps.get(playerId),
+                selected.get(playerId), clones.get(playerId), count != null ? count : 0, cleared.get(playerId)));
+        }
+        replaceAll(players);
+    }
 
-        namedCheckpoints.clear();
-        if (namedCps != null) {
-            for (Map.Entry<UUID, Map<String, Checkpoint>> entry : namedCps.entrySet()) {
-                namedCheckpoints.put(entry.getKey(), new ConcurrentHashMap<>(entry.getValue()));
-            }
+    private void replaceAll(List<PlayerData> loaded) {
+        List<PlayerData> players = new ArrayList<>(loaded.size());
+        for (PlayerData data : loaded) players.add(inArena(data));
+        withAllStripes(0, () -> {
+            snapshot = CheckpointSnapshot.of(players, snapshot.version() + 1);
+            dirtyPlayers.clear();
+            searches.clear();
+            return null;
+        });
+    }
+
+    /**
+     * Replaces everything held for one player with {@code data} (an empty
+     * value removes the player). Like {@link #loadData}, this is a load
+     * operation: it posts no events and does not mark the player dirty.
+     */
+    public void loadPlayerData(PlayerData data) {
+        PlayerData stored = inArena(data);
+        synchronized (stripe(stored.playerId())) {
+            publish(PlayerState.of(stored));
         }
+    }
 
-        selectedNamedCheckpoints.clear();
-        if (selected != null) selectedNamedCheckpoints.putAll(selected);
+    /**
+     * Applies one player's data read from storage, keeping any changes made
+     * while it was being read (a lazy load that finished after the player had
+     * already started playing). Without such changes this is
+     * {@link #loadPlayerData}. Otherwise the changes win over the stored data:
+     * their named checkpoints, quick checkpoint, selection and clone times
+     * replace the stored ones, stored named checkpoints they lack are added
+     * back, and clones counted meanwhile are added to the stored count. The
+     * player is then marked dirty. Posts no events.
+     *
+     * @return true if earlier changes were merged and need saving
+     */
+    public boolean mergeLoadedPlayerData(PlayerData data) {
+        PlayerData stored = inArena(data);
+        UUID playerId = stored.playerId();
+        synchronized (stripe(playerId)) {
+            PlayerState current = state(playerId);
+            PlayerData early = current.data();
+            if (early.isEmpty()) {
+                publish(PlayerState.of(stored));
+                return false;
+            }
+            Map<String, Checkpoint> named = new HashMap<>(early.named());
+            for (Map.Entry<String, Checkpoint> entry : data.named().entrySet()) {
+                if (current.findKey(entry.getKey()) == null) named.put(entry.getKey(), entry.getValue());
+            }
+            Map<UUID, Instant> clones = new HashMap<>(data.cloneHistory());
+            clones.putAll(early.cloneHistory());
+            Set<String> cleared = new HashSet<>(data.cleared());
+            cleared.addAll(early.cleared());
+            PlayerData merged = new PlayerData(playerId,
+                early.quick() != null ? early.quick() : data.quick(),
+                named,
+                early.selected() != null ? early.selected() : data.selected(),
+                clones, data.clonedCount() + early.clonedCount(), cleared);
+            publish(PlayerState.of(inArena(merged)));
+            dirtyPlayers.add(playerId);
+            return true;
+        }
+    }
 
-        cloneHistory.clear();
-        if (clones != null) {
-            for (Map.Entry<UUID, Map<UUID, Instant>> entry : clones.entrySet()) {
-                cloneHistory.put(entry.getKey(), new ConcurrentHashMap<>(entry.getValue()));
+    /**
+     * With an arena, moves the named checkpoints that changes have put back
+     * on the heap into it. Contents do not change, so nothing is marked
+     * dirty; a player changed again meanwhile is left for the next call.
+     * Meant to run after each save.
+     */
+    public void moveToArena() {
+        if (arena == null) return;
+        for (PlayerData data : snapshot) {
+            Map<String, Checkpoint> named = data.named();
+            if (named.isEmpty() || arena.holds(named)) continue;
+            Map<String, Checkpoint> stored = arena.store(named);
+            synchronized (stripe(data.playerId())) {
+                PlayerState current = state(data.playerId());
+                if (current.data().named() == named) {
+                    PlayerState moved = current.withNamedMap(stored);
+                    swap(before -> before.withSameContent(moved));
+                }
             }
         }
+        arena.reclaim();
+    }
+
+    private PlayerData inArena(PlayerData data) {
+        if (arena == null || data.named().isEmpty() || arena.holds(data.named())) return data;
+        return data.withAllNamed(arena.store(data.named()));
+    }
+
+    /**
+     * Drops everything held in memory for one player without touching storage
+     * (eviction of idle offline players). Like {@link #loadPlayerData}, no
+     * events are posted.
+     */
+    public void unloadPlayer(UUID playerId) {
+        loadPlayerData(PlayerData.empty(playerId));
+        searches.remove(playerId);
+    }
 
-        clonedCounts.clear();
-        if (counts != null) clonedCounts.putAll(counts);
+    /**
+     * Returns a loader that stages a complete replacement state, for decoders
+     * that stream records one at a time. Nothing is visible until
+     * {@link BulkLoader#commit()}; an abandoned loader leaves the manager
+     * untouched.
+     */
+    public BulkLoader newBulkLoader() {
+        return new BulkLoader();
+    }
+
+    /**
+     * Staging area filled by a storage decoder. Records go straight into the
+     * collections of the player they belong to, which become that player's
+     * {@link PlayerData} on commit without being copied again.
+     * Not thread-safe; posts no events.
+     */
+    public final class BulkLoader {
+        private final Map<UUID, Staged> players = new HashMap<>();
+        private int namedCount;
 
-        clearedCheckpoints.clear();
-        if (cleared != null) {
-            for (Map.Entry<UUID, Set<String>> entry : cleared.entrySet()) {
-                clearedCheckpoints.put(entry.getKey(), ConcurrentHashMap.newKeySet());
-                clearedCheckpoints.get(entry.getKey()).addAll(entry.getValue());
+        private BulkLoader() {}
+
+        public void quick(UUID playerId, Checkpoint checkpoint) {
+            staged(playerId).quick = checkpoint;
+        }
+
+        public void named(UUID playerId, String name, Checkpoint checkpoint) {
+            Staged player = staged(playerId);
+            if (player.named == null) player.named = new HashMap<>();
+            if (player.named.put(name, checkpoint) == null) namedCount++;
+        }
+
+        public void selected(UUID playerId, String name) {
+            staged(playerId).selected = name;
+        }
+
+        public void clone(UUID clonerId, UUID sourcePlayerId, Instant time) {
+            Staged player = staged(clonerId);
+            if (player.clones == null) player.clones = new HashMap<>();
+            player.clones.put(sourcePlayerId, time);
+        }
+
+        public void clonedCount(UUID playerId, int count) {
+            if (count > 0) staged(playerId).clonedCount = count;
+        }
+
+        public void cleared(UUID playerId, String name) {
+            Staged player = staged(playerId);
+            if (player.cleared == null) player.cleared = new HashSet<>();
+            player.cleared.add(name);
+        }
+
+        /** Number of named checkpoints staged so far. */
+        public int namedCount() {
+            return namedCount;
+        }
+
+        /** Replaces the manager's data with the staged state. */
+        public void commit() {
+            List<PlayerData> loaded = new ArrayList<>(players.size());
+            for (Map.Entry<UUID, Staged> entry : players.entrySet()) {
+                Staged player = entry.getValue();
+                loaded.add(PlayerData.adopting(entry.getKey(), player.quick, player.named, player.selected,
+                    player.clones, player.clonedCount, player.cleared));
             }
+            players.clear();
+            replaceAll(loaded);
+        }
+
+        private Staged staged(UUID playerId) {
+            return players.computeIfAbsent(playerId, id -> new Staged());
         }
     }
 
-    /** Returns all player UUIDs that have any data (quick, named, or clone). */
+    /** One player's records in a {@link BulkLoader}; collections are created on first use. */
+    private static final class Staged {
+        Checkpoint quick;
+        Map<String, Checkpoint> named;
+        String selected;
+        Map<UUID, Instant> clones;
+        int clonedCount;
+        Set<String> cleared;
+    }
+
+    /** Returns all player UUIDs that have any data (quick, named, selection, clone or cleared). */
     public Set<UUID> getAllPlayerUuids() {
-        Set<UUID> all = new HashSet<>();
-        all.addAll(quickCheckpoints.keySet());
-        all.addAll(namedCheckpoints.keySet());
-        all.addAll(selectedNamedCheckpoints.keySet());
-        return Collections.unmodifiableSet(all);
+        return Collections.unmodifiableSet(new HashSet<>(snapshot.playerIds()));
     }
 
     // -----------------------------------------------------------------------
     // Sort / Search
     // -----------------------------------------------------------------------
 
+    /**
+     * Same as {@link #getSortedFilteredCheckpointNames(UUID, SortOrder, String, String, double, double)}
+     * without the viewer's world: {@link SortOrder#DISTANCE_ASC} then compares
+     * checkpoints of all worlds by x/z alone.
+     */
+    public List<String> getSortedFilteredCheckpointNames(
+            UUID playerId, SortOrder order, String query,
+            double playerX, double playerZ) {
+        return getSortedFilteredCheckpointNames(playerId, order, query, null, playerX, playerZ);
+    }
+
     /**
      * Returns a sorted (and optionally filtered) list of checkpoint names for
      * the given player. If {@code query} is non-null and non-empty the list is
-     * filtered to names that contain the query string (case-insensitive).
+     * filtered to names that match it, ignoring case: those starting with it
+     * first, then those containing it, then (for longer queries) those
+     * containing it with one character added, dropped or changed. Each of
+     * these keeps the requested order.
+     * <p>
+     * Name / creation / update orders are served from the player's maintained
+     * index. Without a query the result is an unmodifiable view of it that is
+     * not copied or sorted, so reading a page costs only the page size.
+     * {@link SortOrder#DISTANCE_ASC} lists the checkpoints in {@code world}
+     * nearest first, then those in other worlds by name; without a query
+     * that list is searched lazily as it is read.
+     * <p>
+     * Matches come from the player's name trigram index, and the player's
+     * last search is kept until the player changes, so turning pages of a
+     * search does not search again.
      */
     public List<String> getSortedFilteredCheckpointNames(
             UUID playerId, SortOrder order, String query,
-            double playerX, double playerZ) {
+            String world, double playerX, double playerZ) {
+        return getSortedFilteredCheckpointNames(playerId, order, query, world, playerX, playerZ, ClearSortOrder.NONE);
+    }
+
+    /**
+     * Same as {@link #getSortedFilteredCheckpointNames(UUID, SortOrder, String, String, double, double)},
+     * then grouped by cleared status as {@code clearOrder} asks, keeping the
+     * order within each group. Filtering and grouping share one pass.
+     */
+    public List<String> getSortedFilteredCheckpointNames(
+            UUID playerId, SortOrder order, String query,
+            String world, double playerX, double playerZ, ClearSortOrder clearOrder) {
 
         if (playerId == null) return Collections.emptyList();
 
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null || playerMap.isEmpty()) return Collections.emptyList();
-
-        List<Map.Entry<String, Checkpoint>> entries = new ArrayList<>(playerMap.entrySet());
-
-        // Filter by query
-        if (query != null && !query.trim().isEmpty()) {
-            String lower = query.toLowerCase();
-            entries.removeIf(e -> !e.getKey().toLowerCase().contains(lower));
-        }
-
-        Comparator<Map.Entry<String, Checkpoint>> comparator;
-        if (order == SortOrder.NAME_DESC) {
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(
-                e -> e.getKey(), String.CASE_INSENSITIVE_ORDER);
-            comparator = c.reversed();
-        } else if (order == SortOrder.CREATED_ASC) {
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(e -> e.getValue().createdAt());
-            comparator = c;
-        } else if (order == SortOrder.CREATED_DESC) {
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(e -> e.getValue().createdAt());
-            comparator = c.reversed();
-        } else if (order == SortOrder.UPDATED_ASC) {
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(e -> e.getValue().updatedAt());
-            comparator = c;
-        } else if (order == SortOrder.UPDATED_DESC) {
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(e -> e.getValue().updatedAt());
-            comparator = c.reversed();
-        } else if (order == SortOrder.DISTANCE_ASC) {
-            comparator = Comparator.comparingDouble(e -> distanceSq(e.getValue(), playerX, playerZ));
+        PlayerState player = state(playerId);
+        Map<String, Checkpoint> playerMap = player.data().named();
+        if (playerMap.isEmpty()) return Collections.emptyList();
+
+        boolean filtered = query != null && !query.trim().isEmpty();
+        List<String> sorted;
+        if (SortedNames.supports(order)) {
+            sorted = player.sortedNames().view(order != null ? order : SortOrder.NAME_ASC);
+        } else if (world != null) {
+            sorted = player.spatialIndex().sortedByDistance(world, playerX, playerZ,
+                player.sortedNames().view(SortOrder.NAME_ASC), playerMap);
         } else {
-            // NAME_ASC (default)
-            Comparator<Map.Entry<String, Checkpoint>> c = Comparator.comparing(
-                e -> e.getKey(), String.CASE_INSENSITIVE_ORDER);
-            comparator = c;
+            List<String> names = new ArrayList<>(player.sortedNames().view(SortOrder.NAME_ASC));
+            names.sort(Comparator.comparingDouble(name -> distanceSq(playerMap.get(name), playerX, playerZ)));
+            sorted = Collections.unmodifiableList(names);
+        }
+        boolean grouped = clearOrder != null && clearOrder != ClearSortOrder.NONE;
+        if (!filtered && !grouped) return sorted;
+
+        NameSearch search = filtered ? search(player, query) : null;
+        boolean remembered = search != null && SortedNames.supports(order);
+        if (remembered) {
+            List<String> previous = search.ordered(order, clearOrder);
+            if (previous != null) return previous;
         }
 
-        entries.sort(comparator);
+        // Ranking and grouping keep the index order within each group, so neither needs a sort
+        int ranks = filtered ? NameSearch.RANKS : 1;
+        boolean clearedFirst = clearOrder == ClearSortOrder.CLEARED_FIRST;
+        List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i < (grouped ? 2 : 1) * ranks; i++) groups.add(new ArrayList<>());
+        for (String name : sorted) {
+            int rank = filtered ? search.rank(name) : 0;
+            if (rank < 0) continue;
+            int group = grouped && player.isClearedKey(name) != clearedFirst ? 1 : 0;
+            groups.get(group * ranks + rank).add(name);
+        }
+        List<String> result = new ArrayList<>();
+        for (List<String> group : groups) result.addAll(group);
+        List<String> names = Collections.unmodifiableList(result);
+        if (remembered) search.remember(order, clearOrder, names);
+        return names;
+    }
 
-        List<String> result = new ArrayList<>(entries.size());
-        for (Map.Entry<String, Checkpoint> e : entries) result.add(e.getKey());
-        return Collections.unmodifiableList(result);
+    /**
+     * Returns the names of the (at most) {@code limit} checkpoints in
+     * {@code world} nearest to the given x/z, nearest first.
+     */
+    public List<String> getNearestCheckpointNames(UUID playerId, String world, double px, double pz, int limit) {
+        if (playerId == null || world == null || limit <= 0) return Collections.emptyList();
+        PlayerState player = state(playerId);
+        if (player.data().named().isEmpty()) return Collections.emptyList();
+        return Collections.unmodifiableList(player.spatialIndex().nearest(world, px, pz, limit));
+    }
+
+    /** Searches the player's names for {@code query}, reusing the player's latest search if it is still current. */
+    private NameSearch search(PlayerState player, String query) {
+        // A batch's versions are not published yet, and never are if it fails
+        if (ownBatch() != null) return player.search(query);
+        UUID playerId = player.data().playerId();
+        NameSearch last = searches.get(playerId);
+        if (last != null && last.version() == player.version() && last.query().equals(PlayerState.fold(query))) {
+            return last;
+        }
+        NameSearch result = player.search(query);
+        searches.put(playerId, result);
+        return result;
     }
 
     private static double distanceSq(Checkpoint cp, double px, double pz) {
@@ -209,21 +618,27 @@ public class CheckpointManager {
     public void setQuickCheckpoint(UUID playerId, Checkpoint checkpoint) {
         UUID validatedId = Objects.requireNonNull(playerId, "playerId cannot be null");
         Checkpoint validatedCheckpoint = Objects.requireNonNull(checkpoint, "checkpoint cannot be null");
-        quickCheckpoints.put(validatedId, validatedCheckpoint);
-        notifyDataChanged();
+        synchronized (stripe(validatedId)) {
+            publish(state(validatedId).withQuick(validatedCheckpoint));
+            post(new CheckpointEvent.QuickChanged(validatedId, validatedCheckpoint));
+        }
+        deliver();
     }
 
     public Optional<Checkpoint> getQuickCheckpoint(UUID playerId) {
         if (playerId == null) {
             return Optional.empty();
         }
-        return Optional.ofNullable(quickCheckpoints.get(playerId));
+        return Optional.ofNullable(data(playerId).quick());
     }
 
     public void clearQuickCheckpoint(UUID playerId) {
         if (playerId != null) {
-            quickCheckpoints.remove(playerId);
-            notifyDataChanged();
+            synchronized (stripe(playerId)) {
+                publish(state(playerId).withQuick(null));
+                post(new CheckpointEvent.QuickChanged(playerId, null));
+            }
+            deliver();
         }
     }
 
@@ -236,14 +651,16 @@ public class CheckpointManager {
         Checkpoint validatedCheckpoint = Objects.requireNonNull(checkpoint, "checkpoint cannot be null");
         String name = validateName(rawName);
 
-        Map<String, Checkpoint> playerMap = namedCheckpoints.computeIfAbsent(validatedId, id -> new ConcurrentHashMap<>());
-        Optional<String> existing = findExistingKey(playerMap, name);
-        if (existing.isPresent()) {
-            return false;
-        }
+        synchronized (stripe(validatedId)) {
+            PlayerState player = state(validatedId);
+            if (player.findKey(name) != null) {
+                return false;
+            }
 
-        playerMap.put(name, validatedCheckpoint);
-        notifyDataChanged();
+            publish(player.withNamed(name, validatedCheckpoint));
+            post(new CheckpointEvent.Added(validatedId, name, validatedCheckpoint));
+        }
+        deliver();
         return true;
     }
 
@@ -252,52 +669,45 @@ public class CheckpointManager {
         Checkpoint validatedCheckpoint = Objects.requireNonNull(checkpoint, "checkpoint cannot be null");
         String name = validateName(rawName);
 
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(validatedId);
-        if (playerMap == null || playerMap.isEmpty()) {
-            return false;
-        }
+        synchronized (stripe(validatedId)) {
+            PlayerState player = state(validatedId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) {
+                return false;
+            }
 
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) {
-            return false;
+            // Preserve createdAt, refresh updatedAt
+            Checkpoint existing = player.data().named().get(actualKey);
+            Checkpoint updated = validatedCheckpoint.withTimestamps(existing.createdAt(), Instant.now());
+            publish(player.withNamed(actualKey, updated));
+            post(new CheckpointEvent.Updated(validatedId, actualKey, updated));
         }
-
-        // Preserve createdAt, refresh updatedAt
-        Checkpoint existing = playerMap.get(actualKey.get());
-        Checkpoint updated = validatedCheckpoint.withTimestamps(existing.createdAt(), Instant.now());
-        playerMap.put(actualKey.get(), updated);
-        notifyDataChanged();
+        deliver();
         return true;
     }
 
     public boolean removeNamedCheckpoint(UUID playerId, String rawName) {
-        if (playerId == null) {
+        if (playerId == null || data(playerId).named().isEmpty()) {
             return false;
         }
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) {
-            return false;
-        }
-
         String name = validateName(rawName);
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) {
-            return false;
-        }
 
-        playerMap.remove(actualKey.get());
-        if (playerMap.isEmpty()) {
-            namedCheckpoints.remove(playerId);
-        }
+        synchronized (stripe(playerId)) {
+            PlayerState player = state(playerId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) {
+                return false;
+            }
 
-        selectedNamedCheckpoints.computeIfPresent(playerId, (id, selected) -> selected.equalsIgnoreCase(name) ? null : selected);
-        // Remove from cleared set
-        Set<String> cleared = clearedCheckpoints.get(playerId);
-        if (cleared != null) {
-            cleared.removeIf(n -> n.equalsIgnoreCase(name));
-            if (cleared.isEmpty()) clearedCheckpoints.remove(playerId);
+            player = player.withoutNamed(actualKey);
+            String selected = player.data().selected();
+            if (selected != null && selected.equalsIgnoreCase(name)) {
+                player = player.withSelected(null);
+            }
+            publish(player);
+            post(new CheckpointEvent.Removed(playerId, actualKey));
         }
-        notifyDataChanged();
+        deliver();
         return true;
     }
 
@@ -305,27 +715,35 @@ public class CheckpointManager {
         if (playerId == null || rawName == null) {
             return Optional.empty();
         }
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) {
-            return Optional.empty();
-        }
-
-        Optional<String> actualKey = findExistingKey(playerMap, rawName);
-        return actualKey.map(playerMap::get);
+        return Optional.ofNullable(state(playerId).findNamed(rawName));
     }
 
     public List<String> getNamedCheckpointNames(UUID playerId) {
         if (playerId == null) {
             return Collections.emptyList();
         }
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null || playerMap.isEmpty()) {
+        PlayerState player = state(playerId);
+        if (player.data().named().isEmpty()) {
             return Collections.emptyList();
         }
+        return player.sortedNames().view(SortOrder.NAME_ASC);
+    }
 
-        List<String> names = new ArrayList<>(playerMap.keySet());
-        names.sort(String.CASE_INSENSITIVE_ORDER);
-        return Collections.unmodifiableList(names);
+    /**
+     * Returns up to {@code limit} of the player's checkpoint names that start
+     * with {@code prefix} (ignoring case), in name order. Found by binary
+     * search in the sorted name index, so the cost does not depend on how
+     * many names the player has. The list is read-only.
+     */
+    public List<String> getNamedCheckpointNamesStartingWith(UUID playerId, String prefix, int limit) {
+        if (playerId == null || prefix == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        PlayerState player = state(playerId);
+        if (player.data().named().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return player.sortedNames().startingWith(prefix, limit);
     }
 
     // -----------------------------------------------------------------------
@@ -333,22 +751,22 @@ public class CheckpointManager {
     // -----------------------------------------------------------------------
 
     public boolean selectNamedCheckpoint(UUID playerId, String rawName) {
-        if (playerId == null) {
+        if (playerId == null || data(playerId).named().isEmpty()) {
             return false;
         }
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) {
-            return false;
-        }
-
         String name = validateName(rawName);
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) {
-            return false;
-        }
 
-        selectedNamedCheckpoints.put(playerId, actualKey.get());
-        notifyDataChanged();
+        synchronized (stripe(playerId)) {
+            PlayerState player = state(playerId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) {
+                return false;
+            }
+
+            publish(player.withSelected(actualKey));
+            post(new CheckpointEvent.Selected(playerId, actualKey));
+        }
+        deliver();
         return true;
     }
 
@@ -356,21 +774,23 @@ public class CheckpointManager {
         if (playerId == null) {
             return Optional.empty();
         }
-        String selected = selectedNamedCheckpoints.get(playerId);
+        PlayerState player = state(playerId);
+        String selected = player.data().selected();
         if (selected == null) {
             return Optional.empty();
         }
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) {
-            selectedNamedCheckpoints.remove(playerId);
-            return Optional.empty();
-        }
-        Optional<String> actualKey = findExistingKey(playerMap, selected);
-        if (!actualKey.isPresent()) {
-            selectedNamedCheckpoints.remove(playerId);
+        String actualKey = player.findKey(selected);
+        if (actualKey == null) {
+            synchronized (stripe(playerId)) {
+                PlayerState latest = state(playerId);
+                String latestSelected = latest.data().selected();
+                if (latestSelected != null && latest.findKey(latestSelected) == null) {
+                    publish(latest.withSelected(null));
+                }
+            }
             return Optional.empty();
         }
-        return Optional.of(actualKey.get());
+        return Optional.of(actualKey);
     }
 
     public Optional<Checkpoint> getSelectedNamedCheckpoint(UUID playerId) {
@@ -379,8 +799,11 @@ public class CheckpointManager {
 
     public void clearSelectedNamedCheckpoint(UUID playerId) {
         if (playerId != null) {
-            selectedNamedCheckpoints.remove(playerId);
-            notifyDataChanged();
+            synchronized (stripe(playerId)) {
+                publish(state(playerId).withSelected(null));
+                post(new CheckpointEvent.Selected(playerId, null));
+            }
+            deliver();
         }
     }
 
@@ -389,15 +812,17 @@ public class CheckpointManager {
     // -----------------------------------------------------------------------
 
     public boolean setNamedCheckpointDescription(UUID playerId, String rawName, String description) {
-        if (playerId == null) return false;
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) return false;
+        if (playerId == null || data(playerId).named().isEmpty()) return false;
         String name = validateName(rawName);
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) return false;
-        Checkpoint existing = playerMap.get(actualKey.get());
-        playerMap.put(actualKey.get(), existing.withDescription(description));
-        notifyDataChanged();
+        synchronized (stripe(playerId)) {
+            PlayerState player = state(playerId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) return false;
+            Checkpoint described = player.data().named().get(actualKey).withDescription(description);
+            publish(player.withNamed(actualKey, described));
+            post(new CheckpointEvent.Updated(playerId, actualKey, described));
+        }
+        deliver();
         return true;
     }
 
@@ -410,36 +835,35 @@ public class CheckpointManager {
         String oldName = validateName(oldRawName);
         String newName = validateName(newRawName);
 
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(validatedId);
-        if (playerMap == null) {
-            return RenameResult.OLD_NOT_FOUND;
-        }
-
-        Optional<String> oldKey = findExistingKey(playerMap, oldName);
-        if (!oldKey.isPresent()) {
-            return RenameResult.OLD_NOT_FOUND;
-        }
+        synchronized (stripe(validatedId)) {
+            PlayerState player = state(validatedId);
+            String oldKey = player.findKey(oldName);
+            if (oldKey == null) {
+                return RenameResult.OLD_NOT_FOUND;
+            }
 
-        Optional<String> newKey = findExistingKey(playerMap, newName);
-        if (newKey.isPresent()) {
-            return RenameResult.NEW_ALREADY_EXISTS;
-        }
+            if (player.findKey(newName) != null) {
+                return RenameResult.NEW_ALREADY_EXISTS;
+            }
 
-        Checkpoint checkpoint = playerMap.remove(oldKey.get());
-        // Refresh updatedAt on rename
-        Checkpoint renamed = checkpoint.withTimestamps(checkpoint.createdAt(), Instant.now());
-        playerMap.put(newName, renamed);
+            Checkpoint checkpoint = player.data().named().get(oldKey);
+            // Refresh updatedAt on rename
+            Checkpoint renamed = checkpoint.withTimestamps(checkpoint.createdAt(), Instant.now());
+            PlayerState result = player.withoutNamed(oldKey).withNamed(newName, renamed);
+            // The cleared mark goes with the checkpoint
+            if (player.isClearedKey(oldKey)) {
+                result = result.withCleared(newName);
+            }
 
-        selectedNamedCheckpoints.computeIfPresent(validatedId,
-            (id, selected) -> selected.equalsIgnoreCase(oldName) ? newName : selected);
+            String selected = result.data().selected();
+            if (selected != null && selected.equalsIgnoreCase(oldName)) {
+                result = result.withSelected(newName);
+            }
 
-        // Transfer cleared status to new name
-        Set<String> cleared = clearedCheckpoints.get(validatedId);
-        if (cleared != null && cleared.removeIf(n -> n.equalsIgnoreCase(oldName))) {
-            cleared.add(newName);
+            publish(result);
+            post(new CheckpointEvent.Renamed(validatedId, oldKey, newName, renamed));
         }
-
-        notifyDataChanged();
+        deliver();
         return RenameResult.SUCCESS;
     }
 
@@ -449,40 +873,40 @@ public class CheckpointManager {
 
     /** Mark a named checkpoint as cleared. Returns false if the CP doesn't exist. */
     public boolean markCleared(UUID playerId, String rawName) {
-        if (playerId == null) return false;
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) return false;
+        if (playerId == null || data(playerId).named().isEmpty()) return false;
         String name = validateName(rawName);
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) return false;
-        clearedCheckpoints.computeIfAbsent(playerId, k -> ConcurrentHashMap.newKeySet())
-            .add(actualKey.get());
-        notifyDataChanged();
+        synchronized (stripe(playerId)) {
+            PlayerState player = state(playerId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) return false;
+            publish(player.withCleared(actualKey));
+            post(new CheckpointEvent.ClearedChanged(playerId, actualKey, true));
+        }
+        deliver();
         return true;
     }
 
     /** Unmark a named checkpoint as cleared. Returns false if the CP doesn't exist or wasn't cleared. */
     public boolean unmarkCleared(UUID playerId, String rawName) {
-        if (playerId == null) return false;
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null) return false;
+        if (playerId == null || data(playerId).named().isEmpty()) return false;
         String name = validateName(rawName);
-        Optional<String> actualKey = findExistingKey(playerMap, name);
-        if (!actualKey.isPresent()) return false;
-        Set<String> cleared = clearedCheckpoints.get(playerId);
-        if (cleared == null) return false;
-        boolean removed = cleared.removeIf(n -> n.equalsIgnoreCase(actualKey.get()));
-        if (cleared.isEmpty()) clearedCheckpoints.remove(playerId);
-        if (removed) notifyDataChanged();
-        return removed;
+        synchronized (stripe(playerId)) {
+            PlayerState player = state(playerId);
+            String actualKey = player.findKey(name);
+            if (actualKey == null) return false;
+            PlayerState uncleared = player.withoutCleared(actualKey);
+            if (uncleared == player) return false;
+            publish(uncleared);
+            post(new CheckpointEvent.ClearedChanged(playerId, actualKey, false));
+        }
+        deliver();
+        return true;
     }
 
     /** Check if a named checkpoint is cleared. */
     public boolean isCleared(UUID playerId, String rawName) {
-        if (playerId == null || rawName == null) return false;
-        Set<String> cleared = clearedCheckpoints.get(playerId);
-        if (cleared == null) return false;
-        return cleared.stream().anyMatch(n -> n.equalsIgnoreCase(rawName.trim()));
+        if (playerId == null) return false;
+        return state(playerId).isCleared(rawName);
     }
 
     // -----------------------------------------------------------------------
@@ -492,22 +916,40 @@ public class CheckpointManager {
     public void recordClone(UUID clonerId, UUID sourcePlayerId) {
         Objects.requireNonNull(clonerId, "clonerId cannot be null");
         Objects.requireNonNull(sourcePlayerId, "sourcePlayerId cannot be null");
-        cloneHistory.computeIfAbsent(clonerId, k -> new ConcurrentHashMap<>())
-            .put(sourcePlayerId, Instant.now());
-        clonedCounts.merge(sourcePlayerId, 1, Integer::sum);
-        notifyDataChanged();
+        Instant now = Instant.now();
+        Object first = stripe(clonerId);
+        Object second = stripe(sourcePlayerId);
+        if (stripeIndex(sourcePlayerId) < stripeIndex(clonerId)) {
+            Object swap = first;
+            first = second;
+            second = swap;
+        }
+        synchronized (first) {
+            synchronized (second) {
+                PlayerState cloner = state(clonerId).withClone(sourcePlayerId, now);
+                // Cloning one's own checkpoints touches a single value
+                PlayerState source = clonerId.equals(sourcePlayerId) ? cloner : state(sourcePlayerId);
+                int count = source.data().clonedCount() + 1;
+                source = source.withClonedCount(count);
+                if (clonerId.equals(sourcePlayerId)) {
+                    publish(source);
+                } else {
+                    publish(cloner, source);
+                }
+                post(new CheckpointEvent.CloneRecorded(clonerId, sourcePlayerId, now, count));
+            }
+        }
+        deliver();
     }
 
     public Optional<Instant> getCloneTime(UUID clonerId, UUID sourcePlayerId) {
         if (clonerId == null || sourcePlayerId == null) return Optional.empty();
-        Map<UUID, Instant> history = cloneHistory.get(clonerId);
-        if (history == null) return Optional.empty();
-        return Optional.ofNullable(history.get(sourcePlayerId));
+        return Optional.ofNullable(data(clonerId).cloneHistory().get(sourcePlayerId));
     }
 
     public int getClonedCount(UUID playerId) {
         if (playerId == null) return 0;
-        return clonedCounts.getOrDefault(playerId, 0);
+        return data(playerId).clonedCount();
     }
 
     // -----------------------------------------------------------------------
@@ -515,40 +957,165 @@ public class CheckpointManager {
     // -----------------------------------------------------------------------
 
     public Set<UUID> getAllPlayersWithData() {
-        return Collections.unmodifiableSet(new HashSet<>(namedCheckpoints.keySet()));
+        Set<UUID> players = new HashSet<>();
+        for (PlayerData data : snapshot) {
+            if (!data.named().isEmpty()) players.add(data.playerId());
+        }
+        return Collections.unmodifiableSet(players);
+    }
+
+    /** Returns the player's checkpoint counts and last activity, kept up to date by every change. */
+    public PlayerStats getPlayerStats(UUID playerId) {
+        if (playerId == null) return PlayerStats.EMPTY;
+        return state(playerId).stats();
     }
 
     public Optional<Instant> getLastActivityTime(UUID playerId) {
-        if (playerId == null) return Optional.empty();
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null || playerMap.isEmpty()) return Optional.empty();
-        return playerMap.values().stream()
-            .map(Checkpoint::updatedAt)
-            .max(Comparator.naturalOrder());
+        return Optional.ofNullable(getPlayerStats(playerId).lastActivity());
     }
 
+    /** Squared x/z distance to the player's nearest checkpoint in any world. */
     public double getNearestCpDistanceSq(UUID playerId, double px, double pz) {
         if (playerId == null) return Double.MAX_VALUE;
-        Map<String, Checkpoint> playerMap = namedCheckpoints.get(playerId);
-        if (playerMap == null || playerMap.isEmpty()) return Double.MAX_VALUE;
-        return playerMap.values().stream()
-            .mapToDouble(cp -> distanceSq(cp, px, pz))
-            .min()
-            .orElse(Double.MAX_VALUE);
+        PlayerState player = state(playerId);
+        if (player.data().named().isEmpty()) return Double.MAX_VALUE;
+        return player.spatialIndex().nearestDistanceSqAnyWorld(px, pz);
+    }
+
+    /** Squared x/z distance to the player's nearest checkpoint in {@code world}. */
+    public double getNearestCpDistanceSq(UUID playerId, String world, double px, double pz) {
+        if (playerId == null || world == null) return Double.MAX_VALUE;
+        PlayerState player = state(playerId);
+        if (player.data().named().isEmpty()) return Double.MAX_VALUE;
+        return player.spatialIndex().nearestDistanceSq(world, px, pz);
+    }
+
+    /**
+     * Returns the players of {@link #getAllPlayersWithData()} ordered by their
+     * nearest checkpoint in {@code world}; players with none there come last.
+     * Served from a server-wide index, so the list is only searched as far as
+     * it is read. The list is not thread-safe.
+     */
+    public List<UUID> getPlayersByNearestCheckpoint(String world, double px, double pz) {
+        CheckpointSnapshot current = snapshot;
+        List<UUID> players = new ArrayList<>();
+        for (PlayerData data : current) {
+            if (!data.named().isEmpty()) players.add(data.playerId());
+        }
+        if (world == null) {
+            players.sort(Comparator.comparingDouble(
+                (UUID id) -> current.state(id).spatialIndex().nearestDistanceSqAnyWorld(px, pz)));
+            return players;
+        }
+        return current.spatialIndex().playersByDistance(world, px, pz, players);
+    }
+
+    // -----------------------------------------------------------------------
+    // Batches
+    // -----------------------------------------------------------------------
+
+    /**
+     * Runs {@code changes} against this manager as one transaction. Other
+     * threads see none of its changes until it returns and then all of them
+     * at once; the players are marked dirty and the {@link #events() events}
+     * queued in order at that point, and delivered once every stripe is
+     * released. If {@code changes} throws, nothing is applied.
+     * <p>
+     * Inside the batch, per-player lookups see the batch's own changes.
+     * A batch holds every player's stripe, so writers on other threads wait
+     * while it runs; keep it short. A batch started inside a batch joins the
+     * outer one.
+     *
+     * @return whatever {@code changes} returns
+     */
+    public <T> T batch(Function<CheckpointManager, T> changes) {
+        Objects.requireNonNull(changes, "changes cannot be null");
+        if (ownBatch() != null) return changes.apply(this);
+
+        Batch done = new Batch();
+        T result = withAllStripes(0, () -> {
+            done.pending = snapshot;
+            batch = done;
+            T applied;
+            try {
+                applied = changes.apply(this);
+            } finally {
+                batch = null;
+            }
+            snapshot = done.pending;
+            for (CheckpointEvent event : done.posted) post(event);
+            return applied;
+        });
+        deliver();
+        return result;
+    }
+
+    /** State of a running batch; only touched by its own thread, which holds every stripe. */
+    private static final class Batch {
+        final Thread owner = Thread.currentThread();
+        CheckpointSnapshot pending;
+        final List<CheckpointEvent> posted = new ArrayList<>();
+    }
+
+    /** Returns the batch run by the calling thread, or null. */
+    private Batch ownBatch() {
+        Batch running = batch;
+        return running != null && running.owner == Thread.currentThread() ? running : null;
     }
 
     // -----------------------------------------------------------------------
     // Internal helpers
     // -----------------------------------------------------------------------
 
-    private Optional<String> findExistingKey(Map<String, Checkpoint> playerMap, String rawName) {
-        if (playerMap == null || rawName == null) {
-            return Optional.empty();
+    /** Returns the player's state in the current snapshot (or the caller's batch), or an empty one. */
+    private PlayerState state(UUID playerId) {
+        Batch own = ownBatch();
+        PlayerState player = (own != null ? own.pending : snapshot).state(playerId);
+        return player != null ? player : PlayerState.empty(playerId);
+    }
+
+    private PlayerData data(UUID playerId) {
+        return state(playerId).data();
+    }
+
+    /**
+     * Publishes a new snapshot with the given players replaced. Caller holds
+     * their stripes; writers of other players may publish concurrently, so
+     * the swap is retried on top of theirs.
+     */
+    private void publish(PlayerState... updates) {
+        Batch own = ownBatch();
+        if (own != null) {
+            own.pending = own.pending.with(updates);
+            return;
+        }
+        swap(current -> current.with(updates));
+    }
+
+    /** Replaces the published snapshot with {@code change} applied to it, retrying on concurrent publishes. */
+    private void swap(UnaryOperator<CheckpointSnapshot> change) {
+        CheckpointSnapshot current;
+        do {
+            current = snapshot;
+        } while (!SNAPSHOT.compareAndSet(this, current, change.apply(current)));
+    }
+
+    private int stripeIndex(UUID playerId) {
+        int h = playerId.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    /** The writer lock of {@code playerId}'s group of players. */
+    private Object stripe(UUID playerId) {
+        return stripes[stripeIndex(playerId)];
+    }
+
+    /** Runs {@code action} holding every stripe, taken in index order. */
+    private <T> T withAllStripes(int from, Supplier<T> action) {
+        if (from == stripes.length) return action.get();
+        synchronized (stripes[from]) {
+            return withAllStripes(from + 1, action);
         }
-        String name = rawName.trim();
-        return playerMap.keySet().stream()
-            .filter(existing -> existing.equalsIgnoreCase(name))
-            .findFirst();
     }
 
     private String validateName(String rawName) {
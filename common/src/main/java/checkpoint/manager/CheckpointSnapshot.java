@@ -0,0 +1,168 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable state of a {@link CheckpointManager}: every player's
+ * {@link PlayerData} (with the manager's lookup structures for it) at one
+ * point in time.
+ * <p>
+ * The manager republishes a new snapshot on each change, so
+ * {@link CheckpointManager#snapshot()} only reads a reference and a save can
+ * serialize the result on another thread while gameplay keeps changing the
+ * manager. Players are held in a {@link PlayerTable}; a change copies only the
+ * trie nodes on the path to each affected player, never the other players'
+ * data, which is itself immutable and shared between snapshots.
+ * <p>
+ * Once the server-wide {@link SpatialIndex} has been asked for, each later
+ * snapshot carries it forward, changed only for the checkpoints that moved.
+ * <p>
+ * Each snapshot has a version one above the one it was derived from, and
+ * stamps the players it changed with it, so a player's {@link #version(UUID)
+ * version} only grows and tells whether the player changed between two reads.
+ */
+public final class CheckpointSnapshot implements Iterable<PlayerData> {
+
+    static final CheckpointSnapshot EMPTY = new CheckpointSnapshot(PlayerTable.EMPTY, null, 0L, 0L);
+
+    private final PlayerTable players;
+    /** Every player's checkpoint positions, built on first use. */
+    private volatile SpatialIndex spatial;
+    private final long version;
+    /** Version of the latest snapshot that removed a player, which absent players report. */
+    private final long removedVersion;
+
+    private CheckpointSnapshot(PlayerTable players, SpatialIndex spatial, long version, long removedVersion) {
+        this.players = players;
+        this.spatial = spatial;
+        this.version = version;
+        this.removedVersion = removedVersion;
+    }
+
+    /**
+     * Builds a snapshot holding the given players, all stamped with
+     * {@code version}; empty values are skipped.
+     */
+    static CheckpointSnapshot of(Collection<PlayerData> players, long version) {
+        List<PlayerState> states = new ArrayList<>(players.size());
+        for (PlayerData data : players) {
+            if (!data.isEmpty()) states.add(PlayerState.of(data).withVersion(version));
+        }
+        return new CheckpointSnapshot(PlayerTable.of(states.toArray(new PlayerState[0])), null, version, version);
+    }
+
+    /**
+     * Returns a copy of this snapshot with the given players replaced. An
+     * empty value removes the player.
+     */
+    CheckpointSnapshot with(PlayerState... updates) {
+        return with(true, updates);
+    }
+
+    /** Like {@link #with}, for a change of representation only: the players keep their versions. */
+    CheckpointSnapshot withSameContent(PlayerState... updates) {
+        return with(false, updates);
+    }
+
+    private CheckpointSnapshot with(boolean stamp, PlayerState... updates) {
+        PlayerTable table = players;
+        SpatialIndex positions = spatial;
+        long newVersion = version + 1;
+        long newRemovedVersion = removedVersion;
+        for (PlayerState update : updates) {
+            UUID playerId = update.data().playerId();
+            PlayerState previous = table.get(playerId);
+            PlayerState state = update.withVersion(stamp || previous == null ? newVersion : previous.version());
+            if (state.isEmpty()) {
+                table = table.without(playerId);
+                if (previous != null) newRemovedVersion = newVersion;
+            } else {
+                table = table.with(state);
+            }
+            // A change of representation leaves every position where it was
+            if (positions != null && stamp) {
+                Map<String, Checkpoint> before = previous != null
+                    ? previous.data().named() : Collections.<String, Checkpoint>emptyMap();
+                positions = positions.withPlayer(playerId, before, state.data().named());
+            }
+        }
+        return new CheckpointSnapshot(table, positions, newVersion, newRemovedVersion);
+    }
+
+    /** Returns the player's data, or null if nothing is stored for the player. */
+    public PlayerData get(UUID playerId) {
+        PlayerState state = state(playerId);
+        return state != null ? state.data() : null;
+    }
+
+    /** Returns the player's state, or null if nothing is stored for the player. */
+    PlayerState state(UUID playerId) {
+        return players.get(playerId);
+    }
+
+    /**
+     * Returns a number that grows whenever the player's data changes, so a
+     * cache can check it is still current with one comparison. Players
+     * without data report the version of the latest removal, which may move
+     * on without them having changed.
+     */
+    long version(UUID playerId) {
+        PlayerState state = state(playerId);
+        return state != null ? state.version() : removedVersion;
+    }
+
+    /** Server-wide checkpoint positions. */
+    SpatialIndex spatialIndex() {
+        SpatialIndex result = spatial;
+        if (result == null) {
+            result = SpatialIndex.ofPlayers(this);
+            spatial = result;
+        }
+        return result;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /** Number of players with data. */
+    public int size() {
+        return players.size();
+    }
+
+    public boolean isEmpty() {
+        return players.size() == 0;
+    }
+
+    /** Returns the ids of all players with data. */
+    public List<UUID> playerIds() {
+        List<UUID> ids = new ArrayList<>(players.size());
+        for (PlayerState state : players) ids.add(state.data().playerId());
+        return ids;
+    }
+
+    /** Iterates over the data of every player; empty players are never included. */
+    @Override
+    public Iterator<PlayerData> iterator() {
+        Iterator<PlayerState> states = players.iterator();
+        return new Iterator<PlayerData>() {
+            @Override
+            public boolean hasNext() {
+                return states.hasNext();
+            }
+
+            @Override
+            public PlayerData next() {
+                return states.next().data();
+            }
+        };
+    }
+}
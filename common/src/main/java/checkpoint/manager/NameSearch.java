@@ -0,0 +1,145 @@
+package checkpoint.manager;
+
+import checkpoint.model.ClearSortOrder;
+import checkpoint.model.SortOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The checkpoint names of one {@link PlayerState} matching one search query,
+ * each ranked: names starting with the query first, then names containing
+ * it, then (for queries of {@link #FUZZY_MIN_LENGTH} or more characters)
+ * names containing something within one edit of it. Matching ignores case.
+ * <p>
+ * {@link CheckpointManager} keeps each player's latest search with the
+ * player's version at the time, so turning pages of the same search reuses
+ * the matches, and the ordered result for the last order asked for, until
+ * the player changes.
+ */
+final class NameSearch {
+
+    static final int PREFIX = 0;
+    static final int SUBSTRING = 1;
+    static final int FUZZY = 2;
+    static final int RANKS = 3;
+
+    /** Shorter queries are within one edit of too many names to be useful. */
+    static final int FUZZY_MIN_LENGTH = 4;
+
+    /** The {@link PlayerState#fold folded} query. */
+    private final String query;
+    /** Rank of every matching key. */
+    private final Map<String, Integer> ranks;
+    /** Version of the player whose names were searched. */
+    private final long version;
+    private volatile Ordered ordered;
+
+    private NameSearch(String query, Map<String, Integer> ranks, long version) {
+        this.query = query;
+        this.ranks = ranks;
+        this.version = version;
+    }
+
+    /**
+     * Searches {@code keys} for {@code query}, reading candidates from
+     * {@code index}: keys containing every gram of the query, or, for a fuzzy
+     * search, of either half of it (one edit leaves at least one half
+     * intact). Queries too short for grams look at every key.
+     *
+     * @param version the version of the player the keys belong to
+     */
+    static NameSearch run(String query, TrigramIndex index, Collection<String> keys, long version) {
+        String folded = PlayerState.fold(query);
+        boolean fuzzy = folded.length() >= FUZZY_MIN_LENGTH;
+        Collection<String> candidates;
+        if (fuzzy) {
+            int half = folded.length() / 2;
+            String[] left = index.containing(folded.substring(0, half));
+            String[] right = index.containing(folded.substring(half));
+            if (left == null || right == null) {
+                candidates = keys;
+            } else {
+                Set<String> union = new LinkedHashSet<>(Arrays.asList(left));
+                union.addAll(Arrays.asList(right));
+                candidates = union;
+            }
+        } else {
+            String[] containing = index.containing(folded);
+            candidates = containing != null ? Arrays.asList(containing) : keys;
+        }
+
+        Map<String, Integer> ranks = new HashMap<>();
+        for (String key : candidates) {
+            String name = PlayerState.fold(key);
+            if (name.startsWith(folded)) ranks.put(key, PREFIX);
+            else if (name.contains(folded)) ranks.put(key, SUBSTRING);
+            else if (fuzzy && withinOneEdit(name, folded)) ranks.put(key, FUZZY);
+        }
+        return new NameSearch(folded, ranks, version);
+    }
+
+    String query() {
+        return query;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /** Rank of {@code key}, or -1 if it does not match. */
+    int rank(String key) {
+        Integer rank = ranks.get(key);
+        return rank != null ? rank : -1;
+    }
+
+    /** The result last remembered for {@code order} and {@code clearOrder}, or null. */
+    List<String> ordered(SortOrder order, ClearSortOrder clearOrder) {
+        Ordered last = ordered;
+        return last != null && last.order == order && last.clearOrder == clearOrder ? last.names : null;
+    }
+
+    void remember(SortOrder order, ClearSortOrder clearOrder, List<String> names) {
+        ordered = new Ordered(order, clearOrder, names);
+    }
+
+    private static final class Ordered {
+        final SortOrder order;
+        final ClearSortOrder clearOrder;
+        final List<String> names;
+
+        Ordered(SortOrder order, ClearSortOrder clearOrder, List<String> names) {
+            this.order = order;
+            this.clearOrder = clearOrder;
+            this.names = names;
+        }
+    }
+
+    /**
+     * Returns true if some substring of {@code text} is at most one insertion,
+     * deletion or substitution away from {@code pattern} (Sellers' algorithm).
+     */
+    static boolean withinOneEdit(String text, String pattern) {
+        int m = pattern.length();
+        int[] column = new int[m + 1];
+        for (int j = 0; j <= m; j++) column[j] = j;
+        if (column[m] <= 1) return true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int diagonal = 0;
+            column[0] = 0;
+            for (int j = 1; j <= m; j++) {
+                int above = column[j];
+                int cost = pattern.charAt(j - 1) == c ? diagonal : diagonal + 1;
+                column[j] = Math.min(cost, Math.min(above, column[j - 1]) + 1);
+                diagonal = above;
+            }
+            if (column[m] <= 1) return true;
+        }
+        return false;
+    }
+}
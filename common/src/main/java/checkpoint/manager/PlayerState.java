@@ -0,0 +1,295 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import checkpoint.model.PlayerStats;
+import checkpoint.model.SortOrder;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One player's {@link PlayerData} together with the lookup structures the
+ * manager derives from it. Immutable like the data itself: every change
+ * returns a new state, updating the derived structures incrementally and
+ * sharing whatever did not change.
+ */
+final class PlayerState {
+
+    private final PlayerData data;
+    /**
+     * Named checkpoint keys by {@link #fold folded} name, built on first
+     * lookup (players that are only loaded never need it) and maintained by
+     * every change after that.
+     */
+    private volatile Map<String, String> keys;
+    /**
+     * Sort orders, built on first use so that loading does not sort players
+     * nobody looks at, then maintained by every change.
+     */
+    private volatile SortedNames sorted;
+    /** Positions per world, built on first use like {@link #sorted}. */
+    private volatile SpatialIndex spatial;
+    /**
+     * Counts and last activity, kept up to date by every change. Null only
+     * after the latest checkpoint was removed or moved back in time, until
+     * the next read finds the new latest one.
+     */
+    private volatile PlayerStats stats;
+    /** Name grams for search, built on first use like {@link #sorted}. */
+    private volatile TrigramIndex trigrams;
+    /** Stamp of the snapshot that last changed this player; set by {@link CheckpointSnapshot}. */
+    private final long version;
+
+    private PlayerState(PlayerData data, Map<String, String> keys, SortedNames sorted, SpatialIndex spatial, TrigramIndex trigrams,
+                        PlayerStats stats, long version) {
+        this.data = data;
+        this.keys = keys;
+        this.sorted = sorted;
+        this.spatial = spatial;
+        this.trigrams = trigrams;
+        this.stats = stats;
+        this.version = version;
+    }
+
+    /** Same indexes, different data with the same named checkpoint keys. */
+    private PlayerState with(PlayerData changed) {
+        if (changed == data) return this;
+        PlayerStats current = stats;
+        return new PlayerState(changed, keys, sorted, spatial, trigrams,
+            current != null ? current.withCounts(changed) : null, version);
+    }
+
+    static PlayerState of(PlayerData data) {
+        return new PlayerState(data, data.named().isEmpty() ? Collections.<String, String>emptyMap() : null,
+            null, null, null, PlayerStats.of(data), 0L);
+    }
+
+    static PlayerState empty(UUID playerId) {
+        return new PlayerState(PlayerData.empty(playerId), Collections.<String, String>emptyMap(),
+            null, null, null, PlayerStats.EMPTY, 0L);
+    }
+
+    long version() {
+        return version;
+    }
+
+    /** Same state, stamped with {@code stamp}. */
+    PlayerState withVersion(long stamp) {
+        if (stamp == version) return this;
+        return new PlayerState(data, keys, sorted, spatial, trigrams, stats, stamp);
+    }
+
+    PlayerData data() {
+        return data;
+    }
+
+    boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    // -----------------------------------------------------------------------
+    // Lookup
+    // -----------------------------------------------------------------------
+
+    /**
+     * Returns the key a named checkpoint is stored under, matching
+     * {@code rawName} trimmed and ignoring case, or null.
+     */
+    String findKey(String rawName) {
+        if (rawName == null || data.named().isEmpty()) return null;
+        return keys().get(fold(rawName.trim()));
+    }
+
+    private Map<String, String> keys() {
+        Map<String, String> result = keys;
+        if (result == null) {
+            result = new HashMap<>();
+            for (String name : data.named().keySet()) result.putIfAbsent(fold(name), name);
+            keys = result;
+        }
+        return result;
+    }
+
+    /** Returns the named checkpoint matching {@code rawName} as {@link #findKey} does, or null. */
+    Checkpoint findNamed(String rawName) {
+        String key = findKey(rawName);
+        return key != null ? data.named().get(key) : null;
+    }
+
+    /** Returns true if the checkpoint matching {@code rawName} as {@link #findKey} does is marked cleared. */
+    boolean isCleared(String rawName) {
+        if (data.cleared().isEmpty()) return false;
+        String key = findKey(rawName);
+        return key != null && data.cleared().contains(key);
+    }
+
+    /** Returns true if the checkpoint stored under exactly {@code key} is marked cleared. */
+    boolean isClearedKey(String key) {
+        return data.cleared().contains(key);
+    }
+
+    /** Named checkpoint keys in every order but distance. */
+    SortedNames sortedNames() {
+        SortedNames result = sorted;
+        if (result == null) {
+            // Racing readers build identical indexes from the same immutable data
+            result = SortedNames.of(data.named());
+            sorted = result;
+        }
+        return result;
+    }
+
+    /** Named checkpoint positions per world. */
+    SpatialIndex spatialIndex() {
+        SpatialIndex result = spatial;
+        if (result == null) {
+            result = SpatialIndex.of(data.named());
+            spatial = result;
+        }
+        return result;
+    }
+
+    /** Searches the names for {@code query}; the result is tagged with this state's version. */
+    NameSearch search(String query) {
+        TrigramIndex index = trigrams;
+        if (index == null) {
+            index = TrigramIndex.of(data.named().keySet());
+            trigrams = index;
+        }
+        return NameSearch.run(query, index, data.named().keySet(), version);
+    }
+
+    PlayerStats stats() {
+        PlayerStats result = stats;
+        if (result == null) {
+            result = PlayerStats.EMPTY.withCounts(data).withLastActivity(latestUpdate());
+            stats = result;
+        }
+        return result;
+    }
+
+    /** Latest update time, from the update order if it is built, else by looking at every checkpoint. */
+    private Instant latestUpdate() {
+        if (data.named().isEmpty()) return null;
+        SortedNames order = sorted;
+        if (order != null) return data.named().get(order.view(SortOrder.UPDATED_DESC).get(0)).updatedAt();
+        return PlayerStats.of(data).lastActivity();
+    }
+
+    /**
+     * Last activity after {@code previous} was replaced by {@code current}
+     * (either may be null), or null if only a full look can tell.
+     */
+    private static Instant lastActivityAfter(PlayerStats stats, Checkpoint previous, Checkpoint current) {
+        if (stats == null) return null;
+        Instant last = stats.lastActivity();
+        boolean wasLatest = previous != null && previous.updatedAt().equals(last);
+        if (current == null) return wasLatest ? null : last;
+        Instant updated = current.updatedAt();
+        if (last == null || updated.isAfter(last)) return updated;
+        return wasLatest && !updated.equals(last) ? null : last;
+    }
+
+    /**
+     * Case-folds a name the way {@link String#equalsIgnoreCase} compares it,
+     * so two names are equal ignoring case exactly when their folds are equal.
+     */
+    static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    // -----------------------------------------------------------------------
+    // Changed copies
+    // -----------------------------------------------------------------------
+
+    PlayerState withQuick(Checkpoint checkpoint) {
+        return with(data.withQuick(checkpoint));
+    }
+
+    /** Stores {@code checkpoint} under exactly {@code key}. */
+    PlayerState withNamed(String key, Checkpoint checkpoint) {
+        PlayerData changed = data.withNamed(key, checkpoint);
+        Checkpoint previous = data.named().get(key);
+        // Indexes not built yet stay unbuilt
+        SortedNames currentOrder = sorted;
+        SpatialIndex currentSpatial = spatial;
+        SortedNames changedOrder = currentOrder != null ? currentOrder.with(key, previous, checkpoint) : null;
+        SpatialIndex changedSpatial = currentSpatial != null ? currentSpatial.with(key, previous, checkpoint) : null;
+        TrigramIndex currentTrigrams = trigrams;
+        TrigramIndex changedTrigrams = currentTrigrams != null && previous == null
+            ? currentTrigrams.with(key) : currentTrigrams;
+        Map<String, String> changedKeys = keys();
+        if (!key.equals(changedKeys.get(fold(key)))) {
+            changedKeys = new HashMap<>(changedKeys);
+            changedKeys.put(fold(key), key);
+        }
+        return new PlayerState(changed, changedKeys, changedOrder, changedSpatial, changedTrigrams,
+            statsAfter(changed, previous, checkpoint), version);
+    }
+
+    /** Removes the named checkpoint stored under exactly {@code key}. */
+    PlayerState withoutNamed(String key) {
+        PlayerData changed = data.withoutNamed(key);
+        if (changed == data) return this;
+        // Loaded data may hold names differing only in case; rebuild rather than guess
+        Map<String, String> currentKeys = keys();
+        if (currentKeys.size() != data.named().size()) return of(changed);
+        Map<String, String> copy = new HashMap<>(currentKeys);
+        copy.remove(fold(key));
+        Checkpoint previous = data.named().get(key);
+        SortedNames currentOrder = sorted;
+        SpatialIndex currentSpatial = spatial;
+        TrigramIndex currentTrigrams = trigrams;
+        return new PlayerState(changed, copy.isEmpty() ? Collections.<String, String>emptyMap() : copy,
+            currentOrder != null ? currentOrder.without(key, previous) : null,
+            currentSpatial != null ? currentSpatial.without(key, previous) : null,
+            currentTrigrams != null ? currentTrigrams.without(key) : null,
+            statsAfter(changed, previous, null), version);
+    }
+
+    private PlayerStats statsAfter(PlayerData changed, Checkpoint previous, Checkpoint current) {
+        if (changed.named().isEmpty()) return PlayerStats.EMPTY.withCounts(changed);
+        PlayerStats currentStats = stats;
+        Instant last = lastActivityAfter(currentStats, previous, current);
+        return last != null ? currentStats.withCounts(changed).withLastActivity(last) : null;
+    }
+
+    /**
+     * The same named checkpoints held by a different map (moved into a
+     * {@link CheckpointArena}); every index is kept. The indexes hold only
+     * keys, times and positions, never a {@link Checkpoint}, so keeping them
+     * leaves no heap copy of an arena-backed checkpoint behind.
+     */
+    PlayerState withNamedMap(Map<String, Checkpoint> sameNamed) {
+        return new PlayerState(data.withAllNamed(sameNamed), keys, sorted, spatial, trigrams, stats, version);
+    }
+
+    PlayerState withSelected(String name) {
+        return with(data.withSelected(name));
+    }
+
+    PlayerState withClone(UUID sourcePlayerId, Instant time) {
+        return with(data.withClone(sourcePlayerId, time));
+    }
+
+    PlayerState withClonedCount(int count) {
+        return with(data.withClonedCount(count));
+    }
+
+    /** Marks the checkpoint stored under exactly {@code key} cleared. */
+    PlayerState withCleared(String key) {
+        return with(data.withCleared(key));
+    }
+
+    /** Unmarks the checkpoint stored under exactly {@code key}; a no-op costs one lookup. */
+    PlayerState withoutCleared(String key) {
+        return with(data.withoutCleared(key));
+    }
+}
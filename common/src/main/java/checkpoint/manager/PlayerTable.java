@@ -0,0 +1,270 @@
+package checkpoint.manager;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Persistent map from player id to {@link PlayerState}: a hash array mapped
+ * trie over the id's hash, five bits per level. A change copies only the
+ * nodes on the path to the player (at most seven, each at most 32 slots), so
+ * its cost grows with the logarithm of the player count instead of the count
+ * itself, and every other node is shared with the table it came from.
+ * Players whose hashes are equal in all 32 bits share a collision node.
+ */
+final class PlayerTable implements Iterable<PlayerState> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /** Node levels on the deepest path: seven hash levels, then collision nodes. */
+    private static final int MAX_DEPTH = 8;
+
+    static final PlayerTable EMPTY = new PlayerTable(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PlayerTable(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** Builds a table holding {@code states}, whose players must be distinct, without intermediate copies. */
+    static PlayerTable of(PlayerState[] states) {
+        if (states.length == 0) return EMPTY;
+        long[] keys = new long[states.length];
+        Integer[] order = new Integer[states.length];
+        for (int i = 0; i < states.length; i++) {
+            keys[i] = pathKey(hash(states[i].data().playerId()));
+            order[i] = i;
+        }
+        // Sorted by the hash chunks in the order the levels read them, each node's entries are one run
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        PlayerState[] sorted = new PlayerState[states.length];
+        int[] hashes = new int[states.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = states[order[i]];
+            hashes[i] = hash(sorted[i].data().playerId());
+        }
+        return new PlayerTable(Node.build(sorted, hashes, 0, sorted.length, 0), states.length);
+    }
+
+    /** Returns the player's state, or null if the table does not hold the player. */
+    PlayerState get(UUID playerId) {
+        return root.get(playerId, hash(playerId), 0);
+    }
+
+    /** Returns a copy holding {@code state} in place of whatever its player had. */
+    PlayerTable with(PlayerState state) {
+        UUID playerId = state.data().playerId();
+        int hash = hash(playerId);
+        boolean added = root.get(playerId, hash, 0) == null;
+        return new PlayerTable(root.put(state, playerId, hash, 0), added ? size + 1 : size);
+    }
+
+    /** Returns a copy without the player. */
+    PlayerTable without(UUID playerId) {
+        int hash = hash(playerId);
+        if (root.get(playerId, hash, 0) == null) return this;
+        return new PlayerTable(root.remove(playerId, hash, 0), size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<PlayerState> iterator() {
+        return new Iterator<PlayerState>() {
+            private final Object[][] path = new Object[MAX_DEPTH + 1][];
+            private final int[] positions = new int[MAX_DEPTH + 1];
+            private int depth = 0;
+            private PlayerState next;
+
+            {
+                path[0] = root.slots;
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (depth >= 0) {
+                    Object[] slots = path[depth];
+                    if (positions[depth] == slots.length) {
+                        depth--;
+                        continue;
+                    }
+                    Object slot = slots[positions[depth]++];
+                    if (slot instanceof Node) {
+                        depth++;
+                        path[depth] = ((Node) slot).slots;
+                        positions[depth] = 0;
+                    } else {
+                        next = (PlayerState) slot;
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public PlayerState next() {
+                if (next == null) throw new NoSuchElementException();
+                PlayerState result = next;
+                advance();
+                return result;
+            }
+        };
+    }
+
+    private static int hash(UUID playerId) {
+        int h = playerId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** The hash chunks from the first level down, packed so that sorting by it groups every node's entries. */
+    private static long pathKey(int hash) {
+        long key = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += BITS) {
+            key = (key << BITS) | ((hash >>> shift) & MASK);
+        }
+        return key;
+    }
+
+    /**
+     * A trie node. Below 32 bits of hash, a bitmap says which of the 32
+     * chunk values are present and {@code slots} holds them in chunk order,
+     * each a {@link PlayerState} or a child node. Past the last hash bit the
+     * node is a collision node: {@code slots} lists states in no order.
+     */
+    private static final class Node {
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        static Node build(PlayerState[] states, int[] hashes, int from, int to, int shift) {
+            if (shift >= Integer.SIZE) return new Node(0, Arrays.copyOfRange(states, from, to, Object[].class));
+            int bitmap = 0;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int bit = 1 << ((hashes[i] >>> shift) & MASK);
+                if ((bitmap & bit) == 0) count++;
+                bitmap |= bit;
+            }
+            Object[] slots = new Object[count];
+            int slot = 0;
+            for (int start = from; start < to; ) {
+                int chunk = (hashes[start] >>> shift) & MASK;
+                int end = start + 1;
+                while (end < to && ((hashes[end] >>> shift) & MASK) == chunk) end++;
+                slots[slot++] = end - start == 1 ? states[start] : build(states, hashes, start, end, shift + BITS);
+                start = end;
+            }
+            return new Node(bitmap, slots);
+        }
+
+        PlayerState get(UUID playerId, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (Object slot : slots) {
+                    if (idOf(slot).equals(playerId)) return (PlayerState) slot;
+                }
+                return null;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) return ((Node) slot).get(playerId, hash, shift + BITS);
+            return idOf(slot).equals(playerId) ? (PlayerState) slot : null;
+        }
+
+        Node put(PlayerState state, UUID playerId, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (idOf(slots[i]).equals(playerId)) return new Node(0, replaced(i, state));
+                }
+                Object[] grown = Arrays.copyOf(slots, slots.length + 1);
+                grown[slots.length] = state;
+                return new Node(0, grown);
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, grown, 0, index);
+                grown[index] = state;
+                System.arraycopy(slots, index, grown, index + 1, slots.length - index);
+                return new Node(bitmap | bit, grown);
+            }
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                return new Node(bitmap, replaced(index, ((Node) slot).put(state, playerId, hash, shift + BITS)));
+            }
+            if (idOf(slot).equals(playerId)) return new Node(bitmap, replaced(index, state));
+            PlayerState existing = (PlayerState) slot;
+            return new Node(bitmap, replaced(index,
+                pair(existing, hash(idOf(existing)), state, hash, shift + BITS)));
+        }
+
+        /** Removes a player the node is known to hold. */
+        Node remove(UUID playerId, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (idOf(slots[i]).equals(playerId)) return new Node(0, removed(i));
+                }
+                return this;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = ((Node) slot).remove(playerId, hash, shift + BITS);
+                // A child left with a single state is folded into this node
+                if (child.slots.length == 1 && !(child.slots[0] instanceof Node)) {
+                    return new Node(bitmap, replaced(index, child.slots[0]));
+                }
+                return new Node(bitmap, replaced(index, child));
+            }
+            return new Node(bitmap & ~bit, removed(index));
+        }
+
+        private static Node pair(PlayerState a, int hashA, PlayerState b, int hashB, int shift) {
+            if (shift >= Integer.SIZE) return new Node(0, new Object[] {a, b});
+            int chunkA = (hashA >>> shift) & MASK;
+            int chunkB = (hashB >>> shift) & MASK;
+            if (chunkA == chunkB) return new Node(1 << chunkA, new Object[] {pair(a, hashA, b, hashB, shift + BITS)});
+            return new Node((1 << chunkA) | (1 << chunkB), chunkA < chunkB ? new Object[] {a, b} : new Object[] {b, a});
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Object[] replaced(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return copy;
+        }
+
+        private Object[] removed(int index) {
+            Object[] shrunk = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, shrunk, 0, index);
+            System.arraycopy(slots, index + 1, shrunk, index, slots.length - index - 1);
+            return shrunk;
+        }
+
+        private static UUID idOf(Object slot) {
+            return ((PlayerState) slot).data().playerId();
+        }
+    }
+}
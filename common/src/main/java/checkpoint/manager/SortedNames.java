@@ -0,0 +1,218 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.SortOrder;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A player's named checkpoint keys kept sorted by name, creation time and
+ * update time. Immutable; a change inserts or removes one entry per order by
+ * binary search into a copy of the arrays, so nothing is ever re-sorted.
+ * {@link #view} exposes an order (ascending or descending) as a list without
+ * copying, so reading one menu page costs only the page size.
+ */
+final class SortedNames {
+
+    /**
+     * Checkpoint key and the times the orders below compare. Only these are
+     * kept, not the checkpoint: for a player whose checkpoints live in a
+     * {@link CheckpointArena}, each read decodes a fresh heap copy that the
+     * index must not hold on to.
+     */
+    private static final class Item {
+        final String key;
+        final long created;
+        final long updated;
+
+        Item(String key, Checkpoint checkpoint) {
+            this.key = key;
+            this.created = checkpoint.createdAtMillis();
+            this.updated = checkpoint.updatedAtMillis();
+        }
+    }
+
+    // Ties are broken by name, and names by their exact spelling, so each
+    // order is total and an entry can always be found again by binary search.
+    private static final Comparator<Item> BY_NAME = Comparator
+        .comparing((Item item) -> item.key, String.CASE_INSENSITIVE_ORDER)
+        .thenComparing(item -> item.key);
+    private static final Comparator<Item> BY_CREATED = Comparator
+        .comparingLong((Item item) -> item.created)
+        .thenComparing(BY_NAME);
+    private static final Comparator<Item> BY_UPDATED = Comparator
+        .comparingLong((Item item) -> item.updated)
+        .thenComparing(BY_NAME);
+
+    private static final int NAME = 0;
+    private static final int CREATED = 1;
+    private static final int UPDATED = 2;
+    private static final Comparator<Item>[] COMPARATORS = comparators();
+
+    private final Item[][] orders;
+
+    private SortedNames(Item[][] orders) {
+        this.orders = orders;
+    }
+
+    static SortedNames of(Map<String, Checkpoint> named) {
+        Item[] items = new Item[named.size()];
+        int i = 0;
+        for (Map.Entry<String, Checkpoint> entry : named.entrySet()) {
+            items[i++] = new Item(entry.getKey(), entry.getValue());
+        }
+        Item[][] orders = new Item[COMPARATORS.length][];
+        for (int order = 0; order < orders.length; order++) {
+            orders[order] = items.clone();
+            Arrays.sort(orders[order], COMPARATORS[order]);
+        }
+        return new SortedNames(orders);
+    }
+
+    /** Returns true if {@code order} is kept by this index (everything but distance). */
+    static boolean supports(SortOrder order) {
+        return order != SortOrder.DISTANCE_ASC;
+    }
+
+    int size() {
+        return orders[NAME].length;
+    }
+
+    /**
+     * Returns the keys in the given order as an unmodifiable random-access
+     * list backed by this (immutable) index.
+     */
+    List<String> view(SortOrder order) {
+        return new View(orders[indexOf(order)], isDescending(order));
+    }
+
+    /**
+     * Returns the keys starting with {@code prefix}, ignoring case, in name
+     * order and at most {@code limit} of them. Matching keys are adjacent in
+     * the name order, so two binary searches find them and the result is a
+     * view of that range.
+     */
+    List<String> startingWith(String prefix, int limit) {
+        Item[] items = orders[NAME];
+        // First key not below the prefix, then first one past the matches
+        int low = 0;
+        int high = items.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(items[mid].key, prefix) < 0) low = mid + 1;
+            else high = mid;
+        }
+        int from = low;
+        high = items.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (items[mid].key.regionMatches(true, 0, prefix, 0, prefix.length())) low = mid + 1;
+            else high = mid;
+        }
+        return new View(items, false).subList(from, from + Math.min(low - from, limit));
+    }
+
+    // -----------------------------------------------------------------------
+    // Changed copies
+    // -----------------------------------------------------------------------
+
+    /**
+     * Returns a copy with {@code key} mapped to {@code checkpoint}.
+     * {@code previous} is the checkpoint currently stored under {@code key},
+     * or null if the key is new.
+     */
+    SortedNames with(String key, Checkpoint previous, Checkpoint checkpoint) {
+        Item removed = previous != null ? new Item(key, previous) : null;
+        Item added = new Item(key, checkpoint);
+        Item[][] copy = new Item[orders.length][];
+        for (int order = 0; order < orders.length; order++) {
+            Item[] items = removed != null ? remove(orders[order], removed, COMPARATORS[order]) : orders[order];
+            copy[order] = insert(items, added, COMPARATORS[order]);
+        }
+        return new SortedNames(copy);
+    }
+
+    /** Returns a copy without {@code key}, which is currently mapped to {@code previous}. */
+    SortedNames without(String key, Checkpoint previous) {
+        Item removed = new Item(key, previous);
+        Item[][] copy = new Item[orders.length][];
+        for (int order = 0; order < orders.length; order++) {
+            copy[order] = remove(orders[order], removed, COMPARATORS[order]);
+        }
+        return new SortedNames(copy);
+    }
+
+    private static Item[] insert(Item[] items, Item item, Comparator<Item> comparator) {
+        int index = Arrays.binarySearch(items, item, comparator);
+        int at = index >= 0 ? index : -index - 1;
+        Item[] result = new Item[items.length + 1];
+        System.arraycopy(items, 0, result, 0, at);
+        result[at] = item;
+        System.arraycopy(items, at, result, at + 1, items.length - at);
+        return result;
+    }
+
+    private static Item[] remove(Item[] items, Item item, Comparator<Item> comparator) {
+        int at = Arrays.binarySearch(items, item, comparator);
+        if (at < 0) throw new IllegalStateException("index out of sync for " + item.key);
+        Item[] result = new Item[items.length - 1];
+        System.arraycopy(items, 0, result, 0, at);
+        System.arraycopy(items, at + 1, result, at, items.length - at - 1);
+        return result;
+    }
+
+    private static int indexOf(SortOrder order) {
+        switch (order) {
+            case CREATED_ASC:
+            case CREATED_DESC:
+                return CREATED;
+            case UPDATED_ASC:
+            case UPDATED_DESC:
+                return UPDATED;
+            case NAME_ASC:
+            case NAME_DESC:
+                return NAME;
+            default:
+                throw new IllegalArgumentException("not an indexed order: " + order);
+        }
+    }
+
+    private static boolean isDescending(SortOrder order) {
+        return order == SortOrder.NAME_DESC || order == SortOrder.CREATED_DESC || order == SortOrder.UPDATED_DESC;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Item>[] comparators() {
+        Comparator[] comparators = new Comparator[3];
+        comparators[NAME] = BY_NAME;
+        comparators[CREATED] = BY_CREATED;
+        comparators[UPDATED] = BY_UPDATED;
+        return comparators;
+    }
+
+    /** Read-only list over one order, read backwards for descending orders. */
+    private static final class View extends AbstractList<String> implements RandomAccess {
+        private final Item[] items;
+        private final boolean descending;
+
+        View(Item[] items, boolean descending) {
+            this.items = items;
+            this.descending = descending;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= items.length) throw new IndexOutOfBoundsException("index " + index);
+            return items[descending ? items.length - 1 - index : index].key;
+        }
+
+        @Override
+        public int size() {
+            return items.length;
+        }
+    }
+}
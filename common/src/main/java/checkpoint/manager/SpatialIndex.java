@@ -0,0 +1,446 @@
+package checkpoint.manager;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Named checkpoints on a uniform grid of chunk-sized cells, one grid per
+ * world. Immutable; each world's cells are a persistent {@link CellMap}, so a
+ * change copies only the trie path to each cell involved and that cell's
+ * entries, never the rest of the world.
+ * <p>
+ * Each {@link PlayerState} indexes its own checkpoints; the
+ * {@link CheckpointSnapshot} keeps one index over every player's, whose
+ * entries also carry the owning player, to order players by their nearest
+ * checkpoint.
+ * <p>
+ * {@link #byDistance} walks the cells in square rings around the viewer and
+ * yields checkpoints nearest first, lazily: taking the nearest {@code k}
+ * looks only at the cells within reach of them. Distances are horizontal
+ * (x/z) like the menus show them, and only checkpoints in the requested
+ * world are considered.
+ */
+final class SpatialIndex {
+
+    /** Cell edge in blocks; one Minecraft chunk. */
+    static final int CELL = 16;
+
+    private static final class Entry {
+        /** Owning player in the server-wide index, null in a player's own. */
+        final UUID owner;
+        final String key;
+        final double x;
+        final double z;
+
+        Entry(UUID owner, String key, double x, double z) {
+            this.owner = owner;
+            this.key = key;
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /** World name to cell key ({@link #cellKey}) to the entries in that cell. */
+    private final Map<String, CellMap<Entry[]>> worlds;
+
+    private static final SpatialIndex EMPTY = new SpatialIndex(Collections.<String, CellMap<Entry[]>>emptyMap());
+
+    private SpatialIndex(Map<String, CellMap<Entry[]>> worlds) {
+        this.worlds = worlds;
+    }
+
+    static SpatialIndex of(Map<String, Checkpoint> named) {
+        Map<String, Map<Long, List<Entry>>> building = new HashMap<>();
+        add(building, null, named);
+        return build(building);
+    }
+
+    /** Builds the server-wide index over every player's named checkpoints. */
+    static SpatialIndex ofPlayers(Iterable<PlayerData> players) {
+        Map<String, Map<Long, List<Entry>>> building = new HashMap<>();
+        for (PlayerData data : players) add(building, data.playerId(), data.named());
+        return build(building);
+    }
+
+    private static void add(Map<String, Map<Long, List<Entry>>> building, UUID owner, Map<String, Checkpoint> named) {
+        for (Map.Entry<String, Checkpoint> e : named.entrySet()) {
+            Checkpoint cp = e.getValue();
+            building.computeIfAbsent(cp.worldName(), w -> new HashMap<>())
+                .computeIfAbsent(cellKey(cp.x(), cp.z()), c -> new ArrayList<>())
+                .add(new Entry(owner, e.getKey(), cp.x(), cp.z()));
+        }
+    }
+
+    private static SpatialIndex build(Map<String, Map<Long, List<Entry>>> building) {
+        if (building.isEmpty()) return EMPTY;
+        Map<String, CellMap<Entry[]>> worlds = new HashMap<>();
+        for (Map.Entry<String, Map<Long, List<Entry>>> world : building.entrySet()) {
+            List<CellMap.Cell<Entry[]>> cells = new ArrayList<>(world.getValue().size());
+            for (Map.Entry<Long, List<Entry>> cell : world.getValue().entrySet()) {
+                cells.add(new CellMap.Cell<>(cell.getKey(), cell.getValue().toArray(new Entry[0])));
+            }
+            worlds.put(world.getKey(), CellMap.of(cells));
+        }
+        return new SpatialIndex(worlds);
+    }
+
+    // -----------------------------------------------------------------------
+    // Queries
+    // -----------------------------------------------------------------------
+
+    /** Returns the squared distance to the nearest checkpoint in {@code world}, or {@link Double#MAX_VALUE}. */
+    double nearestDistanceSq(String world, double x, double z) {
+        Walk walk = new Walk(worlds.get(world), x, z);
+        return walk.hasNext() ? walk.nextDistanceSq() : Double.MAX_VALUE;
+    }
+
+    /** Returns the squared distance to the nearest checkpoint in any world, or {@link Double#MAX_VALUE}. */
+    double nearestDistanceSqAnyWorld(double x, double z) {
+        double best = Double.MAX_VALUE;
+        for (String world : worlds.keySet()) best = Math.min(best, nearestDistanceSq(world, x, z));
+        return best;
+    }
+
+    /** Iterates over the keys of the checkpoints in {@code world}, nearest first. */
+    Iterator<String> byDistance(String world, double x, double z) {
+        Walk walk = new Walk(worlds.get(world), x, z);
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return walk.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return walk.next().key;
+            }
+        };
+    }
+
+    /** Returns the keys of the (at most) {@code limit} checkpoints in {@code world} nearest to x/z. */
+    List<String> nearest(String world, double x, double z, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, 64));
+        Iterator<String> it = byDistance(world, x, z);
+        while (result.size() < limit && it.hasNext()) result.add(it.next());
+        return result;
+    }
+
+    /**
+     * Returns every key: those in {@code world} nearest first, then the ones
+     * in other worlds in {@code byName} order. The list is filled lazily as
+     * it is read, so reading the first page costs about one page of search.
+     * Not thread-safe.
+     */
+    List<String> sortedByDistance(String world, double x, double z,
+                                  List<String> byName, Map<String, Checkpoint> named) {
+        return new LazyList<>(byDistance(world, x, z), byName.iterator(),
+            key -> !named.get(key).worldName().equals(world), named.size());
+    }
+
+    /**
+     * Server-wide index only: returns {@code players} ordered by their nearest
+     * checkpoint in {@code world}, players with none there last in the given
+     * order. Filled lazily like {@link #sortedByDistance}; not thread-safe.
+     */
+    List<UUID> playersByDistance(String world, double x, double z, List<UUID> players) {
+        Walk walk = new Walk(worlds.get(world), x, z);
+        Set<UUID> seen = new HashSet<>();
+        Iterator<UUID> near = new Iterator<UUID>() {
+            private UUID next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && walk.hasNext()) {
+                    UUID owner = walk.next().owner;
+                    if (seen.add(owner)) next = owner;
+                }
+                return next != null;
+            }
+
+            @Override
+            public UUID next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                UUID result = next;
+                next = null;
+                return result;
+            }
+        };
+        return new LazyList<>(near, players.iterator(), id -> !seen.contains(id), players.size());
+    }
+
+    // -----------------------------------------------------------------------
+    // Changed copies
+    // -----------------------------------------------------------------------
+
+    /**
+     * Returns a copy with {@code key} at {@code checkpoint}'s position.
+     * {@code previous} is the checkpoint currently stored under {@code key},
+     * or null if the key is new.
+     */
+    SpatialIndex with(String key, Checkpoint previous, Checkpoint checkpoint) {
+        Editor editor = new Editor();
+        if (previous != null) editor.remove(null, key, previous);
+        editor.add(null, key, checkpoint);
+        return editor.result();
+    }
+
+    /** Returns a copy without {@code key}, which is currently at {@code previous}'s position. */
+    SpatialIndex without(String key, Checkpoint previous) {
+        Editor editor = new Editor();
+        editor.remove(null, key, previous);
+        return editor.result();
+    }
+
+    /**
+     * Server-wide index only: returns a copy in which {@code owner}'s
+     * checkpoints are {@code after} instead of {@code before}. Entries whose
+     * key and position did not change are left alone, so a map that decodes
+     * a new {@link Checkpoint} on each read (an arena-backed one) costs
+     * nothing for the entries it still holds.
+     */
+    SpatialIndex withPlayer(UUID owner, Map<String, Checkpoint> before, Map<String, Checkpoint> after) {
+        if (before == after) return this;
+        Editor editor = new Editor();
+        for (Map.Entry<String, Checkpoint> e : before.entrySet()) {
+            if (!samePlace(e.getValue(), after.get(e.getKey()))) editor.remove(owner, e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, Checkpoint> e : after.entrySet()) {
+            if (!samePlace(before.get(e.getKey()), e.getValue())) editor.add(owner, e.getKey(), e.getValue());
+        }
+        return editor.result();
+    }
+
+    /** Whether both checkpoints exist and index to the same entry. */
+    private static boolean samePlace(Checkpoint a, Checkpoint b) {
+        if (a == b) return a != null;
+        return a != null && b != null && a.x() == b.x() && a.z() == b.z() && a.worldName().equals(b.worldName());
+    }
+
+    /** Collects changes into a copy; each change copies one cell and its trie path. */
+    private final class Editor {
+        private Map<String, CellMap<Entry[]>> copy;
+
+        void add(UUID owner, String key, Checkpoint checkpoint) {
+            CellMap<Entry[]> cells = cells(checkpoint.worldName());
+            long cell = cellKey(checkpoint.x(), checkpoint.z());
+            Entry[] entries = cells.get(cell);
+            if (entries == null) entries = new Entry[0];
+            Entry[] added = Arrays.copyOf(entries, entries.length + 1);
+            added[entries.length] = new Entry(owner, key, checkpoint.x(), checkpoint.z());
+            copy.put(checkpoint.worldName(), cells.with(cell, added));
+        }
+
+        void remove(UUID owner, String key, Checkpoint previous) {
+            CellMap<Entry[]> cells = cells(previous.worldName());
+            long cell = cellKey(previous.x(), previous.z());
+            Entry[] entries = cells.get(cell);
+            if (entries == null) throw new IllegalStateException("index out of sync for " + key);
+            List<Entry> kept = new ArrayList<>(entries.length);
+            for (Entry entry : entries) {
+                if (!entry.key.equals(key) || !Objects.equals(entry.owner, owner)) kept.add(entry);
+            }
+            if (kept.size() == entries.length) throw new IllegalStateException("index out of sync for " + key);
+            copy.put(previous.worldName(),
+                kept.isEmpty() ? cells.without(cell) : cells.with(cell, kept.toArray(new Entry[0])));
+        }
+
+        /** Returns the world's current cells, copying the (small) world map on the first change. */
+        private CellMap<Entry[]> cells(String world) {
+            if (copy == null) copy = new HashMap<>(worlds);
+            CellMap<Entry[]> cells = copy.get(world);
+            return cells != null ? cells : CellMap.<Entry[]>empty();
+        }
+
+        SpatialIndex result() {
+            if (copy == null) return SpatialIndex.this;
+            copy.values().removeIf(CellMap::isEmpty);
+            return copy.isEmpty() ? EMPTY : new SpatialIndex(copy);
+        }
+    }
+
+    static long cellKey(double x, double z) {
+        return cellKey(cellOf(x), cellOf(z));
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+    private static int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / CELL);
+    }
+
+    // -----------------------------------------------------------------------
+    // Ring search
+    // -----------------------------------------------------------------------
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final Entry entry;
+        final double distanceSq;
+
+        Candidate(Entry entry, double distanceSq) {
+            this.entry = entry;
+            this.distanceSq = distanceSq;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byDistance = Double.compare(distanceSq, other.distanceSq);
+            if (byDistance != 0) return byDistance;
+            int byKey = entry.key.compareTo(other.entry.key);
+            return byKey != 0 || entry.owner == null ? byKey : entry.owner.compareTo(other.entry.owner);
+        }
+    }
+
+    /**
+     * Incremental nearest-first walk over one world's grid. Rings of cells at
+     * growing Chebyshev distance from the viewer's cell are added to a heap;
+     * an entry is released once no unvisited cell can hold anything closer.
+     * When the ring outgrows the number of occupied cells, the remaining
+     * cells are added directly instead of walking empty space.
+     */
+    private static final class Walk {
+        private final CellMap<Entry[]> cells;
+        private final double x;
+        private final double z;
+        private final int cx;
+        private final int cz;
+        private final PriorityQueue<Candidate> heap = new PriorityQueue<>();
+        private int radius = -1;
+        private int cellsSeen = 0;
+        private boolean exhausted;
+        private double lastDistanceSq;
+
+        Walk(CellMap<Entry[]> cells, double x, double z) {
+            this.cells = cells != null ? cells : CellMap.<Entry[]>empty();
+            this.x = x;
+            this.z = z;
+            this.cx = cellOf(x);
+            this.cz = cellOf(z);
+            this.exhausted = this.cells.isEmpty();
+        }
+
+        boolean hasNext() {
+            while (!exhausted && (heap.isEmpty() || heap.peek().distanceSq > reachSq())) expand();
+            return !heap.isEmpty();
+        }
+
+        Entry next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Candidate top = heap.poll();
+            lastDistanceSq = top.distanceSq;
+            return top.entry;
+        }
+
+        double nextDistanceSq() {
+            next();
+            return lastDistanceSq;
+        }
+
+        /** Squared distance from the viewer to the edge of the visited square. */
+        private double reachSq() {
+            double left = x - (double) (cx - radius) * CELL;
+            double right = (double) (cx + radius + 1) * CELL - x;
+            double down = z - (double) (cz - radius) * CELL;
+            double up = (double) (cz + radius + 1) * CELL - z;
+            double reach = Math.min(Math.min(left, right), Math.min(down, up));
+            return reach * reach;
+        }
+
+        private void expand() {
+            radius++;
+            long side = 2L * radius + 1;
+            if (side * side >= cells.size()) {
+                // Cheaper to take every occupied cell outside the visited square
+                for (CellMap.Cell<Entry[]> cell : cells) {
+                    long key = cell.key();
+                    int kx = (int) (key >> 32);
+                    int kz = (int) key;
+                    if (Math.max(Math.abs((long) kx - cx), Math.abs((long) kz - cz)) >= radius) add(cell.value());
+                }
+                exhausted = true;
+                return;
+            }
+            if (radius == 0) {
+                visit(cx, cz);
+                return;
+            }
+            for (int d = -radius; d <= radius; d++) {
+                visit(cx + d, cz - radius);
+                visit(cx + d, cz + radius);
+            }
+            for (int d = -radius + 1; d <= radius - 1; d++) {
+                visit(cx - radius, cz + d);
+                visit(cx + radius, cz + d);
+            }
+            if (cellsSeen == cells.size()) exhausted = true;
+        }
+
+        private void visit(int kx, int kz) {
+            Entry[] entries = cells.get(cellKey(kx, kz));
+            if (entries != null) {
+                cellsSeen++;
+                add(entries);
+            }
+        }
+
+        private void add(Entry[] entries) {
+            for (Entry entry : entries) {
+                double dx = entry.x - x;
+                double dz = entry.z - z;
+                heap.add(new Candidate(entry, dx * dx + dz * dz));
+            }
+        }
+    }
+
+    /** Nearest-first items followed by the accepted remaining ones, materialized on demand. */
+    private static final class LazyList<T> extends AbstractList<T> implements RandomAccess {
+        private final Iterator<T> near;
+        private final Iterator<T> rest;
+        private final Predicate<T> restAccepts;
+        private final int size;
+        private final List<T> read = new ArrayList<>();
+
+        LazyList(Iterator<T> near, Iterator<T> rest, Predicate<T> restAccepts, int size) {
+            this.near = near;
+            this.rest = rest;
+            this.restAccepts = restAccepts;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index);
+            while (read.size() <= index) {
+                if (near.hasNext()) {
+                    read.add(near.next());
+                    continue;
+                }
+                T item = rest.next();
+                if (restAccepts.test(item)) read.add(item);
+            }
+            return read.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
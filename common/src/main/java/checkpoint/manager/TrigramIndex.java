@@ -0,0 +1,128 @@
+package checkpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A player's named checkpoint keys by every three-character sequence of
+ * their {@link PlayerState#fold folded} spelling. Immutable; a change copies
+ * the gram map and only the posting lists of the key's own grams, like
+ * {@link SortedNames} does for its orders. {@link #containing} intersects
+ * posting lists to find the keys that may contain a piece of a query.
+ */
+final class TrigramIndex {
+
+    static final int GRAM = 3;
+
+    /** Keys containing each gram, sorted so lists can be intersected by binary search. */
+    private final Map<Long, String[]> postings;
+
+    private TrigramIndex(Map<Long, String[]> postings) {
+        this.postings = postings;
+    }
+
+    static TrigramIndex of(Collection<String> keys) {
+        Map<Long, List<String>> lists = new HashMap<>();
+        for (String key : keys) {
+            for (long gram : grams(PlayerState.fold(key))) {
+                lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(key);
+            }
+        }
+        Map<Long, String[]> postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<Long, List<String>> entry : lists.entrySet()) {
+            String[] sorted = entry.getValue().toArray(new String[0]);
+            Arrays.sort(sorted);
+            postings.put(entry.getKey(), sorted);
+        }
+        return new TrigramIndex(postings);
+    }
+
+    /**
+     * Returns the keys whose folded spelling contains every gram of
+     * {@code foldedPiece}, in natural order: a superset of the keys containing
+     * the piece. Returns null if the piece is too short to have a gram, in
+     * which case every key is a candidate.
+     */
+    String[] containing(String foldedPiece) {
+        if (foldedPiece.length() < GRAM) return null;
+        List<String[]> lists = new ArrayList<>();
+        for (long gram : grams(foldedPiece)) {
+            String[] posting = postings.get(gram);
+            if (posting == null) return new String[0];
+            lists.add(posting);
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        String[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            String[] other = lists.get(i);
+            int kept = 0;
+            String[] narrowed = new String[result.length];
+            for (String key : result) {
+                if (Arrays.binarySearch(other, key) >= 0) narrowed[kept++] = key;
+            }
+            result = Arrays.copyOf(narrowed, kept);
+        }
+        return result;
+    }
+
+    // -----------------------------------------------------------------------
+    // Changed copies
+    // -----------------------------------------------------------------------
+
+    /** Returns a copy that also holds {@code key}, which must not be held yet. */
+    TrigramIndex with(String key) {
+        Set<Long> grams = grams(PlayerState.fold(key));
+        if (grams.isEmpty()) return this;
+        Map<Long, String[]> copy = new HashMap<>(postings);
+        for (long gram : grams) {
+            String[] posting = copy.get(gram);
+            if (posting == null) {
+                copy.put(gram, new String[] {key});
+                continue;
+            }
+            int at = -Arrays.binarySearch(posting, key) - 1;
+            String[] grown = new String[posting.length + 1];
+            System.arraycopy(posting, 0, grown, 0, at);
+            grown[at] = key;
+            System.arraycopy(posting, at, grown, at + 1, posting.length - at);
+            copy.put(gram, grown);
+        }
+        return new TrigramIndex(copy);
+    }
+
+    /** Returns a copy without {@code key}. */
+    TrigramIndex without(String key) {
+        Set<Long> grams = grams(PlayerState.fold(key));
+        if (grams.isEmpty()) return this;
+        Map<Long, String[]> copy = new HashMap<>(postings);
+        for (long gram : grams) {
+            String[] posting = copy.get(gram);
+            int at = posting != null ? Arrays.binarySearch(posting, key) : -1;
+            if (at < 0) throw new IllegalStateException("index out of sync for " + key);
+            if (posting.length == 1) {
+                copy.remove(gram);
+                continue;
+            }
+            String[] shrunk = new String[posting.length - 1];
+            System.arraycopy(posting, 0, shrunk, 0, at);
+            System.arraycopy(posting, at + 1, shrunk, at, posting.length - at - 1);
+            copy.put(gram, shrunk);
+        }
+        return new TrigramIndex(copy);
+    }
+
+    /** Distinct grams of {@code folded}, three UTF-16 units packed into a long. */
+    private static Set<Long> grams(String folded) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            grams.add(((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2));
+        }
+        return grams;
+    }
+}
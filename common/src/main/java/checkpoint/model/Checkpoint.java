@@ -2,19 +2,29 @@ package checkpoint.model;
 
 import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Immutable data class representing a checkpoint location.
+ * <p>
+ * Servers hold very many of these, so the fields are kept compact: world
+ * names go through a dictionary so all checkpoints in a world share one
+ * string, timestamps are epoch milliseconds (the precision every storage
+ * format keeps) and every empty description is the same literal.
  */
 public final class Checkpoint {
+    /** One shared string per world name. Worlds are few, so this never needs pruning. */
+    private static final ConcurrentMap<String, String> WORLD_NAMES = new ConcurrentHashMap<>();
+
     private final String worldName;
     private final double x;
     private final double y;
     private final double z;
     private final float yaw;
     private final float pitch;
-    private final Instant createdAt;
-    private final Instant updatedAt;
+    private final long createdAt;
+    private final long updatedAt;
     private final String description;
 
     public Checkpoint(String worldName, double x, double y, double z, float yaw, float pitch) {
@@ -28,18 +38,28 @@ public final class Checkpoint {
 
     public Checkpoint(String worldName, double x, double y, double z, float yaw, float pitch,
                       Instant createdAt, Instant updatedAt, String description) {
+        this(worldName, x, y, z, yaw, pitch,
+            Objects.requireNonNull(createdAt).toEpochMilli(), Objects.requireNonNull(updatedAt).toEpochMilli(),
+            description);
+    }
+
+    /** Same as the {@link Instant} constructor, with the timestamps in epoch milliseconds. */
+    public Checkpoint(String worldName, double x, double y, double z, float yaw, float pitch,
+                      long createdAtMillis, long updatedAtMillis, String description) {
         if (worldName == null || worldName.trim().isEmpty()) {
             throw new IllegalArgumentException("worldName must be provided");
         }
-        this.worldName = worldName;
+        String shared = WORLD_NAMES.putIfAbsent(worldName, worldName);
+        this.worldName = shared != null ? shared : worldName;
         this.x = x;
         this.y = y;
         this.z = z;
         this.yaw = yaw;
         this.pitch = pitch;
-        this.createdAt = Objects.requireNonNull(createdAt);
-        this.updatedAt = Objects.requireNonNull(updatedAt);
-        this.description = description == null ? "" : description.trim();
+        this.createdAt = createdAtMillis;
+        this.updatedAt = updatedAtMillis;
+        String trimmed = description == null ? "" : description.trim();
+        this.description = trimmed.isEmpty() ? "" : trimmed;
     }
 
     public String worldName() { return worldName; }
@@ -48,8 +68,12 @@ public final class Checkpoint {
     public double z() { return z; }
     public float yaw() { return yaw; }
     public float pitch() { return pitch; }
-    public Instant createdAt() { return createdAt; }
-    public Instant updatedAt() { return updatedAt; }
+    public Instant createdAt() { return Instant.ofEpochMilli(createdAt); }
+    public Instant updatedAt() { return Instant.ofEpochMilli(updatedAt); }
+    /** {@link #createdAt()} as epoch milliseconds, without allocating. */
+    public long createdAtMillis() { return createdAt; }
+    /** {@link #updatedAt()} as epoch milliseconds, without allocating. */
+    public long updatedAtMillis() { return updatedAt; }
     public String description() { return description; }
 
     /** Returns a new Checkpoint with the given timestamps. */
@@ -59,7 +83,7 @@ public final class Checkpoint {
 
     /** Returns a new Checkpoint with the given description and refreshed updatedAt. */
     public Checkpoint withDescription(String newDescription) {
-        return new Checkpoint(worldName, x, y, z, yaw, pitch, createdAt, Instant.now(), newDescription);
+        return new Checkpoint(worldName, x, y, z, yaw, pitch, createdAt(), Instant.now(), newDescription);
     }
 
     @Override
@@ -0,0 +1,221 @@
+package checkpoint.model;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of everything persisted for a single player: quick
+ * checkpoint, named checkpoints, selection, clone history (as cloner), how
+ * often the player's checkpoints were cloned, and cleared checkpoint names.
+ * <p>
+ * The {@code with...} methods return a changed copy that shares every
+ * collection it does not change with this instance.
+ * <p>
+ * A cleared mark belongs to a named checkpoint: {@link #cleared()} holds
+ * only exact keys of {@link #named()}, and removing a checkpoint removes its
+ * mark. Marks read from storage are matched to their checkpoint ignoring
+ * case when the value is built; marks without a checkpoint are dropped.
+ */
+public final class PlayerData {
+    private final UUID playerId;
+    private final Checkpoint quick;
+    private final Map<String, Checkpoint> named;
+    private final String selected;
+    private final Map<UUID, Instant> cloneHistory;
+    private final int clonedCount;
+    private final Set<String> cleared;
+
+    public PlayerData(UUID playerId, Checkpoint quick, Map<String, Checkpoint> named, String selected,
+                      Map<UUID, Instant> cloneHistory, int clonedCount, Set<String> cleared) {
+        this.playerId = Objects.requireNonNull(playerId, "playerId cannot be null");
+        this.quick = quick;
+        this.named = named == null || named.isEmpty()
+            ? Collections.<String, Checkpoint>emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(named));
+        this.selected = selected;
+        this.cloneHistory = cloneHistory == null || cloneHistory.isEmpty()
+            ? Collections.<UUID, Instant>emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(cloneHistory));
+        this.clonedCount = Math.max(0, clonedCount);
+        this.cleared = clearedKeys(cleared == null ? null : new HashSet<>(cleared), this.named);
+    }
+
+    /** Derived copy; the collections must already be unmodifiable and owned by the new value. */
+    private PlayerData(PlayerData base, Checkpoint quick, Map<String, Checkpoint> named, String selected,
+                       Map<UUID, Instant> cloneHistory, int clonedCount, Set<String> cleared) {
+        this.playerId = base.playerId;
+        this.quick = quick;
+        this.named = named;
+        this.selected = selected;
+        this.cloneHistory = cloneHistory;
+        this.clonedCount = clonedCount;
+        this.cleared = cleared;
+    }
+
+    /**
+     * Like the constructor, but keeps the given collections instead of
+     * copying them, for loaders that built them for this value alone. The
+     * caller must not change them afterwards.
+     */
+    public static PlayerData adopting(UUID playerId, Checkpoint quick, Map<String, Checkpoint> named, String selected,
+                                      Map<UUID, Instant> cloneHistory, int clonedCount, Set<String> cleared) {
+        return new PlayerData(empty(playerId), quick,
+            named == null || named.isEmpty() ? Collections.<String, Checkpoint>emptyMap() : Collections.unmodifiableMap(named),
+            selected,
+            cloneHistory == null || cloneHistory.isEmpty()
+                ? Collections.<UUID, Instant>emptyMap() : Collections.unmodifiableMap(cloneHistory),
+            Math.max(0, clonedCount),
+            clearedKeys(cleared, named == null ? Collections.<String, Checkpoint>emptyMap() : named));
+    }
+
+    /**
+     * The storage boundary for cleared marks: keeps {@code names} (owned by
+     * the caller's new value, so it may be changed) that are keys of
+     * {@code named}, replaces the others by the key they match ignoring case,
+     * and drops the rest.
+     */
+    private static Set<String> clearedKeys(Set<String> names, Map<String, Checkpoint> named) {
+        if (names == null || names.isEmpty() || named.isEmpty()) return Collections.emptySet();
+        Map<String, String> byFold = null;
+        for (String name : names.toArray(new String[0])) {
+            if (named.containsKey(name)) continue;
+            names.remove(name);
+            if (byFold == null) {
+                byFold = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (String key : named.keySet()) byFold.putIfAbsent(key, key);
+            }
+            String key = byFold.get(name);
+            if (key != null) names.add(key);
+        }
+        return names.isEmpty() ? Collections.<String>emptySet() : Collections.unmodifiableSet(names);
+    }
+
+    /** Returns a value holding nothing for the given player. */
+    public static PlayerData empty(UUID playerId) {
+        return new PlayerData(playerId, null, null, null, null, 0, null);
+    }
+
+    public UUID playerId() { return playerId; }
+    /** Quick checkpoint, or null if none is set. */
+    public Checkpoint quick() { return quick; }
+    public Map<String, Checkpoint> named() { return named; }
+    /** Selected named checkpoint name, or null if none is selected. */
+    public String selected() { return selected; }
+    public Map<UUID, Instant> cloneHistory() { return cloneHistory; }
+    public int clonedCount() { return clonedCount; }
+    /** Keys of the named checkpoints marked cleared. */
+    public Set<String> cleared() { return cleared; }
+
+    /** Returns true if nothing is stored for this player. */
+    public boolean isEmpty() {
+        return quick == null && named.isEmpty() && selected == null
+            && cloneHistory.isEmpty() && clonedCount == 0 && cleared.isEmpty();
+    }
+
+    // -----------------------------------------------------------------------
+    // Changed copies
+    // -----------------------------------------------------------------------
+
+    /** Quick checkpoint replaced; null removes it. */
+    public PlayerData withQuick(Checkpoint checkpoint) {
+        return new PlayerData(this, checkpoint, named, selected, cloneHistory, clonedCount, cleared);
+    }
+
+    /** Named checkpoint stored under exactly {@code name}. */
+    public PlayerData withNamed(String name, Checkpoint checkpoint) {
+        Map<String, Checkpoint> copy = new HashMap<>(named);
+        copy.put(Objects.requireNonNull(name, "name cannot be null"),
+            Objects.requireNonNull(checkpoint, "checkpoint cannot be null"));
+        return new PlayerData(this, quick, Collections.unmodifiableMap(copy), selected, cloneHistory, clonedCount, cleared);
+    }
+
+    /**
+     * All named checkpoints replaced by {@code named}, which is kept as is
+     * rather than copied: it must be unmodifiable and never change.
+     */
+    public PlayerData withAllNamed(Map<String, Checkpoint> named) {
+        return new PlayerData(this, quick, Objects.requireNonNull(named, "named cannot be null"),
+            selected, cloneHistory, clonedCount, cleared);
+    }
+
+    /** Named checkpoint with exactly this key removed, together with its cleared mark. */
+    public PlayerData withoutNamed(String name) {
+        if (!named.containsKey(name)) return this;
+        Map<String, Checkpoint> copy = new HashMap<>(named);
+        copy.remove(name);
+        return new PlayerData(this, quick, unmodifiable(copy), selected, cloneHistory, clonedCount,
+            cleared.contains(name) ? without(cleared, name) : cleared);
+    }
+
+    /** Selection replaced; null clears it. */
+    public PlayerData withSelected(String name) {
+        return new PlayerData(this, quick, named, name, cloneHistory, clonedCount, cleared);
+    }
+
+    /** Records that this player cloned {@code sourcePlayerId}'s checkpoints at {@code time}. */
+    public PlayerData withClone(UUID sourcePlayerId, Instant time) {
+        Map<UUID, Instant> copy = new HashMap<>(cloneHistory);
+        copy.put(Objects.requireNonNull(sourcePlayerId, "sourcePlayerId cannot be null"),
+            Objects.requireNonNull(time, "time cannot be null"));
+        return new PlayerData(this, quick, named, selected, Collections.unmodifiableMap(copy), clonedCount, cleared);
+    }
+
+    public PlayerData withClonedCount(int count) {
+        return new PlayerData(this, quick, named, selected, cloneHistory, Math.max(0, count), cleared);
+    }
+
+    /** Cleared mark added to the named checkpoint stored under exactly {@code name}. */
+    public PlayerData withCleared(String name) {
+        if (cleared.contains(name)) return this;
+        if (!named.containsKey(name)) throw new IllegalArgumentException("no named checkpoint " + name);
+        Set<String> copy = new HashSet<>(cleared);
+        copy.add(name);
+        return new PlayerData(this, quick, named, selected, cloneHistory, clonedCount, Collections.unmodifiableSet(copy));
+    }
+
+    /** Cleared mark removed from the named checkpoint stored under exactly {@code name}. */
+    public PlayerData withoutCleared(String name) {
+        if (!cleared.contains(name)) return this;
+        return new PlayerData(this, quick, named, selected, cloneHistory, clonedCount, without(cleared, name));
+    }
+
+    private static Set<String> without(Set<String> names, String name) {
+        if (names.size() == 1) return Collections.emptySet();
+        Set<String> copy = new HashSet<>(names);
+        copy.remove(name);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static Map<String, Checkpoint> unmodifiable(Map<String, Checkpoint> map) {
+        return map.isEmpty() ? Collections.<String, Checkpoint>emptyMap() : Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PlayerData)) return false;
+        PlayerData p = (PlayerData) o;
+        return playerId.equals(p.playerId) && Objects.equals(quick, p.quick)
+            && named.equals(p.named) && Objects.equals(selected, p.selected)
+            && cloneHistory.equals(p.cloneHistory) && clonedCount == p.clonedCount
+            && cleared.equals(p.cleared);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(playerId, quick, named, selected, cloneHistory, clonedCount, cleared);
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerData{player=" + playerId + ", named=" + named.size()
+            + ", quick=" + (quick != null) + ", cleared=" + cleared.size() + "}";
+    }
+}
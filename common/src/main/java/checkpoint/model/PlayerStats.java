@@ -0,0 +1,57 @@
+package checkpoint.model;
+
+import java.time.Instant;
+
+/**
+ * Immutable per-player summary shown in the player select menu: how many
+ * named checkpoints the player has, when one was last updated, how many are
+ * cleared and how often the player's checkpoints were cloned.
+ */
+public final class PlayerStats {
+
+    public static final PlayerStats EMPTY = new PlayerStats(0, null, 0, 0);
+
+    private final int namedCount;
+    private final Instant lastActivity;
+    private final int clearedCount;
+    private final int clonedCount;
+
+    public PlayerStats(int namedCount, Instant lastActivity, int clearedCount, int clonedCount) {
+        this.namedCount = namedCount;
+        this.lastActivity = lastActivity;
+        this.clearedCount = clearedCount;
+        this.clonedCount = clonedCount;
+    }
+
+    /** Computes the summary of {@code data} by looking at every named checkpoint. */
+    public static PlayerStats of(PlayerData data) {
+        Checkpoint last = null;
+        for (Checkpoint cp : data.named().values()) {
+            if (last == null || cp.updatedAtMillis() > last.updatedAtMillis()) last = cp;
+        }
+        return new PlayerStats(data.named().size(), last != null ? last.updatedAt() : null,
+            data.cleared().size(), data.clonedCount());
+    }
+
+    public int namedCount() { return namedCount; }
+    /** Latest {@link Checkpoint#updatedAt()} among the named checkpoints, or null if there are none. */
+    public Instant lastActivity() { return lastActivity; }
+    public int clearedCount() { return clearedCount; }
+    public int clonedCount() { return clonedCount; }
+
+    /** Same last activity, counts taken from {@code data}. */
+    public PlayerStats withCounts(PlayerData data) {
+        return new PlayerStats(data.named().size(), lastActivity, data.cleared().size(), data.clonedCount());
+    }
+
+    /** Same counts, given last activity. */
+    public PlayerStats withLastActivity(Instant lastActivity) {
+        return new PlayerStats(namedCount, lastActivity, clearedCount, clonedCount);
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerStats{named=" + namedCount + ", lastActivity=" + lastActivity
+            + ", cleared=" + clearedCount + ", cloned=" + clonedCount + '}';
+    }
+}
@@ -0,0 +1,63 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Logger;
+
+/**
+ * {@code storage.type: binary} (default) — the compact {@code checkpoints.bin}
+ * snapshot written by {@link BinarySnapshot}.
+ */
+public class BinaryCheckpointStore extends WholeFileCheckpointStore {
+
+    static final String BROKEN_SUFFIX = ".broken";
+
+    protected final File binaryFile;
+    private final File yamlFile;
+    private final boolean mapped;
+
+    /**
+     * @param mapped memory-map the snapshot at startup instead of reading it onto the heap
+     */
+    public BinaryCheckpointStore(File binaryFile, File yamlFile, boolean mapped, Logger logger) {
+        super(logger);
+        this.binaryFile = binaryFile;
+        this.yamlFile = yamlFile;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Loads checkpoints.bin, converting checkpoints.yml first if it is newer.
+     * A snapshot that cannot be read is copied aside so the next save does not
+     * overwrite it.
+     */
+    @Override
+    public void loadAll(CheckpointManager manager) {
+        SnapshotConverter.toBinaryIfNewer(yamlFile, binaryFile, logger);
+        boolean loaded = mapped
+            ? BinarySnapshot.loadMapped(binaryFile, manager, logger)
+            : BinarySnapshot.load(binaryFile, manager, logger);
+        if (!loaded && binaryFile.exists()) {
+            File broken = new File(binaryFile.getParentFile(), binaryFile.getName() + BROKEN_SUFFIX);
+            try {
+                Files.copy(binaryFile.toPath(), broken.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logger.severe("Unreadable snapshot kept as " + broken.getName() + "; starting with empty data.");
+            } catch (IOException e) {
+                logger.severe("Could not back up unreadable snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected boolean readAll(CheckpointManager manager) {
+        return BinarySnapshot.load(binaryFile, manager, logger) || !binaryFile.exists();
+    }
+
+    @Override
+    protected boolean writeAll(CheckpointManager manager) {
+        return BinarySnapshot.save(binaryFile, manager, logger);
+    }
+}
@@ -0,0 +1,362 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes the full checkpoint state as a compact binary snapshot
+ * ({@code checkpoints.bin}). Faster and much smaller than the YAML file, which
+ * stays available for hand editing (see {@link SnapshotConverter}).
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int    magic ("CPSN")
+ * short  version
+ * record* = byte type, int payloadLength, payload
+ *
+ * WORLD  (1): int worldId, str name          -- emitted before the first record using it
+ * PLAYER (2): long msb, long lsb,
+ *             bool hasQuick, [checkpoint],
+ *             int namedCount, { str name, checkpoint } * namedCount,
+ *             bool hasSelected, [str selected],
+ *             int cloneCount, { long sourceMsb, long sourceLsb, long epochMillis } * cloneCount,
+ *             int clonedCount,
+ *             int clearedCount, { str name } * clearedCount
+ * END    (0): int playerCount                -- must be the last record
+ *
+ * checkpoint = int worldId, double x, double y, double z, float yaw, float pitch,
+ *              long createdAt, long updatedAt, str description
+ * str        = int byteLength, UTF-8 bytes
+ * </pre>
+ * Records of unknown type are skipped by length, so newer writers can add
+ * record types without breaking older readers of the same version.
+ */
+public final class BinarySnapshot {
+
+    static final int MAGIC = 0x4350534E; // "CPSN"
+    static final short VERSION = 1;
+
+    static final byte END = 0;
+    static final byte WORLD = 1;
+    static final byte PLAYER = 2;
+
+    private BinarySnapshot() {}
+
+    // -----------------------------------------------------------------------
+    // Save
+    // -----------------------------------------------------------------------
+
+    /**
+     * Writes all checkpoint data to {@code file} via a temporary file.
+     *
+     * @return true if the file was written
+     */
+    public static boolean save(File file, CheckpointManager manager, Logger logger) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try {
+            if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                write(out, manager);
+            }
+            ShardedStorage.moveReplacing(tmp, file);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to save checkpoint snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    static void write(DataOutputStream out, CheckpointManager manager) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        Map<String, Integer> worldIds = new HashMap<>();
+        List<String> newWorlds = new ArrayList<>();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        int players = 0;
+
+        for (PlayerData data : manager.snapshot()) {
+            recordBytes.reset();
+            newWorlds.clear();
+            writePlayer(record, data, worldIds, newWorlds);
+            record.flush();
+
+            for (String world : newWorlds) {
+                byte[] name = world.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(WORLD);
+                out.writeInt(4 + 4 + name.length);
+                out.writeInt(worldIds.get(world));
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            out.writeByte(PLAYER);
+            out.writeInt(recordBytes.size());
+            recordBytes.writeTo(out);
+            players++;
+        }
+
+        out.writeByte(END);
+        out.writeInt(4);
+        out.writeInt(players);
+    }
+
+    private static void writePlayer(DataOutputStream out, PlayerData data,
+                                    Map<String, Integer> worldIds, List<String> newWorlds) throws IOException {
+        out.writeLong(data.playerId().getMostSignificantBits());
+        out.writeLong(data.playerId().getLeastSignificantBits());
+
+        out.writeBoolean(data.quick() != null);
+        if (data.quick() != null) writeCheckpoint(out, data.quick(), worldIds, newWorlds);
+
+        out.writeInt(data.named().size());
+        for (Map.Entry<String, Checkpoint> entry : data.named().entrySet()) {
+            writeString(out, entry.getKey());
+            writeCheckpoint(out, entry.getValue(), worldIds, newWorlds);
+        }
+
+        out.writeBoolean(data.selected() != null);
+        if (data.selected() != null) writeString(out, data.selected());
+
+        out.writeInt(data.cloneHistory().size());
+        for (Map.Entry<UUID, Instant> entry : data.cloneHistory().entrySet()) {
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            out.writeLong(entry.getValue().toEpochMilli());
+        }
+
+        out.writeInt(data.clonedCount());
+
+        out.writeInt(data.cleared().size());
+        for (String name : data.cleared()) {
+            writeString(out, name);
+        }
+    }
+
+    private static void writeCheckpoint(DataOutputStream out, Checkpoint cp,
+                                        Map<String, Integer> worldIds, List<String> newWorlds) throws IOException {
+        Integer worldId = worldIds.get(cp.worldName());
+        if (worldId == null) {
+            worldId = worldIds.size();
+            worldIds.put(cp.worldName(), worldId);
+            newWorlds.add(cp.worldName());
+        }
+        out.writeInt(worldId);
+        out.writeDouble(cp.x());
+        out.writeDouble(cp.y());
+        out.writeDouble(cp.z());
+        out.writeFloat(cp.yaw());
+        out.writeFloat(cp.pitch());
+        out.writeLong(cp.createdAtMillis());
+        out.writeLong(cp.updatedAtMillis());
+        writeString(out, cp.description());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // -----------------------------------------------------------------------
+    // Load
+    // -----------------------------------------------------------------------
+
+    /**
+     * Loads a snapshot into the manager by reading it onto the heap. If the
+     * file does not exist, this is a no-op. A damaged snapshot is rejected as
+     * a whole and the manager is left untouched.
+     *
+     * @return true if data was loaded
+     */
+    public static boolean load(File file, CheckpointManager manager, Logger logger) {
+        if (!file.exists()) {
+            logger.info("No checkpoint snapshot found; starting fresh.");
+            return false;
+        }
+        try {
+            return decode(file, ByteBuffer.wrap(Files.readAllBytes(file.toPath())), manager, logger);
+        } catch (IOException e) {
+            logger.severe("Failed to read checkpoint snapshot " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads a snapshot by memory-mapping it with {@link FileChannel#map}, so the
+     * OS pages the file in while records are decoded straight into the
+     * manager's structures; no read buffer proportional to the file is
+     * allocated on the heap. Same semantics as {@link #load}.
+     */
+    public static boolean loadMapped(File file, CheckpointManager manager, Logger logger) {
+        if (!file.exists()) {
+            logger.info("No checkpoint snapshot found; starting fresh.");
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(file, buffer, manager, logger);
+        } catch (IOException e) {
+            logger.severe("Failed to map checkpoint snapshot " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Whether {@link #loadMapped} is safe to use by default. On Windows a mapped
+     * file cannot be replaced until the mapping is garbage-collected, which
+     * would make the next save's rename fail.
+     */
+    public static boolean isMappingPreferred() {
+        return !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+    }
+
+    private static boolean decode(File file, ByteBuffer buffer, CheckpointManager manager, Logger logger) {
+        long start = System.nanoTime();
+        CheckpointManager.BulkLoader loader = manager.newBulkLoader();
+        int players;
+        try {
+            players = decode(buffer, loader);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            logger.severe("Failed to load checkpoint snapshot " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+        loader.commit();
+        logger.info("Loaded checkpoint snapshot: " + players + " players, " + loader.namedCount()
+                + " named checkpoints in " + (System.nanoTime() - start) / 1_000_000L + " ms.");
+        return true;
+    }
+
+    /** Decodes a whole snapshot into the loader and returns the player count. */
+    static int decode(ByteBuffer in, CheckpointManager.BulkLoader loader) throws IOException {
+        in.order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < 6 || in.getInt() != MAGIC) {
+            throw new IOException("not a checkpoint snapshot (bad magic)");
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+
+        List<String> worlds = new ArrayList<>();
+        byte[] scratch = new byte[64];
+        int players = 0;
+        while (true) {
+            if (!in.hasRemaining()) {
+                throw new IOException("snapshot is truncated (no END record)");
+            }
+            byte type = in.get();
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IOException("invalid record length " + length);
+            }
+            int end = in.position() + length;
+
+            if (type == END) {
+                int expected = in.getInt();
+                if (expected != players) {
+                    throw new IOException("expected " + expected + " players but read " + players);
+                }
+                return players;
+            } else if (type == WORLD) {
+                int id = in.getInt();
+                if (id != worlds.size()) throw new IOException("unexpected world id " + id);
+                worlds.add(readString(in, end, scratch));
+            } else if (type == PLAYER) {
+                readPlayer(in, end, worlds, scratch, loader);
+                players++;
+            }
+            if (in.position() > end) throw new IOException("record overruns its length");
+            // Skip unread bytes (including records of unknown type)
+            in.position(end);
+        }
+    }
+
+    private static void readPlayer(ByteBuffer in, int end, List<String> worlds, byte[] scratch,
+                                     CheckpointManager.BulkLoader loader) throws IOException {
+        UUID playerId = new UUID(in.getLong(), in.getLong());
+
+        if (in.get() != 0) loader.quick(playerId, readCheckpoint(in, end, worlds, scratch));
+
+        int namedCount = in.getInt();
+        for (int i = 0; i < namedCount; i++) {
+            String name = readString(in, end, scratch);
+            loader.named(playerId, name, readCheckpoint(in, end, worlds, scratch));
+        }
+
+        if (in.get() != 0) loader.selected(playerId, readString(in, end, scratch));
+
+        int cloneCount = in.getInt();
+        for (int i = 0; i < cloneCount; i++) {
+            UUID source = new UUID(in.getLong(), in.getLong());
+            loader.clone(playerId, source, Instant.ofEpochMilli(in.getLong()));
+        }
+
+        loader.clonedCount(playerId, in.getInt());
+
+        int clearedCount = in.getInt();
+        for (int i = 0; i < clearedCount; i++) {
+            loader.cleared(playerId, readString(in, end, scratch));
+        }
+    }
+
+    private static Checkpoint readCheckpoint(ByteBuffer in, int end, List<String> worlds,
+                                             byte[] scratch) throws IOException {
+        int worldId = in.getInt();
+        if (worldId < 0 || worldId >= worlds.size()) throw new IOException("undefined world id " + worldId);
+        double x = in.getDouble();
+        double y = in.getDouble();
+        double z = in.getDouble();
+        float yaw = in.getFloat();
+        float pitch = in.getFloat();
+        long createdMs = in.getLong();
+        long updatedMs = in.getLong();
+        String description = readString(in, end, scratch);
+        return new Checkpoint(worlds.get(worldId), x, y, z, yaw, pitch,
+            Instant.ofEpochMilli(createdMs), Instant.ofEpochMilli(updatedMs), description);
+    }
+
+    private static String readString(ByteBuffer in, int end, byte[] scratch) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > end - in.position()) {
+            throw new IOException("invalid string length " + length);
+        }
+        if (length == 0) return "";
+        // Heap buffers decode in place; mapped buffers are copied through the scratch array
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,480 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointEvent;
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of {@link CheckpointManager} mutations.
+ * <p>
+ * Subscribed to the manager's {@link CheckpointManager#events() events}
+ * through {@link #append}, it encodes each change into a small in-memory
+ * buffer; {@link #flush()} appends the buffer to the
+ * journal file, so a save costs a few bytes per change instead of a full
+ * rewrite. When the journal grows past the compaction threshold, the caller's
+ * snapshot writer is run and the journal is truncated.
+ * <p>
+ * At startup the snapshot is loaded first and {@link #replay} applies the
+ * journal tail on top of it. Records carry resulting values (the checkpoint
+ * as stored, the new clone count), so records already contained in the
+ * snapshot can be replayed again without changing the outcome.
+ * <p>
+ * Record framing (big-endian):
+ * <pre>
+ * int length, int crc32(payload), payload
+ * payload = byte type, fields (UUIDs as two longs, strings as modified UTF-8,
+ *           checkpoints as in {@link PlayerDataCodec})
+ * </pre>
+ * A torn or corrupt record at the end of the file (crash during append) is
+ * discarded on replay.
+ */
+public final class CheckpointJournal {
+
+    private static final byte QUICK_SET = 1;
+    private static final byte QUICK_CLEAR = 2;
+    private static final byte NAMED_PUT = 3;
+    private static final byte NAMED_REMOVE = 4;
+    private static final byte NAMED_RENAME = 5;
+    private static final byte SELECT = 6;
+    private static final byte SELECT_CLEAR = 7;
+    private static final byte CLEARED_MARK = 8;
+    private static final byte CLEARED_UNMARK = 9;
+    private static final byte CLONE = 10;
+
+    /** Upper bound for a single record; anything larger is treated as corruption. */
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private final File file;
+    private final long compactThresholdBytes;
+    private final Logger logger;
+
+    /** Encoded records not yet appended to the file. Guarded by itself. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /** Serializes file access between the saver thread and shutdown. */
+    private final Object fileLock = new Object();
+
+    public CheckpointJournal(File file, long compactThresholdBytes, Logger logger) {
+        this.file = file;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.logger = logger;
+    }
+
+    /** Returns the current size of the journal file in bytes (buffered records excluded). */
+    public long size() {
+        return file.length();
+    }
+
+    // -----------------------------------------------------------------------
+    // Events — encode into the pending buffer
+    // -----------------------------------------------------------------------
+
+    /** Encodes {@code event} as a record in the pending buffer. */
+    public void append(CheckpointEvent event) {
+        UUID playerId = event.playerId();
+        if (event instanceof CheckpointEvent.QuickChanged) {
+            Checkpoint checkpoint = ((CheckpointEvent.QuickChanged) event).checkpoint();
+            if (checkpoint != null) quickSet(playerId, checkpoint);
+            else quickCleared(playerId);
+        } else if (event instanceof CheckpointEvent.Added) {
+            CheckpointEvent.Added added = (CheckpointEvent.Added) event;
+            namedPut(playerId, added.name(), added.checkpoint());
+        } else if (event instanceof CheckpointEvent.Updated) {
+            CheckpointEvent.Updated updated = (CheckpointEvent.Updated) event;
+            namedPut(playerId, updated.name(), updated.checkpoint());
+        } else if (event instanceof CheckpointEvent.Removed) {
+            namedRemoved(playerId, ((CheckpointEvent.Removed) event).name());
+        } else if (event instanceof CheckpointEvent.Renamed) {
+            CheckpointEvent.Renamed renamed = (CheckpointEvent.Renamed) event;
+            namedRenamed(playerId, renamed.oldName(), renamed.newName(), renamed.checkpoint());
+        } else if (event instanceof CheckpointEvent.Selected) {
+            String name = ((CheckpointEvent.Selected) event).name();
+            if (name != null) selected(playerId, name);
+            else selectionCleared(playerId);
+        } else if (event instanceof CheckpointEvent.ClearedChanged) {
+            CheckpointEvent.ClearedChanged changed = (CheckpointEvent.ClearedChanged) event;
+            if (changed.cleared()) clearedMarked(playerId, changed.name());
+            else clearedUnmarked(playerId, changed.name());
+        } else if (event instanceof CheckpointEvent.CloneRecorded) {
+            CheckpointEvent.CloneRecorded clone = (CheckpointEvent.CloneRecorded) event;
+            cloneRecorded(playerId, clone.sourcePlayerId(), clone.time(), clone.sourceClonedCount());
+        }
+    }
+
+    private void quickSet(UUID playerId, Checkpoint checkpoint) {
+        record(QUICK_SET, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            PlayerDataCodec.writeCheckpoint(out, checkpoint);
+        });
+    }
+
+    private void quickCleared(UUID playerId) {
+        record(QUICK_CLEAR, out -> PlayerDataCodec.writeUuid(out, playerId));
+    }
+
+    private void namedPut(UUID playerId, String name, Checkpoint checkpoint) {
+        record(NAMED_PUT, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(name);
+            PlayerDataCodec.writeCheckpoint(out, checkpoint);
+        });
+    }
+
+    private void namedRemoved(UUID playerId, String name) {
+        record(NAMED_REMOVE, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(name);
+        });
+    }
+
+    private void namedRenamed(UUID playerId, String oldName, String newName, Checkpoint checkpoint) {
+        record(NAMED_RENAME, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(oldName);
+            out.writeUTF(newName);
+            PlayerDataCodec.writeCheckpoint(out, checkpoint);
+        });
+    }
+
+    private void selected(UUID playerId, String name) {
+        record(SELECT, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(name);
+        });
+    }
+
+    private void selectionCleared(UUID playerId) {
+        record(SELECT_CLEAR, out -> PlayerDataCodec.writeUuid(out, playerId));
+    }
+
+    private void clearedMarked(UUID playerId, String name) {
+        record(CLEARED_MARK, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(name);
+        });
+    }
+
+    private void clearedUnmarked(UUID playerId, String name) {
+        record(CLEARED_UNMARK, out -> {
+            PlayerDataCodec.writeUuid(out, playerId);
+            out.writeUTF(name);
+        });
+    }
+
+    private void cloneRecorded(UUID clonerId, UUID sourcePlayerId, Instant time, int sourceClonedCount) {
+        record(CLONE, out -> {
+            PlayerDataCodec.writeUuid(out, clonerId);
+            PlayerDataCodec.writeUuid(out, sourcePlayerId);
+            out.writeLong(time.toEpochMilli());
+            out.writeInt(sourceClonedCount);
+        });
+    }
+
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void record(byte type, RecordBody body) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            // Only possible for strings longer than writeUTF allows; in-memory streams never fail otherwise.
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        synchronized (pending) {
+            writeInt(pending, bytes.length);
+            writeInt(pending, (int) crc.getValue());
+            pending.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    // -----------------------------------------------------------------------
+    // Flush / compaction
+    // -----------------------------------------------------------------------
+
+    /**
+     * Appends all buffered records to the journal file and syncs it to disk.
+     * On failure the file is cut back to its previous length and the records
+     * stay buffered for the next attempt.
+     *
+     * @return true if the buffer is empty afterwards
+     */
+    public boolean flush() {
+        synchronized (fileLock) {
+            byte[] bytes;
+            synchronized (pending) {
+                if (pending.size() == 0) return true;
+                bytes = pending.toByteArray();
+                pending.reset();
+            }
+
+            long start = -1;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                start = raf.length();
+                try {
+                    raf.seek(start);
+                    raf.write(bytes);
+                    raf.getFD().sync();
+                    return true;
+                } catch (IOException e) {
+                    raf.setLength(start);
+                    throw e;
+                }
+            } catch (IOException e) {
+                synchronized (pending) {
+                    byte[] newer = pending.toByteArray();
+                    pending.reset();
+                    pending.write(bytes, 0, bytes.length);
+                    pending.write(newer, 0, newer.length);
+                }
+                logger.warning("Failed to append to checkpoint journal: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffer and, if the journal has reached the compaction
+     * threshold, compacts it. Intended as the background saver task.
+     *
+     * @return false if records are still buffered; a failed compaction keeps
+     *         the journal, which still holds every change
+     */
+    public boolean flushOrCompact(BooleanSupplier writeSnapshot) {
+        synchronized (fileLock) {
+            if (!flush()) return false;
+            if (size() >= compactThresholdBytes) compact(writeSnapshot);
+            return true;
+        }
+    }
+
+    /**
+     * Writes a full snapshot and truncates the journal. Every record already in
+     * the file describes a change that the snapshot contains, because the
+     * manager applies a change before reporting it. Records produced while the
+     * snapshot is written stay buffered and are appended afterwards.
+     *
+     * @param writeSnapshot writes the full state; returns false on failure, in
+     *                      which case the journal is kept
+     * @return true if the journal was truncated
+     */
+    public boolean compact(BooleanSupplier writeSnapshot) {
+        synchronized (fileLock) {
+            if (!flush()) return false;
+            if (!writeSnapshot.getAsBoolean()) {
+                logger.warning("Checkpoint snapshot failed; keeping journal for the next compaction.");
+                return false;
+            }
+            try {
+                Files.deleteIfExists(file.toPath());
+                return true;
+            } catch (IOException e) {
+                logger.warning("Could not truncate checkpoint journal: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Replay
+    // -----------------------------------------------------------------------
+
+    /**
+     * Applies every intact record in the journal file on top of the manager's
+     * current state (normally the freshly loaded snapshot). A torn or corrupt
+     * tail is cut off so later appends stay readable.
+     *
+     * @return number of records applied
+     */
+    public int replay(CheckpointManager manager) {
+        synchronized (fileLock) {
+            if (!file.isFile()) return 0;
+
+            ReplayState state = new ReplayState(manager);
+            int applied = 0;
+            long validBytes = 0;
+            boolean intact = true;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    int crc = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        throw new IOException("invalid record length " + length);
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 actual = new CRC32();
+                    actual.update(payload, 0, length);
+                    if ((int) actual.getValue() != crc) {
+                        throw new IOException("checksum mismatch");
+                    }
+                    state.apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                    applied++;
+                    validBytes += 8 + length;
+                }
+            } catch (IOException e) {
+                intact = false;
+                logger.warning("Checkpoint journal is damaged after " + applied + " records ("
+                    + e.getMessage() + "); discarding the rest.");
+            }
+
+            if (!intact) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validBytes);
+                } catch (IOException e) {
+                    logger.warning("Could not trim checkpoint journal: " + e.getMessage());
+                }
+            }
+            if (applied > 0) {
+                state.loadInto(manager);
+                logger.info("Replayed " + applied + " checkpoint journal records.");
+            }
+            return applied;
+        }
+    }
+
+    /** Mutable copy of the manager's state that journal records are applied to. */
+    private static final class ReplayState {
+        final Map<UUID, Checkpoint> quick;
+        final Map<UUID, Map<String, Checkpoint>> named = new HashMap<>();
+        final Map<UUID, String> selected;
+        final Map<UUID, Map<UUID, Instant>> clones = new HashMap<>();
+        final Map<UUID, Integer> counts;
+        final Map<UUID, Set<String>> cleared = new HashMap<>();
+
+        ReplayState(CheckpointManager manager) {
+            quick = new HashMap<>(manager.getAllQuickCheckpoints());
+            for (Map.Entry<UUID, Map<String, Checkpoint>> e : manager.getAllNamedCheckpoints().entrySet()) {
+                named.put(e.getKey(), new HashMap<>(e.getValue()));
+            }
+            selected = new HashMap<>(manager.getAllSelectedCheckpoints());
+            for (Map.Entry<UUID, Map<UUID, Instant>> e : manager.getAllCloneHistory().entrySet()) {
+                clones.put(e.getKey(), new HashMap<>(e.getValue()));
+            }
+            counts = new HashMap<>(manager.getAllClonedCounts());
+            for (Map.Entry<UUID, Set<String>> e : manager.getAllClearedCheckpoints().entrySet()) {
+                cleared.put(e.getKey(), new HashSet<>(e.getValue()));
+            }
+        }
+
+        void apply(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            UUID playerId = PlayerDataCodec.readUuid(in);
+            switch (type) {
+                case QUICK_SET:
+                    quick.put(playerId, PlayerDataCodec.readCheckpoint(in));
+                    break;
+                case QUICK_CLEAR:
+                    quick.remove(playerId);
+                    break;
+                case NAMED_PUT: {
+                    String name = in.readUTF();
+                    named.computeIfAbsent(playerId, id -> new HashMap<>())
+                        .put(name, PlayerDataCodec.readCheckpoint(in));
+                    break;
+                }
+                case NAMED_REMOVE: {
+                    String name = in.readUTF();
+                    removeNamed(playerId, name);
+                    String sel = selected.get(playerId);
+                    if (sel != null && sel.equalsIgnoreCase(name)) selected.remove(playerId);
+                    removeCleared(playerId, name);
+                    break;
+                }
+                case NAMED_RENAME: {
+                    String oldName = in.readUTF();
+                    String newName = in.readUTF();
+                    Checkpoint cp = PlayerDataCodec.readCheckpoint(in);
+                    removeNamed(playerId, oldName);
+                    named.computeIfAbsent(playerId, id -> new HashMap<>()).put(newName, cp);
+                    String sel = selected.get(playerId);
+                    if (sel != null && sel.equalsIgnoreCase(oldName)) selected.put(playerId, newName);
+                    if (removeCleared(playerId, oldName)) {
+                        cleared.computeIfAbsent(playerId, id -> new HashSet<>()).add(newName);
+                    }
+                    break;
+                }
+                case SELECT:
+                    selected.put(playerId, in.readUTF());
+                    break;
+                case SELECT_CLEAR:
+                    selected.remove(playerId);
+                    break;
+                case CLEARED_MARK:
+                    cleared.computeIfAbsent(playerId, id -> new HashSet<>()).add(in.readUTF());
+                    break;
+                case CLEARED_UNMARK:
+                    removeCleared(playerId, in.readUTF());
+                    break;
+                case CLONE: {
+                    UUID sourceId = PlayerDataCodec.readUuid(in);
+                    Instant time = Instant.ofEpochMilli(in.readLong());
+                    int count = in.readInt();
+                    clones.computeIfAbsent(playerId, id -> new HashMap<>()).put(sourceId, time);
+                    counts.put(sourceId, count);
+                    break;
+                }
+                default:
+                    throw new IOException("unknown record type " + type);
+            }
+        }
+
+        private void removeNamed(UUID playerId, String name) {
+            Map<String, Checkpoint> playerMap = named.get(playerId);
+            if (playerMap == null) return;
+            playerMap.keySet().removeIf(n -> n.equalsIgnoreCase(name));
+            if (playerMap.isEmpty()) named.remove(playerId);
+        }
+
+        private boolean removeCleared(UUID playerId, String name) {
+            Set<String> names = cleared.get(playerId);
+            if (names == null) return false;
+            boolean removed = names.removeIf(n -> n.equalsIgnoreCase(name));
+            if (names.isEmpty()) cleared.remove(playerId);
+            return removed;
+        }
+
+        void loadInto(CheckpointManager manager) {
+            manager.loadData(quick, named, selected, clones, counts, cleared);
+        }
+    }
+}
@@ -8,13 +8,19 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 /**
@@ -38,6 +44,13 @@ import org.bukkit.configuration.file.YamlConfiguration;
  */
 public final class CheckpointStorage {
 
+    /** Names the decoder pool's threads so they are recognizable in thread dumps. */
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory DECODER_THREADS = pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Checkpoint-Decoder-" + thread.getPoolIndex());
+        return thread;
+    };
+
     private CheckpointStorage() {}
 
     // -----------------------------------------------------------------------
@@ -45,72 +58,20 @@ public final class CheckpointStorage {
     // -----------------------------------------------------------------------
 
     /**
-     * Saves all checkpoint data from the given manager to a YAML file.
+     * Saves all checkpoint data from the given manager to a YAML file. The
+     * file is streamed from the manager by {@link YamlSnapshotWriter} into a
+     * temporary file that is then moved into place, so a crash during the
+     * write leaves the previous file intact.
+     *
+     * @return true if the file was written
      */
-    public static void save(File file, CheckpointManager manager, Logger logger) {
-        YamlConfiguration config = new YamlConfiguration();
-
-        Map<UUID, Checkpoint> quickCps = manager.getAllQuickCheckpoints();
-        Map<UUID, Map<String, Checkpoint>> namedCps = manager.getAllNamedCheckpoints();
-        Map<UUID, String> selected = manager.getAllSelectedCheckpoints();
-        Map<UUID, Map<UUID, Instant>> clones = manager.getAllCloneHistory();
-        Map<UUID, Integer> counts = manager.getAllClonedCounts();
-        Map<UUID, Set<String>> cleared = manager.getAllClearedCheckpoints();
-
-        // --- Quick checkpoints ---
-        for (Map.Entry<UUID, Checkpoint> entry : quickCps.entrySet()) {
-            String path = "quick." + entry.getKey().toString();
-            saveCheckpoint(config, path, entry.getValue());
-        }
-
-        // --- Named checkpoints (list format to avoid YAML path-separator issues) ---
-        for (Map.Entry<UUID, Map<String, Checkpoint>> entry : namedCps.entrySet()) {
-            String path = "named." + entry.getKey().toString();
-            List<Map<String, Object>> cpList = new ArrayList<>();
-            for (Map.Entry<String, Checkpoint> cpEntry : entry.getValue().entrySet()) {
-                Map<String, Object> cpMap = serializeCheckpoint(cpEntry.getKey(), cpEntry.getValue());
-                cpList.add(cpMap);
-            }
-            config.set(path, cpList);
-        }
-
-        // --- Selected ---
-        for (Map.Entry<UUID, String> entry : selected.entrySet()) {
-            config.set("selected." + entry.getKey().toString(), entry.getValue());
-        }
-
-        // --- Clone history ---
-        for (Map.Entry<UUID, Map<UUID, Instant>> entry : clones.entrySet()) {
-            String path = "cloneHistory." + entry.getKey().toString();
-            List<Map<String, Object>> list = new ArrayList<>();
-            for (Map.Entry<UUID, Instant> cloneEntry : entry.getValue().entrySet()) {
-                Map<String, Object> map = new LinkedHashMap<>();
-                map.put("source", cloneEntry.getKey().toString());
-                map.put("time", cloneEntry.getValue().toEpochMilli());
-                list.add(map);
-            }
-            config.set(path, list);
-        }
-
-        // --- Cloned counts ---
-        for (Map.Entry<UUID, Integer> entry : counts.entrySet()) {
-            config.set("clonedCounts." + entry.getKey().toString(), entry.getValue());
-        }
-
-        // --- Cleared checkpoints ---
-        for (Map.Entry<UUID, Set<String>> entry : cleared.entrySet()) {
-            config.set("cleared." + entry.getKey().toString(), new ArrayList<>(entry.getValue()));
-        }
-
-        // Write to disk
+    public static boolean save(File file, CheckpointManager manager, Logger logger) {
         try {
-            File parent = file.getParentFile();
-            if (parent != null && !parent.exists()) {
-                parent.mkdirs();
-            }
-            config.save(file);
+            YamlSnapshotWriter.write(file, manager);
+            return true;
         } catch (IOException e) {
             logger.warning("Failed to save checkpoint data: " + e.getMessage());
+            return false;
         }
     }
 
@@ -120,152 +81,97 @@ public final class CheckpointStorage {
 
     /**
      * Loads checkpoint data from a YAML file and populates the given manager.
-     * If the file does not exist, this is a no-op.
+     * If the file does not exist, this is a no-op. A file that cannot be read
+     * or parsed is rejected as a whole and the manager is left untouched.
+     * <p>
+     * Once the document is parsed, every section and every player entry
+     * decodes independently, so the sections are decoded concurrently on a
+     * dedicated fork-join pool, each splitting its players across the pool.
+     * The parsed document is only read from then on, which its backing maps
+     * allow from several threads. The time spent in each phase is logged.
+     *
+     * @return true if data was loaded
      */
-    public static void load(File file, CheckpointManager manager, Logger logger) {
+    public static boolean load(File file, CheckpointManager manager, Logger logger) {
         if (!file.exists()) {
             logger.info("No checkpoint data file found; starting fresh.");
-            return;
+            return false;
         }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-
-        Map<UUID, Checkpoint> quickCps = new HashMap<>();
-        Map<UUID, Map<String, Checkpoint>> namedCps = new HashMap<>();
-        Map<UUID, String> selected = new HashMap<>();
-        Map<UUID, Map<UUID, Instant>> clones = new HashMap<>();
-        Map<UUID, Integer> counts = new HashMap<>();
-        Map<UUID, Set<String>> cleared = new HashMap<>();
-
-        // --- Quick checkpoints ---
-        ConfigurationSection quickSection = config.getConfigurationSection("quick");
-        if (quickSection != null) {
-            for (String uuidStr : quickSection.getKeys(false)) {
-                try {
-                    UUID playerId = UUID.fromString(uuidStr);
-                    Checkpoint cp = loadCheckpoint(quickSection.getConfigurationSection(uuidStr));
-                    if (cp != null) quickCps.put(playerId, cp);
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid quick checkpoint UUID: " + uuidStr);
-                }
-            }
+        long startNanos = System.nanoTime();
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(file);
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.severe("Failed to parse checkpoint data file " + file.getName() + ": " + e.getMessage());
+            return false;
         }
+        long parsedNanos = System.nanoTime();
 
-        // --- Named checkpoints ---
+        ConfigurationSection quickSection = config.getConfigurationSection("quick");
         ConfigurationSection namedSection = config.getConfigurationSection("named");
-        if (namedSection != null) {
-            for (String uuidStr : namedSection.getKeys(false)) {
-                try {
-                    UUID playerId = UUID.fromString(uuidStr);
-                    List<?> cpList = namedSection.getList(uuidStr);
-                    if (cpList != null) {
-                        Map<String, Checkpoint> playerMap = new HashMap<>();
-                        for (Object item : cpList) {
-                            if (item instanceof Map) {
-                                Map<?, ?> map = (Map<?, ?>) item;
-                                Checkpoint cp = deserializeCheckpoint(map);
-                                String name = String.valueOf(map.get("name"));
-                                if (cp != null && name != null && !name.trim().isEmpty()) {
-                                    playerMap.put(name, cp);
-                                }
-                            }
-                        }
-                        if (!playerMap.isEmpty()) {
-                            namedCps.put(playerId, playerMap);
-                        }
-                    }
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid named checkpoint UUID: " + uuidStr);
-                }
-            }
-        }
-
-        // --- Selected ---
         ConfigurationSection selectedSection = config.getConfigurationSection("selected");
-        if (selectedSection != null) {
-            for (String uuidStr : selectedSection.getKeys(false)) {
-                try {
-                    UUID playerId = UUID.fromString(uuidStr);
-                    String name = selectedSection.getString(uuidStr);
-                    if (name != null && !name.trim().isEmpty()) {
-                        selected.put(playerId, name);
-                    }
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid selected checkpoint UUID: " + uuidStr);
-                }
-            }
-        }
-
-        // --- Clone history ---
         ConfigurationSection cloneSection = config.getConfigurationSection("cloneHistory");
-        if (cloneSection != null) {
-            for (String clonerStr : cloneSection.getKeys(false)) {
-                try {
-                    UUID clonerId = UUID.fromString(clonerStr);
-                    List<?> list = cloneSection.getList(clonerStr);
-                    if (list != null) {
-                        Map<UUID, Instant> playerClones = new HashMap<>();
-                        for (Object item : list) {
-                            if (item instanceof Map) {
-                                Map<?, ?> map = (Map<?, ?>) item;
-                                String sourceStr = String.valueOf(map.get("source"));
-                                Object timeObj = map.get("time");
-                                if (sourceStr != null && timeObj != null) {
-                                    try {
-                                        UUID sourceId = UUID.fromString(sourceStr);
-                                        long millis = ((Number) timeObj).longValue();
-                                        playerClones.put(sourceId, Instant.ofEpochMilli(millis));
-                                    } catch (Exception ignored) {
-                                        // Skip malformed entries
-                                    }
-                                }
-                            }
-                        }
-                        if (!playerClones.isEmpty()) {
-                            clones.put(clonerId, playerClones);
-                        }
-                    }
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid clone history UUID: " + clonerStr);
-                }
-            }
-        }
-
-        // --- Cloned counts ---
         ConfigurationSection countsSection = config.getConfigurationSection("clonedCounts");
-        if (countsSection != null) {
-            for (String uuidStr : countsSection.getKeys(false)) {
-                try {
-                    UUID playerId = UUID.fromString(uuidStr);
-                    int count = countsSection.getInt(uuidStr, 0);
-                    if (count > 0) counts.put(playerId, count);
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid clonedCounts UUID: " + uuidStr);
-                }
-            }
-        }
-
-        // --- Cleared checkpoints ---
         ConfigurationSection clearedSection = config.getConfigurationSection("cleared");
-        if (clearedSection != null) {
-            for (String uuidStr : clearedSection.getKeys(false)) {
-                try {
-                    UUID playerId = UUID.fromString(uuidStr);
-                    List<?> list = clearedSection.getList(uuidStr);
-                    if (list != null) {
-                        Set<String> names = new HashSet<>();
-                        for (Object item : list) {
-                            if (item != null) names.add(String.valueOf(item));
-                        }
-                        if (!names.isEmpty()) cleared.put(playerId, names);
-                    }
-                } catch (IllegalArgumentException e) {
-                    logger.warning("Skipping invalid cleared UUID: " + uuidStr);
-                }
-            }
+
+        Map<UUID, Checkpoint> quickCps;
+        Map<UUID, Map<String, Checkpoint>> namedCps;
+        Map<UUID, String> selected;
+        Map<UUID, Map<UUID, Instant>> clones;
+        Map<UUID, Integer> counts;
+        Map<UUID, Set<String>> cleared;
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, DECODER_THREADS, null, false);
+        try {
+            // --- Quick checkpoints ---
+            ForkJoinTask<Map<UUID, Checkpoint>> quickTask = pool.submit(() ->
+                decodeSection(quickSection, "quick checkpoint", logger,
+                    key -> loadCheckpoint(quickSection.getConfigurationSection(key))));
+
+            // --- Named checkpoints ---
+            ForkJoinTask<Map<UUID, Map<String, Checkpoint>>> namedTask = pool.submit(() ->
+                decodeSection(namedSection, "named checkpoint", logger,
+                    key -> decodeNamedList(namedSection.getList(key))));
+
+            // --- Selected ---
+            ForkJoinTask<Map<UUID, String>> selectedTask = pool.submit(() ->
+                decodeSection(selectedSection, "selected checkpoint", logger, key -> {
+                    String name = selectedSection.getString(key);
+                    return name != null && !name.trim().isEmpty() ? name : null;
+                }));
+
+            // --- Clone history ---
+            ForkJoinTask<Map<UUID, Map<UUID, Instant>>> cloneTask = pool.submit(() ->
+                decodeSection(cloneSection, "clone history", logger,
+                    key -> decodeCloneList(cloneSection.getList(key))));
+
+            // --- Cloned counts ---
+            ForkJoinTask<Map<UUID, Integer>> countsTask = pool.submit(() ->
+                decodeSection(countsSection, "clonedCounts", logger, key -> {
+                    int count = countsSection.getInt(key, 0);
+                    return count > 0 ? count : null;
+                }));
+
+            // --- Cleared checkpoints ---
+            ForkJoinTask<Map<UUID, Set<String>>> clearedTask = pool.submit(() ->
+                decodeSection(clearedSection, "cleared", logger,
+                    key -> decodeNameList(clearedSection.getList(key))));
+
+            quickCps = quickTask.join();
+            namedCps = namedTask.join();
+            selected = selectedTask.join();
+            clones = cloneTask.join();
+            counts = countsTask.join();
+            cleared = clearedTask.join();
+        } finally {
+            pool.shutdown();
         }
+        long decodedNanos = System.nanoTime();
 
         manager.loadData(quickCps, namedCps, selected, clones, counts, cleared);
+        long appliedNanos = System.nanoTime();
 
         int totalNamed = namedCps.values().stream().mapToInt(Map::size).sum();
         int totalCleared = cleared.values().stream().mapToInt(Set::size).sum();
@@ -275,39 +181,89 @@ public final class CheckpointStorage {
                 + clones.size() + " clone histories, "
                 + counts.size() + " cloned counts, "
                 + totalCleared + " cleared.");
+        logger.info("Checkpoint load took " + millis(startNanos, appliedNanos) + " ms (parse "
+                + millis(startNanos, parsedNanos) + " ms, decode "
+                + millis(parsedNanos, decodedNanos) + " ms on " + parallelism + " threads, apply "
+                + millis(decodedNanos, appliedNanos) + " ms).");
+        return true;
     }
 
-    // -----------------------------------------------------------------------
-    // Serialization helpers
-    // -----------------------------------------------------------------------
+    /**
+     * Decodes every player entry of one section in parallel. Entries whose key
+     * is not a UUID are skipped with a warning; entries the decoder maps to
+     * null are skipped silently.
+     */
+    private static <V> Map<UUID, V> decodeSection(ConfigurationSection section, String label,
+                                                  Logger logger, Function<String, V> decoder) {
+        Map<UUID, V> result = new ConcurrentHashMap<>();
+        if (section == null) return result;
+        new ArrayList<>(section.getKeys(false)).parallelStream().forEach(uuidStr -> {
+            try {
+                UUID playerId = UUID.fromString(uuidStr);
+                V value = decoder.apply(uuidStr);
+                if (value != null) result.put(playerId, value);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping invalid " + label + " UUID: " + uuidStr);
+            }
+        });
+        return result;
+    }
+
+    private static Map<String, Checkpoint> decodeNamedList(List<?> cpList) {
+        if (cpList == null) return null;
+        Map<String, Checkpoint> playerMap = new HashMap<>();
+        for (Object item : cpList) {
+            if (item instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) item;
+                Checkpoint cp = deserializeCheckpoint(map);
+                String name = String.valueOf(map.get("name"));
+                if (cp != null && name != null && !name.trim().isEmpty()) {
+                    playerMap.put(name, cp);
+                }
+            }
+        }
+        return playerMap.isEmpty() ? null : playerMap;
+    }
+
+    private static Map<UUID, Instant> decodeCloneList(List<?> list) {
+        if (list == null) return null;
+        Map<UUID, Instant> playerClones = new HashMap<>();
+        for (Object item : list) {
+            if (item instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) item;
+                String sourceStr = String.valueOf(map.get("source"));
+                Object timeObj = map.get("time");
+                if (sourceStr != null && timeObj != null) {
+                    try {
+                        UUID sourceId = UUID.fromString(sourceStr);
+                        long millis = ((Number) timeObj).longValue();
+                        playerClones.put(sourceId, Instant.ofEpochMilli(millis));
+                    } catch (Exception ignored) {
+                        // Skip malformed entries
+                    }
+                }
+            }
+        }
+        return playerClones.isEmpty() ? null : playerClones;
+    }
 
-    private static void saveCheckpoint(YamlConfiguration config, String path, Checkpoint cp) {
-        config.set(path + ".world", cp.worldName());
-        config.set(path + ".x", cp.x());
-        config.set(path + ".y", cp.y());
-        config.set(path + ".z", cp.z());
-        config.set(path + ".yaw", (double) cp.yaw());
-        config.set(path + ".pitch", (double) cp.pitch());
-        config.set(path + ".createdAt", cp.createdAt().toEpochMilli());
-        config.set(path + ".updatedAt", cp.updatedAt().toEpochMilli());
-        config.set(path + ".description", cp.description());
+    private static Set<String> decodeNameList(List<?> list) {
+        if (list == null) return null;
+        Set<String> names = new HashSet<>();
+        for (Object item : list) {
+            if (item != null) names.add(String.valueOf(item));
+        }
+        return names.isEmpty() ? null : names;
     }
 
-    private static Map<String, Object> serializeCheckpoint(String name, Checkpoint cp) {
-        Map<String, Object> map = new LinkedHashMap<>();
-        map.put("name", name);
-        map.put("world", cp.worldName());
-        map.put("x", cp.x());
-        map.put("y", cp.y());
-        map.put("z", cp.z());
-        map.put("yaw", (double) cp.yaw());
-        map.put("pitch", (double) cp.pitch());
-        map.put("createdAt", cp.createdAt().toEpochMilli());
-        map.put("updatedAt", cp.updatedAt().toEpochMilli());
-        map.put("description", cp.description());
-        return map;
+    private static long millis(long fromNanos, long toNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(toNanos - fromNanos);
     }
 
+    // -----------------------------------------------------------------------
+    // Serialization helpers
+    // -----------------------------------------------------------------------
+
     private static Checkpoint loadCheckpoint(ConfigurationSection section) {
         if (section == null) return null;
         try {
@@ -0,0 +1,84 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.PlayerData;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A persistence backend for checkpoint data, selected by {@code storage.type}.
+ * <p>
+ * {@link #loadAll} and {@link #saveChanges} drive the normal plugin life
+ * cycle: load at startup, then persist whatever changed from the background
+ * saver thread. The per-player operations read or replace a single player's
+ * stored data; backends keyed by player (sharded files, SQL) implement them as
+ * point operations, whole-file backends by rewriting the file.
+ * <p>
+ * Implementations are called from one thread at a time (the saver thread,
+ * or the main thread during enable/disable).
+ */
+public interface CheckpointStore {
+
+    /** Loads all persisted data into the manager, replacing its contents. */
+    void loadAll(CheckpointManager manager);
+
+    /**
+     * Persists the changes made since the last call. Implementations use
+     * {@link CheckpointManager#drainDirtyPlayers()} to find them and re-mark
+     * players whose write fails.
+     *
+     * @return false if something could not be written, so the caller retries
+     */
+    boolean saveChanges(CheckpointManager manager);
+
+    /**
+     * Prepares the backend for on-demand loading ({@code storage.lazy-load})
+     * without loading player data; see {@link LazyPlayerLoader}. Data migrated
+     * from a legacy file on the way may still end up in the manager.
+     *
+     * @return false if this backend only supports {@link #loadAll} or could
+     *         not be opened
+     */
+    default boolean openLazy(CheckpointManager manager) {
+        return false;
+    }
+
+    /** Returns every player with stored data. Needed only for lazy loading. */
+    default Set<UUID> listPlayers() throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot list players");
+    }
+
+    /** Reads one player's stored data; returns null if nothing is stored. */
+    PlayerData load(UUID playerId) throws IOException;
+
+    /** Replaces one player's stored data. An empty value deletes it. */
+    void save(PlayerData data) throws IOException;
+
+    /** Removes everything stored for one player. */
+    void delete(UUID playerId) throws IOException;
+
+    /**
+     * Reads the players' manual language preferences if this backend stores
+     * them itself; returns null if it does not, in which case
+     * {@link LanguagePreferenceStore} keeps them in {@code languages.yml}.
+     */
+    default Map<UUID, String> loadLanguagePreferences() throws IOException {
+        return null;
+    }
+
+    /**
+     * Writes the given changed language preferences. Only called on backends
+     * whose {@link #loadLanguagePreferences} returned a map.
+     */
+    default void saveLanguagePreferences(Map<UUID, String> changed) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not store languages");
+    }
+
+    /**
+     * Called once on disable, after the final {@link #saveChanges}. Releases
+     * resources (connections, journals).
+     */
+    default void close(CheckpointManager manager) {}
+}
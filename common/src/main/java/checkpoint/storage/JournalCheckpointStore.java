@@ -0,0 +1,62 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointEvent;
+import checkpoint.manager.CheckpointEventBus;
+import checkpoint.manager.CheckpointManager;
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * {@code storage.type: journal} — {@code checkpoints.bin} as the snapshot plus
+ * an append-only {@link CheckpointJournal}. Saves append only the changes made
+ * since the previous save; the journal is folded into the snapshot once it
+ * passes the compaction threshold and on {@link #close}.
+ */
+public final class JournalCheckpointStore extends BinaryCheckpointStore {
+
+    private final CheckpointJournal journal;
+    /** The journal's subscription to the manager's events, from load until close. */
+    private CheckpointEventBus.Subscription recording;
+
+    public JournalCheckpointStore(File binaryFile, File yamlFile, File journalFile,
+                                  long compactThresholdBytes, boolean mapped, Logger logger) {
+        super(binaryFile, yamlFile, mapped, logger);
+        this.journal = new CheckpointJournal(journalFile, compactThresholdBytes, logger);
+    }
+
+    @Override
+    public void loadAll(CheckpointManager manager) {
+        super.loadAll(manager);
+        journal.replay(manager);
+        if (recording == null) recording = manager.events().subscribe(CheckpointEvent.class, journal::append);
+    }
+
+    @Override
+    public boolean saveChanges(CheckpointManager manager) {
+        manager.drainDirtyPlayers();
+        return journal.flushOrCompact(() -> BinarySnapshot.save(binaryFile, manager, logger));
+    }
+
+    /** Fold the journal into the snapshot so the next start needs no replay. */
+    @Override
+    public void close(CheckpointManager manager) {
+        if (recording != null) {
+            recording.cancel();
+            recording = null;
+        }
+        journal.compact(() -> BinarySnapshot.save(binaryFile, manager, logger));
+    }
+
+    @Override
+    protected boolean readAll(CheckpointManager manager) {
+        if (!super.readAll(manager)) return false;
+        journal.replay(manager);
+        return true;
+    }
+
+    /** Writing a full snapshot supersedes the journal, so it is compacted away. */
+    @Override
+    protected boolean writeAll(CheckpointManager manager) {
+        return journal.compact(() -> BinarySnapshot.save(binaryFile, manager, logger));
+    }
+}
@@ -0,0 +1,182 @@
+package checkpoint.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * In-memory store for the players' manual language preferences
+ * ({@code /cp language}). Changes only update memory and notify the
+ * registered callback; {@link #saveIfDirty()} writes them later in one batch
+ * from the checkpoint save task, so languages share the checkpoint
+ * {@link WriteBehindSaver} instead of rewriting a file per command.
+ * <p>
+ * Backends that can hold the preferences themselves (see
+ * {@link CheckpointStore#loadLanguagePreferences()}) receive only the changed
+ * entries; otherwise the whole set is written to {@code languages.yml} as a
+ * flat {@code uuid: LANG} map. An existing {@code languages.yml} is imported
+ * into such a backend while it has no preferences yet.
+ */
+public final class LanguagePreferenceStore {
+
+    private final File file;
+    private final CheckpointStore backend;
+    private final Logger logger;
+
+    private final Map<UUID, String> preferences = new ConcurrentHashMap<>();
+    /** Entries changed since the last save, with their new value. */
+    private final Map<UUID, String> changed = new ConcurrentHashMap<>();
+    private boolean useBackend;
+    private Runnable onChanged;
+
+    /**
+     * @param file    languages.yml, used when the backend does not store languages
+     * @param backend the checkpoint store, or null to always use the file
+     */
+    public LanguagePreferenceStore(File file, CheckpointStore backend, Logger logger) {
+        this.file = Objects.requireNonNull(file, "file cannot be null");
+        this.backend = backend;
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+    }
+
+    /** Register a callback that is invoked whenever a preference changes. */
+    public void setOnChanged(Runnable callback) {
+        this.onChanged = callback;
+    }
+
+    // -----------------------------------------------------------------------
+    // Load
+    // -----------------------------------------------------------------------
+
+    /** Loads the stored preferences and returns them (player to language name). */
+    public Map<UUID, String> load() {
+        preferences.clear();
+        changed.clear();
+        Map<UUID, String> stored = null;
+        if (backend != null) {
+            try {
+                stored = backend.loadLanguagePreferences();
+            } catch (IOException e) {
+                logger.warning(e.getMessage());
+            }
+        }
+        useBackend = stored != null;
+
+        if (stored == null || stored.isEmpty()) {
+            Map<UUID, String> fromFile = readFile();
+            if (useBackend && !fromFile.isEmpty()) {
+                // One-time import; written to the backend by the next save.
+                changed.putAll(fromFile);
+                logger.info("Importing " + fromFile.size() + " language preferences from " + file.getName() + ".");
+            }
+            stored = fromFile;
+        }
+        preferences.putAll(stored);
+        return Collections.unmodifiableMap(new HashMap<>(preferences));
+    }
+
+    private Map<UUID, String> readFile() {
+        Map<UUID, String> result = new HashMap<>();
+        if (!file.isFile()) return result;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (line.startsWith("#") || colon < 0) continue;
+                try {
+                    UUID playerId = UUID.fromString(unquote(line.substring(0, colon)));
+                    result.put(playerId, unquote(line.substring(colon + 1)));
+                } catch (IllegalArgumentException ignored) {
+                    // Skip malformed keys
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read language preferences: " + e.getMessage());
+        }
+        return result;
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2
+                && (trimmed.charAt(0) == '\'' || trimmed.charAt(0) == '"')
+                && trimmed.charAt(trimmed.length() - 1) == trimmed.charAt(0)) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    // -----------------------------------------------------------------------
+    // Access
+    // -----------------------------------------------------------------------
+
+    /** Records a player's preference in memory; it is persisted by the next save. */
+    public void set(UUID playerId, String lang) {
+        Objects.requireNonNull(playerId, "playerId cannot be null");
+        Objects.requireNonNull(lang, "lang cannot be null");
+        preferences.put(playerId, lang);
+        changed.put(playerId, lang);
+        if (onChanged != null) onChanged.run();
+    }
+
+    public boolean isDirty() {
+        return !changed.isEmpty();
+    }
+
+    // -----------------------------------------------------------------------
+    // Save
+    // -----------------------------------------------------------------------
+
+    /**
+     * Writes the changes made since the last save, if any. Called from the
+     * save task; on failure the changes are kept for the next save.
+     *
+     * @return false if the write failed
+     */
+    public boolean saveIfDirty() {
+        if (changed.isEmpty()) return true;
+        Map<UUID, String> batch = new HashMap<>(changed);
+        // Drop only entries that were not changed again in the meantime.
+        for (Map.Entry<UUID, String> entry : batch.entrySet()) {
+            changed.remove(entry.getKey(), entry.getValue());
+        }
+        try {
+            if (useBackend) {
+                backend.saveLanguagePreferences(batch);
+            } else {
+                writeFile();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to save language preferences: " + e.getMessage());
+            for (Map.Entry<UUID, String> entry : batch.entrySet()) {
+                changed.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            return false;
+        }
+    }
+
+    private void writeFile() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) parent.mkdirs();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<UUID, String> entry : new TreeMap<>(preferences).entrySet()) {
+                writer.write(entry.getKey() + ": " + entry.getValue());
+                writer.newLine();
+            }
+        }
+        ShardedStorage.moveReplacing(tmp, file);
+    }
+}
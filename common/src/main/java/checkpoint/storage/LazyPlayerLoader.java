@@ -0,0 +1,283 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.PlayerData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * On-demand loading of per-player data for stores that support it
+ * ({@code storage.lazy-load}). Instead of loading everything at startup, a
+ * player's data is read when they log in or when another player's menu or a
+ * clone needs it, and dropped again once the player has been offline and idle
+ * for a while.
+ * <p>
+ * Store reads run on a single "Checkpoint-Loader" thread. Callers go through
+ * {@link #ensureLoaded} (or {@link #loadBlocking} at login) before changing a
+ * player, and an idle period far longer than any menu interaction separates
+ * the last use from eviction. A player whose load is still pending (a login
+ * that timed out) or has failed is {@link CheckpointManager#holdPlayer held}:
+ * changes made meanwhile are not saved over the stored data, but merged with
+ * it once a load succeeds. A failed load is retried on the next access, and
+ * for online players on every {@link #evictIdle()} as well. {@link #evictIdle()} must run inside the save task, after
+ * {@link CheckpointStore#saveChanges}, so it never races the saver between
+ * draining a dirty player and reading its data.
+ */
+public final class LazyPlayerLoader {
+
+    private final CheckpointStore store;
+    private final CheckpointManager manager;
+    private final Executor callbackExecutor;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final Logger logger;
+    private final ExecutorService executor;
+
+    /** Loaded players and the time they were last used. */
+    private final Map<UUID, Long> lastAccess = new ConcurrentHashMap<>();
+    /** Online players; never evicted. */
+    private final Set<UUID> pinned = ConcurrentHashMap.newKeySet();
+    /** Players known to have stored data, whether loaded or not. */
+    private final Set<UUID> knownPlayers = ConcurrentHashMap.newKeySet();
+    /** Serializes applying loaded data with eviction. */
+    private final Object loadLock = new Object();
+    private volatile Runnable onChanged;
+
+    /**
+     * @param callbackExecutor runs {@link #ensureLoaded} callbacks (the server main thread)
+     * @param idleMillis       how long an offline player's data stays in memory after its last use
+     */
+    public LazyPlayerLoader(CheckpointStore store, CheckpointManager manager,
+                            Executor callbackExecutor, long idleMillis, Logger logger) {
+        this(store, manager, callbackExecutor, idleMillis, System::currentTimeMillis, logger);
+    }
+
+    LazyPlayerLoader(CheckpointStore store, CheckpointManager manager, Executor callbackExecutor,
+                     long idleMillis, LongSupplier clock, Logger logger) {
+        this.store = Objects.requireNonNull(store, "store cannot be null");
+        this.manager = Objects.requireNonNull(manager, "manager cannot be null");
+        this.callbackExecutor = Objects.requireNonNull(callbackExecutor, "callbackExecutor cannot be null");
+        this.idleMillis = Math.max(0L, idleMillis);
+        this.clock = clock;
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Checkpoint-Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the list of stored players. Anything already in the manager (e.g.
+     * data migrated from a legacy file during {@link CheckpointStore#openLazy})
+     * counts as loaded and becomes subject to eviction.
+     */
+    public void start() {
+        try {
+            knownPlayers.addAll(store.listPlayers());
+        } catch (IOException e) {
+            logger.warning("Could not list stored checkpoint players: " + e.getMessage());
+        }
+        long now = clock.getAsLong();
+        for (UUID playerId : manager.getAllPlayerUuids()) {
+            lastAccess.put(playerId, now);
+            knownPlayers.add(playerId);
+        }
+        logger.info("Lazy loading enabled: " + knownPlayers.size() + " players with stored checkpoints.");
+    }
+
+    /**
+     * Registers a callback run when a load kept changes made before it
+     * finished; the player is then dirty and needs saving.
+     */
+    public void setOnChanged(Runnable callback) {
+        this.onChanged = callback;
+    }
+
+    /** Stops the loader thread. Pending loads are abandoned. */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // -----------------------------------------------------------------------
+    // Access
+    // -----------------------------------------------------------------------
+
+    public boolean isLoaded(UUID playerId) {
+        return lastAccess.containsKey(playerId);
+    }
+
+    /** Returns every player with stored or in-memory data, loaded or not. */
+    public Set<UUID> getKnownPlayers() {
+        Set<UUID> result = new HashSet<>(knownPlayers);
+        result.addAll(manager.getAllPlayersWithData());
+        return Collections.unmodifiableSet(result);
+    }
+
+    /** Records a use of a loaded player's data, postponing its eviction. */
+    public void touch(UUID playerId) {
+        lastAccess.computeIfPresent(playerId, (id, time) -> clock.getAsLong());
+    }
+
+    /** Marks a player as online; online players are never evicted. */
+    public void pin(UUID playerId) {
+        pinned.add(playerId);
+        touch(playerId);
+    }
+
+    /** Marks a player as offline; the idle period starts now. */
+    public void unpin(UUID playerId) {
+        pinned.remove(playerId);
+        touch(playerId);
+    }
+
+    /**
+     * Loads one player on the loader thread and waits for it, for callers that
+     * are already off the main thread (the async pre-login event).
+     *
+     * @return false if the load failed or did not finish within the timeout
+     */
+    public boolean loadBlocking(UUID playerId, long timeoutMillis) {
+        if (isLoaded(playerId)) {
+            touch(playerId);
+            return true;
+        }
+        manager.holdPlayer(playerId);
+        try {
+            Future<?> future = executor.submit(() -> loadNow(Collections.singleton(playerId)));
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return isLoaded(playerId);
+        } catch (RejectedExecutionException | ExecutionException | TimeoutException e) {
+            logger.warning("Could not load checkpoints of " + playerId + " in time: " + e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Runs {@code callback} once all given players are in memory: immediately
+     * on the calling thread if they already are, otherwise on the callback
+     * executor after they have been loaded in the background.
+     */
+    public void ensureLoaded(Collection<UUID> playerIds, Runnable callback) {
+        List<UUID> missing = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            if (isLoaded(playerId)) touch(playerId);
+            else missing.add(playerId);
+        }
+        if (missing.isEmpty()) {
+            callback.run();
+            return;
+        }
+        for (UUID playerId : missing) manager.holdPlayer(playerId);
+        try {
+            executor.execute(() -> {
+                loadNow(missing);
+                callbackExecutor.execute(callback);
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down: nothing to show anymore.
+        }
+    }
+
+    public void ensureLoaded(UUID playerId, Runnable callback) {
+        ensureLoaded(Collections.singleton(playerId), callback);
+    }
+
+    /**
+     * Loader thread only. A player whose read fails stays unloaded and held,
+     * so the next access tries again.
+     */
+    private void loadNow(Collection<UUID> playerIds) {
+        boolean merged = false;
+        for (UUID playerId : playerIds) {
+            if (isLoaded(playerId)) {
+                // Loaded by an earlier task after the caller had already held it.
+                manager.releasePlayer(playerId);
+                continue;
+            }
+            PlayerData data;
+            try {
+                data = store.load(playerId);
+            } catch (IOException e) {
+                logger.warning("Could not load checkpoints of " + playerId
+                    + "; changes are kept in memory until a load succeeds: " + e.getMessage());
+                continue;
+            }
+            synchronized (loadLock) {
+                if (!isLoaded(playerId) && data != null) {
+                    merged |= manager.mergeLoadedPlayerData(data);
+                    knownPlayers.add(playerId);
+                }
+                lastAccess.put(playerId, clock.getAsLong());
+                manager.releasePlayer(playerId);
+            }
+        }
+        Runnable callback = onChanged;
+        if (merged && callback != null) callback.run();
+    }
+
+    // -----------------------------------------------------------------------
+    // Eviction
+    // -----------------------------------------------------------------------
+
+    /**
+     * Drops offline players that have not been used for the idle period and
+     * have no unsaved changes, and queues another load for online players
+     * that are still not loaded. Call from the save task, after the store has
+     * written the dirty players.
+     *
+     * @return the number of players evicted
+     */
+    public int evictIdle() {
+        List<UUID> unloaded = new ArrayList<>();
+        for (UUID playerId : pinned) {
+            if (!isLoaded(playerId)) unloaded.add(playerId);
+        }
+        if (!unloaded.isEmpty()) {
+            try {
+                executor.execute(() -> loadNow(unloaded));
+            } catch (RejectedExecutionException e) {
+                // Shutting down.
+            }
+        }
+        long cutoff = clock.getAsLong() - idleMillis;
+        int evicted = 0;
+        synchronized (loadLock) {
+            for (Map.Entry<UUID, Long> entry : lastAccess.entrySet()) {
+                UUID playerId = entry.getKey();
+                if (entry.getValue() > cutoff || pinned.contains(playerId)) continue;
+                if (manager.isPlayerDirty(playerId)) continue;
+                if (lastAccess.remove(playerId, entry.getValue())) {
+                    manager.unloadPlayer(playerId);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.fine("Evicted checkpoints of " + evicted + " idle offline players.");
+        }
+        return evicted;
+    }
+}
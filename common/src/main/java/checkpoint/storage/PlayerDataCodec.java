@@ -0,0 +1,157 @@
+package checkpoint.storage;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Binary encoding of a single {@link PlayerData} record, used for per-player
+ * shard files.
+ * <p>
+ * Layout (big-endian, strings as modified UTF-8):
+ * <pre>
+ * int    magic ("CPPD")
+ * short  version
+ * long   playerId (most significant bits), long playerId (least significant bits)
+ * bool   hasQuick, [checkpoint]
+ * int    namedCount, { utf name, checkpoint } * namedCount
+ * bool   hasSelected, [utf selected]
+ * int    cloneCount, { long sourceMsb, long sourceLsb, long epochMillis } * cloneCount
+ * int    clonedCount
+ * int    clearedCount, { utf name } * clearedCount
+ *
+ * checkpoint = utf world, double x, double y, double z, float yaw, float pitch,
+ *              long createdAt, long updatedAt, utf description
+ * </pre>
+ */
+final class PlayerDataCodec {
+
+    static final int MAGIC = 0x43505044; // "CPPD"
+    static final short VERSION = 1;
+
+    private PlayerDataCodec() {}
+
+    static void write(DataOutput out, PlayerData data) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        writeUuid(out, data.playerId());
+
+        out.writeBoolean(data.quick() != null);
+        if (data.quick() != null) writeCheckpoint(out, data.quick());
+
+        out.writeInt(data.named().size());
+        for (Map.Entry<String, Checkpoint> entry : data.named().entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeCheckpoint(out, entry.getValue());
+        }
+
+        out.writeBoolean(data.selected() != null);
+        if (data.selected() != null) out.writeUTF(data.selected());
+
+        out.writeInt(data.cloneHistory().size());
+        for (Map.Entry<UUID, Instant> entry : data.cloneHistory().entrySet()) {
+            writeUuid(out, entry.getKey());
+            out.writeLong(entry.getValue().toEpochMilli());
+        }
+
+        out.writeInt(data.clonedCount());
+
+        out.writeInt(data.cleared().size());
+        for (String name : data.cleared()) {
+            out.writeUTF(name);
+        }
+    }
+
+    static PlayerData read(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a player data record (bad magic)");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported player data version: " + version);
+        }
+        UUID playerId = readUuid(in);
+
+        Checkpoint quick = in.readBoolean() ? readCheckpoint(in) : null;
+
+        int namedCount = in.readInt();
+        Map<String, Checkpoint> named = new HashMap<>();
+        for (int i = 0; i < namedCount; i++) {
+            String name = in.readUTF();
+            named.put(name, readCheckpoint(in));
+        }
+
+        String selected = in.readBoolean() ? in.readUTF() : null;
+
+        int cloneCount = in.readInt();
+        Map<UUID, Instant> clones = new HashMap<>();
+        for (int i = 0; i < cloneCount; i++) {
+            UUID source = readUuid(in);
+            clones.put(source, Instant.ofEpochMilli(in.readLong()));
+        }
+
+        int clonedCount = in.readInt();
+
+        int clearedCount = in.readInt();
+        Set<String> cleared = new HashSet<>();
+        for (int i = 0; i < clearedCount; i++) {
+            cleared.add(in.readUTF());
+        }
+
+        return new PlayerData(playerId, quick, named, selected, clones, clonedCount, cleared);
+    }
+
+    // -----------------------------------------------------------------------
+    // Field helpers
+    // -----------------------------------------------------------------------
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        return new UUID(msb, lsb);
+    }
+
+    static void writeCheckpoint(DataOutput out, Checkpoint cp) throws IOException {
+        out.writeUTF(cp.worldName());
+        out.writeDouble(cp.x());
+        out.writeDouble(cp.y());
+        out.writeDouble(cp.z());
+        out.writeFloat(cp.yaw());
+        out.writeFloat(cp.pitch());
+        out.writeLong(cp.createdAtMillis());
+        out.writeLong(cp.updatedAtMillis());
+        out.writeUTF(cp.description());
+    }
+
+    static Checkpoint readCheckpoint(DataInput in) throws IOException {
+        String world = in.readUTF();
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        long createdMs = in.readLong();
+        long updatedMs = in.readLong();
+        String description = in.readUTF();
+        try {
+            return new Checkpoint(world, x, y, z, yaw, pitch,
+                Instant.ofEpochMilli(createdMs), Instant.ofEpochMilli(updatedMs), description);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid checkpoint record: " + e.getMessage(), e);
+        }
+    }
+}
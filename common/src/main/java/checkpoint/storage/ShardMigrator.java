@@ -0,0 +1,78 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * One-time conversion of the monolithic {@code checkpoints.yml} /
+ * {@code checkpoints.bin} into the per-player shard layout used by
+ * {@link ShardedStorage}.
+ */
+public final class ShardMigrator {
+
+    static final String MIGRATED_SUFFIX = ".migrated";
+
+    private ShardMigrator() {}
+
+    /**
+     * If {@code yamlFile} or {@code binaryFile} exists, loads the newer of the
+     * two into the manager, writes a shard for every player and renames both
+     * files to {@code *.migrated} so the migration never runs twice. A source
+     * that fails to load leaves the existing shards and both files untouched.
+     * A source that loads but holds no players is renamed as well, but the
+     * existing shards are kept.
+     *
+     * @return true if the manager now holds the migrated data; false if the
+     *         shards are still to be loaded
+     */
+    public static boolean migrateIfNeeded(File yamlFile, File binaryFile, File dataDir,
+                                          CheckpointManager manager, Logger logger) {
+        File source;
+        if (SnapshotConverter.isNewer(binaryFile, yamlFile)) {
+            source = binaryFile;
+        } else if (yamlFile.exists()) {
+            source = yamlFile;
+        } else {
+            return false;
+        }
+
+        logger.info("Migrating " + source.getName() + " to per-player shards in " + dataDir.getName() + "/ ...");
+        if (source == binaryFile) {
+            if (!BinarySnapshot.load(binaryFile, manager, logger)) {
+                logger.severe("Shard migration aborted; " + binaryFile.getName() + " is left in place.");
+                return false;
+            }
+        } else if (!CheckpointStorage.load(yamlFile, manager, logger)) {
+            logger.severe("Shard migration aborted; " + yamlFile.getName() + " is left in place.");
+            return false;
+        }
+        if (manager.getAllPlayerUuids().isEmpty()) {
+            // Nothing to migrate, and too little to prove the shards stale; renamed so it is not read every start.
+            SnapshotConverter.moveAside(yamlFile, MIGRATED_SUFFIX, logger);
+            SnapshotConverter.moveAside(binaryFile, MIGRATED_SUFFIX, logger);
+            logger.warning(source.getName() + " holds no players; existing shards are kept and the file is marked "
+                + MIGRATED_SUFFIX + ".");
+            return false;
+        }
+
+        // The monolithic file is authoritative: drop shards left over from an earlier sharded run.
+        for (File stale : ShardedStorage.listShardFiles(dataDir)) {
+            try {
+                Files.deleteIfExists(stale.toPath());
+            } catch (IOException e) {
+                logger.warning("Could not remove stale shard " + stale.getName() + ": " + e.getMessage());
+            }
+        }
+
+        // Shards that fail to write stay dirty and are retried by the regular saver.
+        ShardedStorage.saveAll(dataDir, manager, logger);
+
+        SnapshotConverter.moveAside(yamlFile, MIGRATED_SUFFIX, logger);
+        SnapshotConverter.moveAside(binaryFile, MIGRATED_SUFFIX, logger);
+        logger.info("Shard migration complete; original files kept with the " + MIGRATED_SUFFIX + " suffix.");
+        return true;
+    }
+}
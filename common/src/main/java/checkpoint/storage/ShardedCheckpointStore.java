@@ -0,0 +1,74 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.PlayerData;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * {@code storage.type: sharded} — one file per player, see {@link ShardedStorage}.
+ * Per-player operations touch only that player's shard.
+ */
+public final class ShardedCheckpointStore implements CheckpointStore {
+
+    private final File dataDir;
+    private final File yamlFile;
+    private final File binaryFile;
+    private final Logger logger;
+
+    /**
+     * @param yamlFile   legacy checkpoints.yml, migrated on first load
+     * @param binaryFile legacy checkpoints.bin, migrated on first load
+     */
+    public ShardedCheckpointStore(File dataDir, File yamlFile, File binaryFile, Logger logger) {
+        this.dataDir = dataDir;
+        this.yamlFile = yamlFile;
+        this.binaryFile = binaryFile;
+        this.logger = logger;
+    }
+
+    @Override
+    public void loadAll(CheckpointManager manager) {
+        if (!ShardMigrator.migrateIfNeeded(yamlFile, binaryFile, dataDir, manager, logger)) {
+            ShardedStorage.load(dataDir, manager, logger);
+        }
+    }
+
+    /** Only the legacy-file migration runs here; shards are read on demand. */
+    @Override
+    public boolean openLazy(CheckpointManager manager) {
+        ShardMigrator.migrateIfNeeded(yamlFile, binaryFile, dataDir, manager, logger);
+        return true;
+    }
+
+    @Override
+    public Set<UUID> listPlayers() {
+        return ShardedStorage.listPlayers(dataDir);
+    }
+
+    @Override
+    public boolean saveChanges(CheckpointManager manager) {
+        return ShardedStorage.saveDirty(dataDir, manager, logger);
+    }
+
+    @Override
+    public PlayerData load(UUID playerId) throws IOException {
+        return ShardedStorage.readShard(dataDir, playerId);
+    }
+
+    @Override
+    public void save(PlayerData data) throws IOException {
+        if (!ShardedStorage.writeShard(dataDir, data, logger)) {
+            throw new IOException("could not write shard for " + data.playerId());
+        }
+    }
+
+    @Override
+    public void delete(UUID playerId) throws IOException {
+        Files.deleteIfExists(ShardedStorage.shardFile(dataDir, playerId).toPath());
+    }
+}
@@ -0,0 +1,216 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Stores checkpoint data as one binary file per player:
+ * <pre>
+ * data/&lt;first two hex digits of uuid&gt;/&lt;uuid&gt;.dat
+ * </pre>
+ * Only players reported by {@link CheckpointManager#drainDirtyPlayers()} are
+ * rewritten on save, so a single change costs O(that player's data) instead of
+ * O(all players). Record layout is described in {@link PlayerDataCodec}.
+ */
+public final class ShardedStorage {
+
+    static final String SHARD_EXTENSION = ".dat";
+
+    private ShardedStorage() {}
+
+    /** Returns the shard file for the given player. */
+    public static File shardFile(File dataDir, UUID playerId) {
+        String id = playerId.toString();
+        return new File(new File(dataDir, id.substring(0, 2)), id + SHARD_EXTENSION);
+    }
+
+    // -----------------------------------------------------------------------
+    // Save
+    // -----------------------------------------------------------------------
+
+    /**
+     * Rewrites the shards of every player changed since the last save. Players
+     * whose write fails are marked dirty again so the next save retries them.
+     */
+    public static boolean saveDirty(File dataDir, CheckpointManager manager, Logger logger) {
+        Set<UUID> dirty = manager.drainDirtyPlayers();
+        boolean saved = true;
+        for (UUID playerId : dirty) {
+            if (!writeShard(dataDir, manager.getPlayerData(playerId), logger)) {
+                manager.markPlayerDirty(playerId);
+                saved = false;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Writes a shard for every player known to the manager. Players whose
+     * write fails are left dirty for the next {@link #saveDirty} to retry.
+     */
+    public static void saveAll(File dataDir, CheckpointManager manager, Logger logger) {
+        manager.drainDirtyPlayers();
+        for (PlayerData data : manager.snapshot()) {
+            if (!writeShard(dataDir, data, logger)) {
+                manager.markPlayerDirty(data.playerId());
+            }
+        }
+    }
+
+    /**
+     * Writes (or deletes, if empty) a single player's shard. The record is
+     * written to a temporary file first and moved into place, so a crash never
+     * leaves a half-written shard behind.
+     */
+    static boolean writeShard(File dataDir, PlayerData data, Logger logger) {
+        File file = shardFile(dataDir, data.playerId());
+        try {
+            if (data.isEmpty()) {
+                Files.deleteIfExists(file.toPath());
+                return true;
+            }
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            File tmp = new File(parent, file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                PlayerDataCodec.write(out, data);
+            }
+            moveReplacing(tmp, file);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to save checkpoint shard for " + data.playerId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    static void moveReplacing(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Load
+    // -----------------------------------------------------------------------
+
+    /**
+     * Loads every shard under {@code dataDir} into the manager.
+     * If the directory does not exist, this is a no-op.
+     */
+    public static void load(File dataDir, CheckpointManager manager, Logger logger) {
+        List<File> files = listShardFiles(dataDir);
+        if (files.isEmpty()) {
+            logger.info("No checkpoint shards found; starting fresh.");
+            return;
+        }
+
+        Map<UUID, Checkpoint> quickCps = new HashMap<>();
+        Map<UUID, Map<String, Checkpoint>> namedCps = new HashMap<>();
+        Map<UUID, String> selected = new HashMap<>();
+        Map<UUID, Map<UUID, Instant>> clones = new HashMap<>();
+        Map<UUID, Integer> counts = new HashMap<>();
+        Map<UUID, Set<String>> cleared = new HashMap<>();
+
+        int loaded = 0;
+        for (File file : files) {
+            PlayerData data;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                data = PlayerDataCodec.read(in);
+            } catch (IOException e) {
+                logger.warning("Skipping unreadable checkpoint shard " + file.getName() + ": " + e.getMessage());
+                keepBroken(file, logger);
+                continue;
+            }
+            UUID playerId = data.playerId();
+            if (data.quick() != null) quickCps.put(playerId, data.quick());
+            if (!data.named().isEmpty()) namedCps.put(playerId, data.named());
+            if (data.selected() != null) selected.put(playerId, data.selected());
+            if (!data.cloneHistory().isEmpty()) clones.put(playerId, data.cloneHistory());
+            if (data.clonedCount() > 0) counts.put(playerId, data.clonedCount());
+            if (!data.cleared().isEmpty()) cleared.put(playerId, data.cleared());
+            loaded++;
+        }
+
+        manager.loadData(quickCps, namedCps, selected, clones, counts, cleared);
+        logger.info("Loaded checkpoint shards for " + loaded + " players.");
+    }
+
+    /**
+     * Copies an unreadable shard to {@code <shard>.broken}, which is not
+     * listed as a shard, before the player's next save replaces it.
+     */
+    private static void keepBroken(File file, Logger logger) {
+        File broken = new File(file.getParentFile(), file.getName() + BinaryCheckpointStore.BROKEN_SUFFIX);
+        try {
+            Files.copy(file.toPath(), broken.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.severe("Unreadable checkpoint shard kept as " + broken.getName() + "; that player starts empty.");
+        } catch (IOException e) {
+            logger.severe("Could not back up unreadable checkpoint shard " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Reads one player's shard; returns null if the player has none. */
+    static PlayerData readShard(File dataDir, UUID playerId) throws IOException {
+        File file = shardFile(dataDir, playerId);
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return PlayerDataCodec.read(in);
+        }
+    }
+
+    /** Returns the players that have a shard, judged by file name alone. */
+    static Set<UUID> listPlayers(File dataDir) {
+        Set<UUID> result = new HashSet<>();
+        for (File file : listShardFiles(dataDir)) {
+            String name = file.getName();
+            try {
+                result.add(UUID.fromString(name.substring(0, name.length() - SHARD_EXTENSION.length())));
+            } catch (IllegalArgumentException e) {
+                // Not one of ours.
+            }
+        }
+        return result;
+    }
+
+    /** Lists all shard files under the data directory. */
+    static List<File> listShardFiles(File dataDir) {
+        List<File> result = new ArrayList<>();
+        File[] buckets = dataDir.listFiles(File::isDirectory);
+        if (buckets == null) return result;
+        for (File bucket : buckets) {
+            File[] shards = bucket.listFiles((dir, name) -> name.endsWith(SHARD_EXTENSION));
+            if (shards == null) continue;
+            for (File shard : shards) result.add(shard);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Converts between the hand-editable YAML file ({@link CheckpointStorage}) and
+ * the binary snapshot ({@link BinarySnapshot}).
+ * <p>
+ * At startup the plugin converts from the other format whenever that file is
+ * newer than the one it is about to load. Switching {@code storage.type}
+ * between {@code yaml} and {@code binary} therefore carries the data over in
+ * both directions, and an edited {@code checkpoints.yml} is picked up by the
+ * binary store on the next start.
+ * <p>
+ * A source that cannot be read is never converted, so a damaged file does
+ * not replace good data in the other format. After a successful conversion
+ * the source is renamed to {@code *.converted}; otherwise a stale copy
+ * touched later would look newer again and roll the data back.
+ */
+public final class SnapshotConverter {
+
+    static final String CONVERTED_SUFFIX = ".converted";
+
+    private SnapshotConverter() {}
+
+    /** Converts {@code yamlFile} into {@code binaryFile}. */
+    public static boolean yamlToBinary(File yamlFile, File binaryFile, Logger logger) {
+        CheckpointManager scratch = new CheckpointManager();
+        if (!CheckpointStorage.load(yamlFile, scratch, logger)) {
+            logger.severe("Not converting " + yamlFile.getName() + "; " + binaryFile.getName() + " is left as is.");
+            return false;
+        }
+        if (!BinarySnapshot.save(binaryFile, scratch, logger)) return false;
+        logger.info("Converted " + yamlFile.getName() + " to " + binaryFile.getName() + ".");
+        moveAside(yamlFile, CONVERTED_SUFFIX, logger);
+        return true;
+    }
+
+    /** Converts {@code binaryFile} into {@code yamlFile}. */
+    public static boolean binaryToYaml(File binaryFile, File yamlFile, Logger logger) {
+        CheckpointManager scratch = new CheckpointManager();
+        if (!BinarySnapshot.load(binaryFile, scratch, logger)) {
+            logger.severe("Not converting " + binaryFile.getName() + "; " + yamlFile.getName() + " is left as is.");
+            return false;
+        }
+        if (!CheckpointStorage.save(yamlFile, scratch, logger)) return false;
+        logger.info("Converted " + binaryFile.getName() + " to " + yamlFile.getName() + ".");
+        moveAside(binaryFile, CONVERTED_SUFFIX, logger);
+        return true;
+    }
+
+    /** Converts YAML to binary if the YAML file is newer than the binary one (or it is missing). */
+    public static void toBinaryIfNewer(File yamlFile, File binaryFile, Logger logger) {
+        if (isNewer(yamlFile, binaryFile)) yamlToBinary(yamlFile, binaryFile, logger);
+    }
+
+    /** Converts binary to YAML if the binary file is newer than the YAML one (or it is missing). */
+    public static void toYamlIfNewer(File binaryFile, File yamlFile, Logger logger) {
+        if (isNewer(binaryFile, yamlFile)) binaryToYaml(binaryFile, yamlFile, logger);
+    }
+
+    static boolean isNewer(File source, File target) {
+        return source.isFile() && (!target.exists() || source.lastModified() > target.lastModified());
+    }
+
+    /** Renames {@code file} to its name plus {@code suffix}, replacing an older copy; no-op if it is gone. */
+    static void moveAside(File file, String suffix, Logger logger) {
+        if (!file.exists()) return;
+        File renamed = new File(file.getParentFile(), file.getName() + suffix);
+        try {
+            ShardedStorage.moveReplacing(file, renamed);
+        } catch (IOException e) {
+            logger.warning("Could not rename " + file.getName() + " to " + renamed.getName() + ": " + e.getMessage());
+        }
+    }
+}
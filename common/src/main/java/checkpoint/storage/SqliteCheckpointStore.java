@@ -0,0 +1,655 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointEvent;
+import checkpoint.manager.CheckpointEventBus;
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * {@code storage.type: sqlite} — an embedded SQLite database
+ * ({@code checkpoints.db}) accessed through JDBC. The driver ships with
+ * Spigot/Paper servers, so the plugin does not bundle it.
+ * <p>
+ * Every table is keyed by player UUID ({@code WITHOUT ROWID}, so rows are
+ * clustered by player), which makes per-player reads and rewrites point
+ * operations. Once the data has been loaded the store records the manager's
+ * {@link CheckpointEvent}s, and {@link #saveChanges} turns them into row
+ * upserts and deletes, so one changed checkpoint writes one row however many
+ * the player has. A dirty player without recorded events (an event still
+ * being delivered) or with changes made while it was
+ * {@link CheckpointManager#holdPlayer held} has all rows replaced instead,
+ * once it is released. Each save is one transaction on the background saver
+ * thread.
+ */
+public final class SqliteCheckpointStore implements CheckpointStore {
+
+    private static final String DRIVER = "org.sqlite.JDBC";
+
+    private static final String CHECKPOINT_COLUMNS_DDL =
+        "world TEXT NOT NULL, x REAL NOT NULL, y REAL NOT NULL, z REAL NOT NULL, "
+            + "yaw REAL NOT NULL, pitch REAL NOT NULL, "
+            + "created_at INTEGER NOT NULL, updated_at INTEGER NOT NULL, description TEXT NOT NULL";
+    private static final String CHECKPOINT_COLUMNS =
+        "world, x, y, z, yaw, pitch, created_at, updated_at, description";
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS players ("
+            + "uuid TEXT PRIMARY KEY, selected TEXT, cloned_count INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS quick_checkpoints ("
+            + "uuid TEXT PRIMARY KEY, " + CHECKPOINT_COLUMNS_DDL + ") WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS named_checkpoints ("
+            + "uuid TEXT NOT NULL, name TEXT NOT NULL, " + CHECKPOINT_COLUMNS_DDL + ", "
+            + "PRIMARY KEY (uuid, name)) WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS cleared_checkpoints ("
+            + "uuid TEXT NOT NULL, name TEXT NOT NULL, PRIMARY KEY (uuid, name)) WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS clone_history ("
+            + "cloner TEXT NOT NULL, source TEXT NOT NULL, time INTEGER NOT NULL, "
+            + "PRIMARY KEY (cloner, source)) WITHOUT ROWID",
+        "CREATE TABLE IF NOT EXISTS language_preferences ("
+            + "uuid TEXT PRIMARY KEY, lang TEXT NOT NULL) WITHOUT ROWID",
+    };
+
+    /** Tables and their player key column, in the order rows are deleted. */
+    private static final String[][] PLAYER_TABLES = {
+        {"players", "uuid"},
+        {"quick_checkpoints", "uuid"},
+        {"named_checkpoints", "uuid"},
+        {"cleared_checkpoints", "uuid"},
+        {"clone_history", "cloner"},
+    };
+
+    private final File dbFile;
+    private final Logger logger;
+    private Connection connection;
+    /**
+     * Set when {@link #loadAll} failed. Saving can rewrite every row of a
+     * dirty player, so saving players that were never read from the database
+     * would replace their stored checkpoints; the database is left alone
+     * instead until the next start.
+     */
+    private boolean loadFailed;
+    /** Changes recorded since the last save, in order. Guarded by itself, never by the store. */
+    private final List<CheckpointEvent> pending = new ArrayList<>();
+    /** Players changed while held, whose rows are replaced once they are saved. Guarded by {@link #pending}. */
+    private final Set<UUID> rewrite = new HashSet<>();
+    /** Subscription feeding {@link #pending}, from load until close. */
+    private CheckpointEventBus.Subscription recording;
+
+    public SqliteCheckpointStore(File dbFile, Logger logger) {
+        this.dbFile = dbFile;
+        this.logger = logger;
+    }
+
+    // -----------------------------------------------------------------------
+    // Connection
+    // -----------------------------------------------------------------------
+
+    private Connection connection() throws SQLException {
+        if (connection != null) return connection;
+        try {
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver (" + DRIVER + ") is not available on this server");
+        }
+        File parent = dbFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) parent.mkdirs();
+
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+            for (String ddl : SCHEMA) st.execute(ddl);
+        } catch (SQLException e) {
+            c.close();
+            throw e;
+        }
+        c.setAutoCommit(false);
+        this.connection = c;
+        return c;
+    }
+
+    @Override
+    public synchronized void close(CheckpointManager manager) {
+        if (recording != null) {
+            recording.cancel();
+            recording = null;
+        }
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("Failed to close checkpoint database: " + e.getMessage());
+        }
+        connection = null;
+    }
+
+    // -----------------------------------------------------------------------
+    // Load
+    // -----------------------------------------------------------------------
+
+    @Override
+    public synchronized void loadAll(CheckpointManager manager) {
+        CheckpointManager.BulkLoader loader = manager.newBulkLoader();
+        int players = 0;
+        try {
+            Connection c = connection();
+            try (Statement st = c.createStatement()) {
+                try (ResultSet rs = st.executeQuery("SELECT uuid, selected, cloned_count FROM players")) {
+                    while (rs.next()) {
+                        UUID playerId = UUID.fromString(rs.getString(1));
+                        String selected = rs.getString(2);
+                        if (selected != null) loader.selected(playerId, selected);
+                        loader.clonedCount(playerId, rs.getInt(3));
+                        players++;
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT uuid, " + CHECKPOINT_COLUMNS + " FROM quick_checkpoints")) {
+                    while (rs.next()) {
+                        loader.quick(UUID.fromString(rs.getString(1)), readCheckpoint(rs, 2));
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT uuid, name, " + CHECKPOINT_COLUMNS + " FROM named_checkpoints")) {
+                    while (rs.next()) {
+                        loader.named(UUID.fromString(rs.getString(1)), rs.getString(2), readCheckpoint(rs, 3));
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT uuid, name FROM cleared_checkpoints")) {
+                    while (rs.next()) {
+                        loader.cleared(UUID.fromString(rs.getString(1)), rs.getString(2));
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT cloner, source, time FROM clone_history")) {
+                    while (rs.next()) {
+                        loader.clone(UUID.fromString(rs.getString(1)), UUID.fromString(rs.getString(2)),
+                            Instant.ofEpochMilli(rs.getLong(3)));
+                    }
+                }
+            }
+            c.commit();
+        } catch (SQLException | IllegalArgumentException e) {
+            logger.severe("Failed to load checkpoint database " + dbFile.getName() + ": " + e.getMessage()
+                + "; changes will not be saved until it loads.");
+            loadFailed = true;
+            return;
+        }
+        loader.commit();
+        record(manager);
+        logger.info("Loaded checkpoint database: " + loader.namedCount() + " named checkpoints, "
+            + players + " player rows.");
+    }
+
+    @Override
+    public synchronized boolean openLazy(CheckpointManager manager) {
+        try {
+            connection();
+            record(manager);
+            return true;
+        } catch (SQLException e) {
+            logger.severe("Failed to open checkpoint database " + dbFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Set<UUID> listPlayers() throws IOException {
+        Set<UUID> result = new HashSet<>();
+        try {
+            Connection c = connection();
+            try (Statement st = c.createStatement()) {
+                for (String[] table : PLAYER_TABLES) {
+                    try (ResultSet rs = st.executeQuery("SELECT DISTINCT " + table[1] + " FROM " + table[0])) {
+                        while (rs.next()) result.add(UUID.fromString(rs.getString(1)));
+                    }
+                }
+            }
+            c.commit();
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to list players in checkpoint database: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized PlayerData load(UUID playerId) throws IOException {
+        String id = playerId.toString();
+        try {
+            Connection c = connection();
+            String selected = null;
+            int clonedCount = 0;
+            boolean found = false;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT selected, cloned_count FROM players WHERE uuid = ?")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        selected = rs.getString(1);
+                        clonedCount = rs.getInt(2);
+                        found = true;
+                    }
+                }
+            }
+
+            Checkpoint quick = null;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT " + CHECKPOINT_COLUMNS + " FROM quick_checkpoints WHERE uuid = ?")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) quick = readCheckpoint(rs, 1);
+                }
+            }
+
+            Map<String, Checkpoint> named = new HashMap<>();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT name, " + CHECKPOINT_COLUMNS + " FROM named_checkpoints WHERE uuid = ?")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) named.put(rs.getString(1), readCheckpoint(rs, 2));
+                }
+            }
+
+            Set<String> cleared = new HashSet<>();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT name FROM cleared_checkpoints WHERE uuid = ?")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) cleared.add(rs.getString(1));
+                }
+            }
+
+            Map<UUID, Instant> clones = new HashMap<>();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT source, time FROM clone_history WHERE cloner = ?")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        clones.put(UUID.fromString(rs.getString(1)), Instant.ofEpochMilli(rs.getLong(2)));
+                    }
+                }
+            }
+            c.commit();
+
+            if (!found && quick == null && named.isEmpty() && cleared.isEmpty() && clones.isEmpty()) {
+                return null;
+            }
+            return new PlayerData(playerId, quick, named, selected, clones, clonedCount, cleared);
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to load checkpoints of " + playerId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Checkpoint readCheckpoint(ResultSet rs, int col) throws SQLException {
+        return new Checkpoint(
+            rs.getString(col),
+            rs.getDouble(col + 1),
+            rs.getDouble(col + 2),
+            rs.getDouble(col + 3),
+            rs.getFloat(col + 4),
+            rs.getFloat(col + 5),
+            Instant.ofEpochMilli(rs.getLong(col + 6)),
+            Instant.ofEpochMilli(rs.getLong(col + 7)),
+            rs.getString(col + 8));
+    }
+
+    // -----------------------------------------------------------------------
+    // Save
+    // -----------------------------------------------------------------------
+
+    /**
+     * Starts recording the manager's changes for {@link #saveChanges}. A held
+     * player's change is made on data that lacks the stored rows, so it is
+     * not kept as a row change; the player is rewritten whole after its load.
+     */
+    private void record(CheckpointManager manager) {
+        if (recording != null) return;
+        recording = manager.events().subscribe(CheckpointEvent.class, event -> {
+            synchronized (pending) {
+                if (manager.isPlayerHeld(event.playerId())) rewrite.add(event.playerId());
+                else pending.add(event);
+            }
+        });
+    }
+
+    @Override
+    public synchronized boolean saveChanges(CheckpointManager manager) {
+        Set<UUID> dirty = manager.drainDirtyPlayers();
+        List<CheckpointEvent> events;
+        Set<UUID> whole = new HashSet<>();
+        synchronized (pending) {
+            events = new ArrayList<>(pending);
+            pending.clear();
+            for (UUID playerId : dirty) {
+                if (rewrite.remove(playerId)) whole.add(playerId);
+            }
+        }
+        // After a failed load nothing is written until the next start, so there is nothing to retry
+        if ((dirty.isEmpty() && events.isEmpty()) || loadFailed) return true;
+
+        Set<UUID> recorded = new HashSet<>();
+        for (CheckpointEvent event : events) {
+            recorded.add(event.playerId());
+            if (event instanceof CheckpointEvent.CloneRecorded) {
+                recorded.add(((CheckpointEvent.CloneRecorded) event).sourcePlayerId());
+            }
+        }
+        for (UUID playerId : dirty) {
+            if (!recorded.contains(playerId)) whole.add(playerId);
+        }
+        List<PlayerData> players = new ArrayList<>(whole.size());
+        for (UUID playerId : whole) players.add(manager.getPlayerData(playerId));
+        Connection c = null;
+        try {
+            c = connection();
+            writePlayers(c, players);
+            try (RowWriter rows = new RowWriter(c)) {
+                for (CheckpointEvent event : events) rows.apply(event, whole);
+            }
+            c.commit();
+            return true;
+        } catch (SQLException e) {
+            rollback(c, e);
+            logger.warning("Failed to save checkpoint changes of " + (whole.size() + recorded.size())
+                + " players to the database: " + e.getMessage());
+            synchronized (pending) {
+                pending.addAll(0, events);
+                rewrite.addAll(whole);
+            }
+            for (UUID playerId : dirty) manager.markPlayerDirty(playerId);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void save(PlayerData data) throws IOException {
+        Connection c = null;
+        try {
+            c = connection();
+            writePlayers(c, Collections.singletonList(data));
+            c.commit();
+        } catch (SQLException e) {
+            rollback(c, e);
+            throw new IOException("Failed to save checkpoints of " + data.playerId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(UUID playerId) throws IOException {
+        save(new PlayerData(playerId, null, null, null, null, 0, null));
+    }
+
+    /**
+     * Applies recorded events as row changes, one statement per row, within
+     * the caller's transaction. Each statement is prepared once per save.
+     */
+    private static final class RowWriter implements AutoCloseable {
+        private static final String UPSERT_QUICK =
+            "INSERT OR REPLACE INTO quick_checkpoints (uuid, " + CHECKPOINT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        private static final String DELETE_QUICK = "DELETE FROM quick_checkpoints WHERE uuid = ?";
+        private static final String UPSERT_NAMED =
+            "INSERT OR REPLACE INTO named_checkpoints (uuid, name, " + CHECKPOINT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        private static final String DELETE_NAMED = "DELETE FROM named_checkpoints WHERE uuid = ? AND name = ?";
+        private static final String INSERT_CLEARED = "INSERT OR IGNORE INTO cleared_checkpoints (uuid, name) VALUES (?, ?)";
+        private static final String DELETE_CLEARED = "DELETE FROM cleared_checkpoints WHERE uuid = ? AND name = ?";
+        private static final String RENAME_CLEARED = "UPDATE cleared_checkpoints SET name = ? WHERE uuid = ? AND name = ?";
+        private static final String SET_SELECTED = "INSERT INTO players (uuid, selected) VALUES (?, ?) "
+            + "ON CONFLICT (uuid) DO UPDATE SET selected = excluded.selected";
+        private static final String REPLACE_SELECTED = "UPDATE players SET selected = ? WHERE uuid = ? AND selected = ?";
+        private static final String SET_CLONED_COUNT = "INSERT INTO players (uuid, cloned_count) VALUES (?, ?) "
+            + "ON CONFLICT (uuid) DO UPDATE SET cloned_count = excluded.cloned_count";
+        private static final String DROP_EMPTY_PLAYER =
+            "DELETE FROM players WHERE uuid = ? AND selected IS NULL AND cloned_count = 0";
+        private static final String UPSERT_CLONE =
+            "INSERT OR REPLACE INTO clone_history (cloner, source, time) VALUES (?, ?, ?)";
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        RowWriter(Connection connection) {
+            this.connection = connection;
+        }
+
+        /** Applies {@code event}, leaving out the rows of players in {@code whole}, which were written in full. */
+        void apply(CheckpointEvent event, Set<UUID> whole) throws SQLException {
+            String id = event.playerId().toString();
+            boolean own = !whole.contains(event.playerId());
+            if (event instanceof CheckpointEvent.QuickChanged) {
+                if (!own) return;
+                Checkpoint quick = ((CheckpointEvent.QuickChanged) event).checkpoint();
+                if (quick != null) {
+                    PreparedStatement ps = statement(UPSERT_QUICK);
+                    ps.setString(1, id);
+                    bindCheckpoint(ps, 2, quick);
+                    ps.executeUpdate();
+                } else {
+                    execute(DELETE_QUICK, id);
+                }
+            } else if (event instanceof CheckpointEvent.Added) {
+                CheckpointEvent.Added added = (CheckpointEvent.Added) event;
+                if (own) upsertNamed(id, added.name(), added.checkpoint());
+            } else if (event instanceof CheckpointEvent.Updated) {
+                CheckpointEvent.Updated updated = (CheckpointEvent.Updated) event;
+                if (own) upsertNamed(id, updated.name(), updated.checkpoint());
+            } else if (event instanceof CheckpointEvent.Removed) {
+                if (!own) return;
+                String name = ((CheckpointEvent.Removed) event).name();
+                execute(DELETE_NAMED, id, name);
+                execute(DELETE_CLEARED, id, name);
+                execute(REPLACE_SELECTED, null, id, name);
+                execute(DROP_EMPTY_PLAYER, id);
+            } else if (event instanceof CheckpointEvent.Renamed) {
+                if (!own) return;
+                CheckpointEvent.Renamed renamed = (CheckpointEvent.Renamed) event;
+                execute(DELETE_NAMED, id, renamed.oldName());
+                upsertNamed(id, renamed.newName(), renamed.checkpoint());
+                execute(RENAME_CLEARED, renamed.newName(), id, renamed.oldName());
+                execute(REPLACE_SELECTED, renamed.newName(), id, renamed.oldName());
+            } else if (event instanceof CheckpointEvent.Selected) {
+                if (!own) return;
+                execute(SET_SELECTED, id, ((CheckpointEvent.Selected) event).name());
+                execute(DROP_EMPTY_PLAYER, id);
+            } else if (event instanceof CheckpointEvent.ClearedChanged) {
+                if (!own) return;
+                CheckpointEvent.ClearedChanged cleared = (CheckpointEvent.ClearedChanged) event;
+                execute(cleared.cleared() ? INSERT_CLEARED : DELETE_CLEARED, id, cleared.name());
+            } else if (event instanceof CheckpointEvent.CloneRecorded) {
+                CheckpointEvent.CloneRecorded clone = (CheckpointEvent.CloneRecorded) event;
+                if (own) {
+                    PreparedStatement ps = statement(UPSERT_CLONE);
+                    ps.setString(1, id);
+                    ps.setString(2, clone.sourcePlayerId().toString());
+                    ps.setLong(3, clone.time().toEpochMilli());
+                    ps.executeUpdate();
+                }
+                if (!whole.contains(clone.sourcePlayerId())) {
+                    PreparedStatement ps = statement(SET_CLONED_COUNT);
+                    ps.setString(1, clone.sourcePlayerId().toString());
+                    ps.setInt(2, clone.sourceClonedCount());
+                    ps.executeUpdate();
+                }
+            }
+        }
+
+        private void upsertNamed(String id, String name, Checkpoint checkpoint) throws SQLException {
+            PreparedStatement ps = statement(UPSERT_NAMED);
+            ps.setString(1, id);
+            ps.setString(2, name);
+            bindCheckpoint(ps, 3, checkpoint);
+            ps.executeUpdate();
+        }
+
+        private void execute(String sql, String... params) throws SQLException {
+            PreparedStatement ps = statement(sql);
+            for (int i = 0; i < params.length; i++) ps.setString(i + 1, params[i]);
+            ps.executeUpdate();
+        }
+
+        private PreparedStatement statement(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException failure = null;
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    private static void rollback(Connection c, SQLException failure) {
+        if (c == null) return;
+        try {
+            c.rollback();
+        } catch (SQLException rollbackFailure) {
+            failure.addSuppressed(rollbackFailure);
+        }
+    }
+
+    /** Replaces all rows of the given players, within the caller's transaction. */
+    private static void writePlayers(Connection c, Collection<PlayerData> players) throws SQLException {
+        if (players.isEmpty()) return;
+        for (String[] table : PLAYER_TABLES) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "DELETE FROM " + table[0] + " WHERE " + table[1] + " = ?")) {
+                for (PlayerData data : players) {
+                    ps.setString(1, data.playerId().toString());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        try (PreparedStatement playerRow = c.prepareStatement(
+                "INSERT INTO players (uuid, selected, cloned_count) VALUES (?, ?, ?)");
+             PreparedStatement quickRow = c.prepareStatement(
+                "INSERT INTO quick_checkpoints (uuid, " + CHECKPOINT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement namedRow = c.prepareStatement(
+                "INSERT INTO named_checkpoints (uuid, name, " + CHECKPOINT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement clearedRow = c.prepareStatement(
+                "INSERT INTO cleared_checkpoints (uuid, name) VALUES (?, ?)");
+             PreparedStatement cloneRow = c.prepareStatement(
+                "INSERT INTO clone_history (cloner, source, time) VALUES (?, ?, ?)")) {
+
+            for (PlayerData data : players) {
+                String id = data.playerId().toString();
+                if (data.selected() != null || data.clonedCount() > 0) {
+                    playerRow.setString(1, id);
+                    playerRow.setString(2, data.selected());
+                    playerRow.setInt(3, data.clonedCount());
+                    playerRow.addBatch();
+                }
+                if (data.quick() != null) {
+                    quickRow.setString(1, id);
+                    bindCheckpoint(quickRow, 2, data.quick());
+                    quickRow.addBatch();
+                }
+                for (Map.Entry<String, Checkpoint> entry : data.named().entrySet()) {
+                    namedRow.setString(1, id);
+                    namedRow.setString(2, entry.getKey());
+                    bindCheckpoint(namedRow, 3, entry.getValue());
+                    namedRow.addBatch();
+                }
+                for (String name : data.cleared()) {
+                    clearedRow.setString(1, id);
+                    clearedRow.setString(2, name);
+                    clearedRow.addBatch();
+                }
+                for (Map.Entry<UUID, Instant> entry : data.cloneHistory().entrySet()) {
+                    cloneRow.setString(1, id);
+                    cloneRow.setString(2, entry.getKey().toString());
+                    cloneRow.setLong(3, entry.getValue().toEpochMilli());
+                    cloneRow.addBatch();
+                }
+            }
+            playerRow.executeBatch();
+            quickRow.executeBatch();
+            namedRow.executeBatch();
+            clearedRow.executeBatch();
+            cloneRow.executeBatch();
+        }
+    }
+
+    private static void bindCheckpoint(PreparedStatement ps, int col, Checkpoint cp) throws SQLException {
+        ps.setString(col, cp.worldName());
+        ps.setDouble(col + 1, cp.x());
+        ps.setDouble(col + 2, cp.y());
+        ps.setDouble(col + 3, cp.z());
+        ps.setFloat(col + 4, cp.yaw());
+        ps.setFloat(col + 5, cp.pitch());
+        ps.setLong(col + 6, cp.createdAtMillis());
+        ps.setLong(col + 7, cp.updatedAtMillis());
+        ps.setString(col + 8, cp.description());
+    }
+
+    // -----------------------------------------------------------------------
+    // Language preferences
+    // -----------------------------------------------------------------------
+
+    @Override
+    public synchronized Map<UUID, String> loadLanguagePreferences() throws IOException {
+        Map<UUID, String> result = new HashMap<>();
+        try {
+            Connection c = connection();
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT uuid, lang FROM language_preferences")) {
+                while (rs.next()) result.put(UUID.fromString(rs.getString(1)), rs.getString(2));
+            }
+            c.commit();
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to read language preferences: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void saveLanguagePreferences(Map<UUID, String> changed) throws IOException {
+        try {
+            Connection c = connection();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT OR REPLACE INTO language_preferences (uuid, lang) VALUES (?, ?)")) {
+                for (Map.Entry<UUID, String> entry : changed.entrySet()) {
+                    ps.setString(1, entry.getKey().toString());
+                    ps.setString(2, entry.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to save language preferences: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.PlayerData;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Base for backends that keep all players in a single file. Per-player
+ * operations read the whole file into a scratch manager and, for writes,
+ * rewrite it; they are meant for tooling and conversions, not for the hot
+ * save path, which always goes through {@link #saveChanges}.
+ */
+abstract class WholeFileCheckpointStore implements CheckpointStore {
+
+    protected final Logger logger;
+
+    WholeFileCheckpointStore(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Reads the complete file into {@code manager}. A missing file counts as
+     * empty; returns false only if an existing file could not be read.
+     */
+    protected abstract boolean readAll(CheckpointManager manager);
+
+    /** Writes the complete state of {@code manager}; returns false on failure. */
+    protected abstract boolean writeAll(CheckpointManager manager);
+
+    @Override
+    public boolean saveChanges(CheckpointManager manager) {
+        // The whole file is rewritten, so per-player change tracking is not needed.
+        Set<UUID> dirty = manager.drainDirtyPlayers();
+        if (writeAll(manager)) return true;
+        for (UUID playerId : dirty) manager.markPlayerDirty(playerId);
+        return false;
+    }
+
+    @Override
+    public PlayerData load(UUID playerId) throws IOException {
+        CheckpointManager scratch = readScratch();
+        PlayerData data = scratch.getPlayerData(playerId);
+        return data.isEmpty() ? null : data;
+    }
+
+    @Override
+    public void save(PlayerData data) throws IOException {
+        CheckpointManager scratch = readScratch();
+        scratch.loadPlayerData(data);
+        if (!writeAll(scratch)) {
+            throw new IOException("could not rewrite checkpoint file for " + data.playerId());
+        }
+    }
+
+    @Override
+    public void delete(UUID playerId) throws IOException {
+        save(new PlayerData(playerId, null, null, null, null, 0, null));
+    }
+
+    private CheckpointManager readScratch() throws IOException {
+        CheckpointManager scratch = new CheckpointManager();
+        if (!readAll(scratch)) {
+            throw new IOException("could not read checkpoint file");
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,147 @@
+package checkpoint.storage;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Coalescing write-behind saver. Callers only mark the data dirty; the actual
+ * save task runs on a single background thread at most once per interval, no
+ * matter how many changes arrived in between.
+ * <p>
+ * {@link #flush()} and {@link #shutdown()} run the pending save synchronously
+ * on the calling thread (used from {@code onDisable}).
+ */
+public final class WriteBehindSaver {
+
+    /** Shortest wait before retrying a failed save, so a broken disk is not hammered. */
+    static final long MIN_RETRY_MILLIS = 1000L;
+
+    private final BooleanSupplier saveTask;
+    private final long intervalMillis;
+    private final Logger logger;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /** Serializes background and synchronous saves so they never overlap. */
+    private final Object saveLock = new Object();
+
+    /**
+     * @param saveTask writes the pending changes; returns false if some could
+     *                 not be written, so the save is retried
+     */
+    public WriteBehindSaver(BooleanSupplier saveTask, long intervalMillis, Logger logger) {
+        this.saveTask = Objects.requireNonNull(saveTask, "saveTask cannot be null");
+        this.intervalMillis = Math.max(0L, intervalMillis);
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Checkpoint-Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Pending delayed saves are dropped on shutdown; the final flush covers them.
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Marks the data as changed. Schedules a background save unless one is
+     * already pending, so bursts of changes result in a single write.
+     */
+    public void markDirty() {
+        dirty.set(true);
+        schedule(intervalMillis);
+    }
+
+    private void schedule(long delayMillis) {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.schedule(this::runScheduled, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the final synchronous flush picks up the change.
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * Runs {@code task} on the saver thread every {@code periodMillis}, never
+     * overlapping a save, for upkeep that must not land in the middle of one
+     * (such as evicting idle players). It does not mark the data dirty.
+     */
+    public void schedulePeriodic(Runnable task, long periodMillis) {
+        Objects.requireNonNull(task, "task cannot be null");
+        long period = Math.max(1L, periodMillis);
+        try {
+            executor.scheduleWithFixedDelay(() -> {
+                synchronized (saveLock) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        // A periodic task that throws would never run again
+                        logger.log(Level.WARNING, "Periodic checkpoint task failed", e);
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: nothing left to maintain.
+        }
+    }
+
+    /** Returns true if there are changes that have not been written yet. */
+    public boolean isDirty() {
+        return dirty.get();
+    }
+
+    /**
+     * Runs the save task synchronously on the calling thread if data is dirty.
+     *
+     * @return false if the save failed and the data is still dirty
+     */
+    public boolean flush() {
+        return saveIfDirty();
+    }
+
+    /**
+     * Stops the background thread, waiting briefly for an in-flight save, then
+     * performs a final synchronous flush.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Background checkpoint save did not finish in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void runScheduled() {
+        // Clear the flag first so changes arriving during the save schedule a follow-up write.
+        scheduled.set(false);
+        saveIfDirty();
+    }
+
+    private boolean saveIfDirty() {
+        synchronized (saveLock) {
+            if (!dirty.getAndSet(false)) return true;
+            boolean saved;
+            try {
+                saved = saveTask.getAsBoolean();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to save checkpoint data", e);
+                saved = false;
+            }
+            if (!saved) {
+                dirty.set(true);
+                schedule(Math.max(intervalMillis, MIN_RETRY_MILLIS));
+            }
+            return saved;
+        }
+    }
+}
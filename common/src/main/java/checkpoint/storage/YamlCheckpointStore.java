@@ -0,0 +1,53 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Logger;
+
+/**
+ * {@code storage.type: yaml} — the hand-editable {@code checkpoints.yml},
+ * rewritten completely on every save via {@link CheckpointStorage}.
+ */
+public final class YamlCheckpointStore extends WholeFileCheckpointStore {
+
+    private final File yamlFile;
+    private final File binaryFile;
+
+    public YamlCheckpointStore(File yamlFile, File binaryFile, Logger logger) {
+        super(logger);
+        this.yamlFile = yamlFile;
+        this.binaryFile = binaryFile;
+    }
+
+    /**
+     * Loads checkpoints.yml, converting checkpoints.bin first if it is newer.
+     * A file that cannot be parsed is copied aside so the next save does not
+     * overwrite it.
+     */
+    @Override
+    public void loadAll(CheckpointManager manager) {
+        SnapshotConverter.toYamlIfNewer(binaryFile, yamlFile, logger);
+        if (!CheckpointStorage.load(yamlFile, manager, logger) && yamlFile.exists()) {
+            File broken = new File(yamlFile.getParentFile(), yamlFile.getName() + BinaryCheckpointStore.BROKEN_SUFFIX);
+            try {
+                Files.copy(yamlFile.toPath(), broken.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logger.severe("Unreadable data file kept as " + broken.getName() + "; starting with empty data.");
+            } catch (IOException e) {
+                logger.severe("Could not back up unreadable data file: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected boolean readAll(CheckpointManager manager) {
+        return CheckpointStorage.load(yamlFile, manager, logger) || !yamlFile.exists();
+    }
+
+    @Override
+    protected boolean writeAll(CheckpointManager manager) {
+        return CheckpointStorage.save(yamlFile, manager, logger);
+    }
+}
@@ -0,0 +1,232 @@
+package checkpoint.storage;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.manager.CheckpointSnapshot;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes {@code checkpoints.yml} (the layout documented on
+ * {@link CheckpointStorage}) straight from a {@link CheckpointSnapshot}, one
+ * entry at a time, through a buffered writer on a {@link FileChannel}.
+ * Capturing the snapshot copies nothing and no YAML document tree is built,
+ * so the memory a save needs does not grow with the amount of data, and the
+ * file is consistent even while gameplay keeps changing the manager.
+ * <p>
+ * Every string is emitted double-quoted with escapes and every number in
+ * plain notation, so the output reads back identically through
+ * {@code YamlConfiguration}.
+ */
+final class YamlSnapshotWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INDENT_1 = "  ";
+    private static final String INDENT_2 = "    ";
+    private static final String INDENT_3 = "      ";
+
+    private final Writer out;
+
+    private YamlSnapshotWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the manager's data to a temporary file next to {@code file},
+     * forces it to disk and moves it into place.
+     */
+    static void write(File file, CheckpointManager manager) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+            new YamlSnapshotWriter(out).writeDocument(manager.snapshot());
+            out.flush();
+            channel.force(true);
+        }
+        ShardedStorage.moveReplacing(tmp, file);
+    }
+
+    // -----------------------------------------------------------------------
+    // Sections
+    // -----------------------------------------------------------------------
+
+    private void writeDocument(CheckpointSnapshot snapshot) throws IOException {
+        boolean started = false;
+        for (PlayerData data : snapshot) {
+            if (data.quick() == null) continue;
+            started = section(started, "quick");
+            writeKey(INDENT_1, data.playerId());
+            out.write('\n');
+            writeCheckpointFields(INDENT_2, data.quick());
+        }
+
+        // Named checkpoints are a list per player to avoid YAML path-separator issues
+        started = false;
+        for (PlayerData data : snapshot) {
+            if (data.named().isEmpty()) continue;
+            started = section(started, "named");
+            writeKey(INDENT_1, data.playerId());
+            out.write('\n');
+            for (Map.Entry<String, Checkpoint> cp : data.named().entrySet()) {
+                out.write(INDENT_2);
+                out.write("- name: ");
+                writeString(cp.getKey());
+                out.write('\n');
+                writeCheckpointFields(INDENT_3, cp.getValue());
+            }
+        }
+
+        started = false;
+        for (PlayerData data : snapshot) {
+            if (data.selected() == null) continue;
+            started = section(started, "selected");
+            writeKey(INDENT_1, data.playerId());
+            out.write(' ');
+            writeString(data.selected());
+            out.write('\n');
+        }
+
+        started = false;
+        for (PlayerData data : snapshot) {
+            if (data.cloneHistory().isEmpty()) continue;
+            started = section(started, "cloneHistory");
+            writeKey(INDENT_1, data.playerId());
+            out.write('\n');
+            for (Map.Entry<UUID, Instant> clone : data.cloneHistory().entrySet()) {
+                out.write(INDENT_2);
+                out.write("- source: ");
+                writeString(clone.getKey().toString());
+                out.write('\n');
+                writeField(INDENT_3, "time", Long.toString(clone.getValue().toEpochMilli()));
+            }
+        }
+
+        started = false;
+        for (PlayerData data : snapshot) {
+            if (data.clonedCount() == 0) continue;
+            started = section(started, "clonedCounts");
+            writeKey(INDENT_1, data.playerId());
+            out.write(' ');
+            out.write(Integer.toString(data.clonedCount()));
+            out.write('\n');
+        }
+
+        started = false;
+        for (PlayerData data : snapshot) {
+            if (data.cleared().isEmpty()) continue;
+            started = section(started, "cleared");
+            writeKey(INDENT_1, data.playerId());
+            out.write('\n');
+            for (String name : data.cleared()) {
+                out.write(INDENT_2);
+                out.write("- ");
+                writeString(name);
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Writes the section header before its first entry; returns true. */
+    private boolean section(boolean started, String name) throws IOException {
+        if (!started) {
+            out.write(name);
+            out.write(":\n");
+        }
+        return true;
+    }
+
+    // -----------------------------------------------------------------------
+    // Values
+    // -----------------------------------------------------------------------
+
+    /** Writes the checkpoint's fields as mapping entries at the given indent. */
+    private void writeCheckpointFields(String indent, Checkpoint cp) throws IOException {
+        out.write(indent);
+        out.write("world: ");
+        writeString(cp.worldName());
+        out.write('\n');
+        writeField(indent, "x", number(cp.x()));
+        writeField(indent, "y", number(cp.y()));
+        writeField(indent, "z", number(cp.z()));
+        writeField(indent, "yaw", number(cp.yaw()));
+        writeField(indent, "pitch", number(cp.pitch()));
+        writeField(indent, "createdAt", Long.toString(cp.createdAtMillis()));
+        writeField(indent, "updatedAt", Long.toString(cp.updatedAtMillis()));
+        out.write(indent);
+        out.write("description: ");
+        writeString(cp.description());
+        out.write('\n');
+    }
+
+    private void writeKey(String indent, UUID playerId) throws IOException {
+        out.write(indent);
+        out.write('"');
+        out.write(playerId.toString());
+        out.write("\":");
+    }
+
+    private void writeField(String indent, String key, String plainValue) throws IOException {
+        out.write(indent);
+        out.write(key);
+        out.write(": ");
+        out.write(plainValue);
+        out.write('\n');
+    }
+
+    /** Writes a double-quoted YAML scalar, escaping anything that is not plainly printable. */
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':  out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                            // Older SnakeYAML versions reject raw supplementary characters
+                            out.write(String.format("\\U%08x", value.codePointAt(i)));
+                            i++;
+                        } else if (c < 0x20 || (c >= 0x7f && c <= 0x9f) || Character.isSurrogate(c)
+                                || c == '\u2028' || c == '\u2029' || c == '\ufeff') {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Formats a coordinate without exponent notation: YAML 1.1 only accepts
+     * exponents with an explicit sign, so {@code 3.0E7} would read back as a string.
+     */
+    static String number(double value) {
+        String text = Double.toString(value);
+        if (text.indexOf('E') < 0 || Double.isNaN(value) || Double.isInfinite(value)) return text;
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,163 @@
+package checkpoint.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import checkpoint.model.SortOrder;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CheckpointArenaTest {
+
+    private static final Instant T = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @Test
+    @DisplayName("アリーナに置いたCPはヒープ上と同じ内容で読める")
+    void shouldReadBackStoredCheckpoints() {
+        CheckpointArena arena = new CheckpointArena();
+        Map<String, Checkpoint> named = new HashMap<>();
+        named.put("Home", new Checkpoint("world", 1.5, 64, -2.25, 90f, -10f, T, T.plusMillis(5), ""));
+        named.put("ネザー拠点", new Checkpoint("world_nether", -8, 70, 8, 0f, 0f, T, T, "溶岩注意"));
+        char[] longDescription = new char[700_000];
+        Arrays.fill(longDescription, 'x');
+        named.put("long", new Checkpoint("world", 0, 0, 0, 0f, 0f, T, T, new String(longDescription)));
+
+        Map<String, Checkpoint> stored = arena.store(named);
+
+        assertTrue(arena.holds(stored));
+        assertEquals(named, stored);
+        assertEquals(named.keySet(), stored.keySet());
+        assertEquals(T.plusMillis(5), stored.get("Home").updatedAt());
+        assertEquals("溶岩注意", stored.get("ネザー拠点").description());
+        assertEquals(700_000, stored.get("long").description().length());
+        assertNull(stored.get("home"), "キーは大文字小文字を区別するはず");
+        assertThrows(UnsupportedOperationException.class, () -> stored.put("x", named.get("Home")));
+        assertEquals(3, arena.liveRecords());
+    }
+
+    @Test
+    @DisplayName("到達不能になったMapのレコードは回収されて再利用される")
+    void shouldReclaimRecordsOfUnreachableMaps() throws InterruptedException {
+        CheckpointArena arena = new CheckpointArena();
+        Map<String, Checkpoint> named = Collections.singletonMap("a", new Checkpoint("world", 0, 0, 0, 0f, 0f));
+        arena.store(named);
+        assertEquals(1, arena.liveRecords());
+
+        for (int i = 0; i < 50 && arena.liveRecords() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            arena.reclaim();
+        }
+        assertEquals(0, arena.liveRecords());
+        long bytes = arena.offHeapBytes();
+        Map<String, Checkpoint> again = arena.store(named);
+        assertEquals(bytes, arena.offHeapBytes(), "空いた領域を再利用するはず");
+        assertEquals(named, again);
+    }
+
+    @Test
+    @DisplayName("オフヒープモードでも読み込み・変更・保存後の移動で内容が変わらない")
+    void shouldBehaveTheSameWithArena() {
+        CheckpointManager manager = new CheckpointManager(new CheckpointArena());
+        UUID p = UUID.randomUUID();
+        Map<String, Checkpoint> named = new HashMap<>();
+        named.put("Beta", new Checkpoint("world", 10, 64, 0, 0f, 0f, T, T, ""));
+        named.put("Alpha", new Checkpoint("world", 1, 64, 0, 0f, 0f, T, T.plusMillis(1), "d"));
+        manager.loadData(null, Collections.singletonMap(p, named), null, null, null,
+            Collections.singletonMap(p, Collections.singleton("Beta")));
+
+        assertEquals(named, manager.getPlayerData(p).named());
+        assertEquals(Arrays.asList("Alpha", "Beta"), manager.getNamedCheckpointNames(p));
+        assertTrue(manager.isCleared(p, "beta"));
+
+        manager.addNamedCheckpoint(p, "Gamma", new Checkpoint("world", 5, 64, 0, 0f, 0f));
+        manager.renameNamedCheckpoint(p, "alpha", "Delta");
+        PlayerData beforeMove = manager.getPlayerData(p);
+        manager.moveToArena();
+
+        assertEquals(beforeMove, manager.getPlayerData(p));
+        assertEquals(Arrays.asList("Beta", "Gamma", "Delta"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.DISTANCE_ASC, null, "world", 12, 0));
+        assertTrue(manager.getNamedCheckpoint(p, "DELTA").isPresent());
+    }
+
+    @Test
+    @DisplayName("検索はプレイヤーのバージョンが同じ間は再利用され、アリーナへの移動では作り直さない")
+    void shouldReuseSearchWhileVersionIsUnchanged() {
+        CheckpointManager manager = new CheckpointManager(new CheckpointArena());
+        UUID p = UUID.randomUUID();
+        manager.addNamedCheckpoint(p, "Spawn", new Checkpoint("world", 0, 64, 0, 0f, 0f));
+        manager.addNamedCheckpoint(p, "Spawn2", new Checkpoint("world", 1, 64, 0, 0f, 0f));
+        long version = manager.getPlayerVersion(p);
+        List<String> first = manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "spawn", 0, 0);
+
+        manager.moveToArena();
+        assertEquals(version, manager.getPlayerVersion(p));
+        assertSame(first, manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "spawn", 0, 0),
+            "内容が同じなら検索をやり直さないはず");
+
+        assertThrows(IllegalArgumentException.class, () -> manager.batch(cm -> {
+            cm.addNamedCheckpoint(p, "Spawn3", new Checkpoint("world", 2, 64, 0, 0f, 0f));
+            assertEquals(3, cm.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "spawn", 0, 0).size());
+            return cm.addNamedCheckpoint(p, "", new Checkpoint("world", 3, 64, 0, 0f, 0f));
+        }));
+        manager.removeNamedCheckpoint(p, "Spawn2");
+        assertEquals(Arrays.asList("Spawn"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "spawn", 0, 0),
+            "失敗したバッチの検索結果は使われないはず");
+    }
+
+    @Test
+    @DisplayName("アリーナへの移動では全体の空間索引を作り直さず、その後の変更にも追従する")
+    void shouldKeepServerWideIndexAcrossArenaMove() {
+        CheckpointManager manager = new CheckpointManager(new CheckpointArena());
+        UUID near = UUID.randomUUID();
+        UUID far = UUID.randomUUID();
+        manager.addNamedCheckpoint(near, "A", new Checkpoint("world", 10, 64, 10, 0f, 0f));
+        manager.addNamedCheckpoint(near, "B", new Checkpoint("world", 500, 64, 500, 0f, 0f));
+        manager.addNamedCheckpoint(far, "C", new Checkpoint("world", 100, 64, 100, 0f, 0f));
+        assertEquals(Arrays.asList(near, far), manager.getPlayersByNearestCheckpoint("world", 0, 0));
+        SpatialIndex index = manager.snapshot().spatialIndex();
+
+        manager.moveToArena();
+        assertSame(index, manager.snapshot().spatialIndex(), "位置が変わらないなら索引はそのままのはず");
+
+        manager.updateNamedCheckpoint(near, "A", new Checkpoint("world", 1000, 64, 1000, 0f, 0f));
+        assertEquals(Arrays.asList(far, near), manager.getPlayersByNearestCheckpoint("world", 0, 0));
+        manager.removeNamedCheckpoint(far, "C");
+        assertEquals(Collections.singletonList(near), manager.getPlayersByNearestCheckpoint("world", 0, 0));
+    }
+
+    @Test
+    @DisplayName("日時順の索引はアリーナへの移動後もそのまま使え、その後の変更にも追従する")
+    void shouldKeepTimeOrdersAcrossArenaMove() {
+        CheckpointManager manager = new CheckpointManager(new CheckpointArena());
+        UUID p = UUID.randomUUID();
+        Map<String, Checkpoint> named = new HashMap<>();
+        named.put("Old", new Checkpoint("world", 0, 64, 0, 0f, 0f, T, T, ""));
+        named.put("Mid", new Checkpoint("world", 1, 64, 0, 0f, 0f, T.plusMillis(1), T.plusMillis(5), ""));
+        named.put("New", new Checkpoint("world", 2, 64, 0, 0f, 0f, T.plusMillis(2), T.plusMillis(2), ""));
+        manager.loadData(null, Collections.singletonMap(p, named), null, null, null, null);
+        assertEquals(Arrays.asList("Old", "New", "Mid"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.UPDATED_ASC, null, null, 0, 0));
+        SortedNames sorted = manager.snapshot().state(p).sortedNames();
+
+        manager.moveToArena();
+        assertSame(sorted, manager.snapshot().state(p).sortedNames(), "中身が同じなら索引はそのままのはず");
+        assertEquals(Arrays.asList("Old", "Mid", "New"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.CREATED_ASC, null, null, 0, 0));
+
+        manager.renameNamedCheckpoint(p, "old", "Renamed");
+        manager.removeNamedCheckpoint(p, "mid");
+        assertEquals(Arrays.asList("Renamed", "New"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.UPDATED_DESC, null, null, 0, 0));
+    }
+}
@@ -0,0 +1,133 @@
+package checkpoint.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.model.Checkpoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CheckpointEventBusTest {
+
+    private static Checkpoint cp(double x) {
+        return new Checkpoint("world", x, 64, 0, 0f, 0f);
+    }
+
+    @Test
+    @DisplayName("変更ごとに種類別のイベントが順番どおり届く")
+    void shouldPostTypedEventsInOrder() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        List<String> all = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        manager.events().subscribe(CheckpointEvent.class, e -> all.add(e.getClass().getSimpleName()));
+        manager.events().subscribe(CheckpointEvent.Added.class, e -> added.add(e.name()));
+        List<CheckpointEvent.Renamed> renames = new ArrayList<>();
+        manager.events().subscribe(CheckpointEvent.Renamed.class, renames::add);
+
+        manager.setQuickCheckpoint(p, cp(0));
+        manager.addNamedCheckpoint(p, "Home", cp(1));
+        manager.addNamedCheckpoint(p, "home", cp(2));
+        manager.updateNamedCheckpoint(p, "HOME", cp(3));
+        manager.setNamedCheckpointDescription(p, "home", "d");
+        manager.renameNamedCheckpoint(p, "home", "Base");
+        manager.selectNamedCheckpoint(p, "base");
+        manager.markCleared(p, "base");
+        manager.unmarkCleared(p, "base");
+        manager.recordClone(other, p);
+        manager.removeNamedCheckpoint(p, "Base");
+        manager.clearQuickCheckpoint(p);
+
+        assertEquals(Arrays.asList("QuickChanged", "Added", "Updated", "Updated", "Renamed", "Selected",
+            "ClearedChanged", "ClearedChanged", "CloneRecorded", "Removed", "QuickChanged"), all);
+        assertEquals(Arrays.asList("Home"), added, "失敗した追加はイベントにならないはず");
+        assertEquals("Home", renames.get(0).oldName(), "保存時の表記で届くはず");
+        assertEquals("Base", renames.get(0).newName());
+        assertEquals(p, renames.get(0).playerId());
+    }
+
+    @Test
+    @DisplayName("イベントはロックを離してから届くので、購読者からCPを変更できる")
+    void shouldDeliverOutsideLockSoSubscribersCanChangeCheckpoints() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        List<String> all = new ArrayList<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        manager.events().subscribe(CheckpointEvent.Added.class, e -> {
+            // Another thread changing the same player must not wait for this delivery
+            Thread writer = new Thread(() -> manager.setQuickCheckpoint(p, cp(1)));
+            writer.start();
+            try {
+                writer.join(5000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(!writer.isAlive());
+            manager.selectNamedCheckpoint(p, e.name());
+        });
+        manager.events().subscribe(CheckpointEvent.class, e -> all.add(e.getClass().getSimpleName()));
+
+        manager.addNamedCheckpoint(p, "A", cp(0));
+
+        assertTrue(finished.get(), "配信中でも他スレッドの変更は止まらないはず");
+        assertEquals(Arrays.asList("Added", "QuickChanged", "Selected"), all, "変更した順に届くはず");
+        assertEquals("A", manager.getSelectedNamedCheckpointName(p).orElse(null));
+    }
+
+    @Test
+    @DisplayName("executor経由の配信・購読解除・購読者の例外を扱える")
+    void shouldDispatchThroughExecutorAndIsolateSubscribers() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        List<Runnable> queued = new ArrayList<>();
+        List<String> async = new ArrayList<>();
+        List<String> sync = new ArrayList<>();
+        manager.events().subscribe(CheckpointEvent.Added.class, e -> async.add(e.name()), queued::add);
+        manager.events().subscribe(CheckpointEvent.class, e -> {
+            throw new IllegalStateException("broken subscriber");
+        });
+        CheckpointEventBus.Subscription subscription =
+            manager.events().subscribe(CheckpointEvent.Added.class, e -> sync.add(e.name()));
+
+        assertTrue(manager.addNamedCheckpoint(p, "A", cp(0)), "購読者の例外は変更を妨げないはず");
+        assertEquals(Arrays.asList("A"), sync);
+        assertTrue(async.isEmpty(), "executorが実行するまで届かないはず");
+        queued.forEach(Runnable::run);
+        assertEquals(Arrays.asList("A"), async);
+
+        subscription.cancel();
+        manager.addNamedCheckpoint(p, "B", cp(1));
+        assertEquals(Arrays.asList("A"), sync, "解除後は届かないはず");
+    }
+
+    @Test
+    @DisplayName("バッチのイベントはコミット時にまとめて届き、失敗したバッチのものは届かない")
+    void shouldHoldBatchEventsUntilCommit() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        List<CheckpointEvent> received = new ArrayList<>();
+        manager.events().subscribe(CheckpointEvent.class, received::add);
+
+        manager.batch(cm -> {
+            cm.addNamedCheckpoint(p, "A", cp(0));
+            cm.selectNamedCheckpoint(p, "A");
+            assertTrue(received.isEmpty(), "コミット前は届かないはず");
+            return null;
+        });
+        assertEquals(2, received.size());
+        assertTrue(received.get(0) instanceof CheckpointEvent.Added);
+        assertEquals("A", ((CheckpointEvent.Selected) received.get(1)).name());
+
+        received.clear();
+        assertThrows(IllegalArgumentException.class, () -> manager.batch(cm -> {
+            cm.removeNamedCheckpoint(p, "A");
+            return cm.addNamedCheckpoint(p, "", cp(1));
+        }));
+        assertTrue(received.isEmpty());
+    }
+}
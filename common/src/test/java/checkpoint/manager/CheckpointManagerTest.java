@@ -3,16 +3,23 @@ package checkpoint.manager;
 import static org.junit.jupiter.api.Assertions.*;
 
 import checkpoint.model.Checkpoint;
+import checkpoint.model.ClearSortOrder;
+import checkpoint.model.PlayerData;
+import checkpoint.model.PlayerStats;
 import checkpoint.model.RenameResult;
 import checkpoint.model.SortOrder;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -157,6 +164,34 @@ class CheckpointManagerTest {
         assertEquals(RenameResult.SUCCESS, result, "大文字小文字を無視してリネームできるはず");
     }
 
+    @Test
+    @DisplayName("名前の検索は保存時の表記を保ったまま大文字小文字と前後の空白を無視する")
+    void shouldLookUpNamesIgnoringCaseAndKeepStoredSpelling() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        Checkpoint checkpoint = new Checkpoint("world", 1.0, 64.0, 1.0, 0.0f, 0.0f);
+        manager.addNamedCheckpoint(playerId, "MyBase", checkpoint);
+
+        assertEquals(checkpoint, manager.getNamedCheckpoint(playerId, "  mybase ").orElse(null));
+        assertTrue(manager.selectNamedCheckpoint(playerId, "MYBASE"));
+        assertEquals("MyBase", manager.getSelectedNamedCheckpointName(playerId).orElse(null));
+
+        manager.renameNamedCheckpoint(playerId, "mybase", "Castle");
+        assertFalse(manager.getNamedCheckpoint(playerId, "MyBase").isPresent(), "旧名の索引は消えるはず");
+        assertTrue(manager.addNamedCheckpoint(playerId, "MYBASE", checkpoint), "旧名は再利用できるはず");
+        assertEquals(Arrays.asList("Castle", "MYBASE"), manager.getNamedCheckpointNames(playerId));
+        assertEquals("Castle", manager.getSelectedNamedCheckpointName(playerId).orElse(null));
+
+        // Names loaded from old files may differ only in case
+        Map<String, Checkpoint> inner = new HashMap<>();
+        inner.put("Dup", checkpoint);
+        inner.put("DUP", checkpoint);
+        manager.loadPlayerData(new PlayerData(playerId, null, inner, null, null, 0, null));
+        assertTrue(manager.removeNamedCheckpoint(playerId, "dup"));
+        assertTrue(manager.removeNamedCheckpoint(playerId, "dup"), "残った方も見つかるはず");
+        assertFalse(manager.getNamedCheckpoint(playerId, "dup").isPresent());
+    }
+
     @Test
     @DisplayName("存在しない名前付きチェックポイントはリネームできない")
     void shouldReturnOldNotFoundWhenRenamingUnknown() {
@@ -232,6 +267,47 @@ class CheckpointManagerTest {
         assertEquals(Arrays.asList("Zeta", "Alpha"), names);
     }
 
+    @Test
+    @DisplayName("ソート済み索引は変更のたびに更新され、全件ソートと同じ順序を返す")
+    void shouldKeepSortIndexesInSyncWithMutations() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        Random random = new Random(42);
+        Instant base = Instant.ofEpochMilli(1_700_000_000_000L);
+        manager.addNamedCheckpoint(playerId, "seed", new Checkpoint("world", 0, 64, 0, 0, 0, base, base));
+        manager.getSortedFilteredCheckpointNames(playerId, SortOrder.NAME_ASC, null, 0, 0); // build the index
+
+        for (int i = 0; i < 500; i++) {
+            String name = "cp" + random.nextInt(60);
+            String other = (random.nextBoolean() ? "CP" : "cp") + random.nextInt(60);
+            // Few distinct timestamps, so ties must be ordered by name
+            Instant time = base.plusSeconds(random.nextInt(5));
+            Checkpoint cp = new Checkpoint("world", i, 64, 0, 0, 0, time, time);
+            switch (random.nextInt(5)) {
+                case 0: manager.updateNamedCheckpoint(playerId, name, cp); break;
+                case 1: manager.removeNamedCheckpoint(playerId, name); break;
+                case 2: manager.renameNamedCheckpoint(playerId, name, other); break;
+                case 3: manager.setNamedCheckpointDescription(playerId, name, "d" + i); break;
+                default: manager.addNamedCheckpoint(playerId, name, cp);
+            }
+        }
+
+        Map<String, Checkpoint> named = manager.getPlayerData(playerId).named();
+        Comparator<String> byName = Comparator.<String, String>comparing(n -> n, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Comparator.naturalOrder());
+        Map<SortOrder, Comparator<String>> expected = new HashMap<>();
+        expected.put(SortOrder.NAME_ASC, byName);
+        expected.put(SortOrder.CREATED_ASC, Comparator.<String, Instant>comparing(n -> named.get(n).createdAt()).thenComparing(byName));
+        expected.put(SortOrder.UPDATED_ASC, Comparator.<String, Instant>comparing(n -> named.get(n).updatedAt()).thenComparing(byName));
+        expected.put(SortOrder.UPDATED_DESC, Comparator.<String, Instant>comparing(n -> named.get(n).updatedAt()).thenComparing(byName).reversed());
+        for (Map.Entry<SortOrder, Comparator<String>> entry : expected.entrySet()) {
+            List<String> sorted = new ArrayList<>(named.keySet());
+            sorted.sort(entry.getValue());
+            assertEquals(sorted, manager.getSortedFilteredCheckpointNames(playerId, entry.getKey(), null, 0, 0),
+                entry.getKey().name());
+        }
+    }
+
     @Test
     @DisplayName("部分一致でフィルタリングされる")
     void shouldFilterByQuery() {
@@ -248,6 +324,85 @@ class CheckpointManagerTest {
         assertFalse(names.contains("Base"), "Baseは除外されるべき");
     }
 
+    @Test
+    @DisplayName("検索結果は前方一致・部分一致・1文字違いの順に並び、各グループ内は指定の順序を保つ")
+    void shouldRankSearchResults() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        for (String name : Arrays.asList("MyCastle", "castle2", "Castle", "Casle", "Cactus", "OldCastel", "Base")) {
+            manager.addNamedCheckpoint(p, name, new Checkpoint("world", 0, 64, 0, 0, 0));
+        }
+
+        assertEquals(Arrays.asList("Castle", "castle2", "MyCastle", "Casle", "OldCastel"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "CASTLE", 0, 0));
+        assertEquals(Arrays.asList("castle2", "Castle", "MyCastle", "OldCastel", "Casle"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_DESC, "castle", 0, 0));
+        assertEquals(Arrays.asList("Cactus", "Casle", "Castle", "castle2", "MyCastle", "OldCastel"),
+            manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, "ca", 0, 0),
+            "短いクエリはあいまい一致しないはず");
+    }
+
+    @Test
+    @DisplayName("検索結果はプレイヤーが変わるまで再利用され、索引は変更に追従する")
+    void shouldReuseSearchUntilPlayerChanges() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        Random random = new Random(3);
+        String[] stems = {"spawn", "spwan", "nether", "base", "tower", "town", "ネザー要塞"};
+        for (int i = 0; i < 200; i++) {
+            String name = stems[random.nextInt(stems.length)] + random.nextInt(100);
+            manager.addNamedCheckpoint(p, random.nextBoolean() ? name.toUpperCase(Locale.ROOT) : name,
+                new Checkpoint("world", i, 64, 0, 0, 0));
+        }
+
+        List<String> first = manager.getSortedFilteredCheckpointNames(p, SortOrder.CREATED_ASC, "spawn", 0, 0);
+        assertSame(first, manager.getSortedFilteredCheckpointNames(p, SortOrder.CREATED_ASC, "SPAWN", 0, 0),
+            "同じ検索のページ送りでは作り直さないはず");
+
+        for (int round = 0; round < 60; round++) {
+            List<String> names = new ArrayList<>(manager.getNamedCheckpointNames(p));
+            String target = names.get(random.nextInt(names.size()));
+            if (round % 3 == 0) manager.removeNamedCheckpoint(p, target);
+            else if (round % 3 == 1) manager.renameNamedCheckpoint(p, target, "x" + target + round);
+            else manager.addNamedCheckpoint(p, stems[random.nextInt(stems.length)] + "_" + round,
+                new Checkpoint("world", round, 64, 0, 0, 0));
+
+            for (String query : Arrays.asList("spawn", "tow", "ネザー", "xsp", "nethr", "nethre", "ネザ要塞")) {
+                String q = query.toLowerCase(Locale.ROOT);
+                List<List<String>> tiers = Arrays.asList(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+                for (String name : manager.getNamedCheckpointNames(p)) {
+                    String lower = name.toLowerCase(Locale.ROOT);
+                    if (lower.startsWith(q)) tiers.get(0).add(name);
+                    else if (lower.contains(q)) tiers.get(1).add(name);
+                    else if (q.length() >= 4 && oneEditAway(lower, q)) tiers.get(2).add(name);
+                }
+                List<String> expected = new ArrayList<>();
+                tiers.forEach(expected::addAll);
+                assertEquals(expected, manager.getSortedFilteredCheckpointNames(p, SortOrder.NAME_ASC, query, 0, 0),
+                    query);
+            }
+        }
+    }
+
+    /** True if some substring of {@code text} equals {@code q} with one character changed, added or dropped. */
+    private static boolean oneEditAway(String text, String q) {
+        for (int i = 0; i < q.length(); i++) {
+            String dropped = q.substring(0, i) + q.substring(i + 1);
+            if (text.contains(dropped)) return true;
+            for (int start = 0; start + q.length() <= text.length(); start++) {
+                String window = text.substring(start, start + q.length());
+                if ((window.substring(0, i) + window.substring(i + 1)).equals(dropped)) return true;
+            }
+            for (int start = 0; start + q.length() + 1 <= text.length(); start++) {
+                String window = text.substring(start, start + q.length() + 1);
+                for (int j = 0; j < window.length(); j++) {
+                    if ((window.substring(0, j) + window.substring(j + 1)).equals(q)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Test
     @DisplayName("空クエリはフィルタリングしない")
     void shouldNotFilterOnBlankQuery() {
@@ -279,6 +434,140 @@ class CheckpointManagerTest {
         assertEquals("Far",  names.get(1), "遠い方が末尾であるべき");
     }
 
+    @Test
+    @DisplayName("DISTANCE_ASCは同じワールドのCPを近い順に並べ、他ワールドのCPは名前順で後ろに回す")
+    void shouldSortByDistanceWithinViewerWorld() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        manager.addNamedCheckpoint(playerId, "Far",      new Checkpoint("world", 500, 64, -500, 0, 0));
+        manager.addNamedCheckpoint(playerId, "NetherB",  new Checkpoint("world_nether", 1, 64, 1, 0, 0));
+        manager.addNamedCheckpoint(playerId, "Near",     new Checkpoint("world", -3, 64, 2, 0, 0));
+        manager.addNamedCheckpoint(playerId, "NetherA",  new Checkpoint("world_nether", 2, 64, 2, 0, 0));
+        manager.addNamedCheckpoint(playerId, "Mid",      new Checkpoint("world", 40, 64, 40, 0, 0));
+
+        assertEquals(Arrays.asList("Near", "Mid", "Far", "NetherA", "NetherB"),
+            manager.getSortedFilteredCheckpointNames(playerId, SortOrder.DISTANCE_ASC, null, "world", 0, 0));
+        assertEquals(Arrays.asList("NetherB", "NetherA"),
+            manager.getNearestCheckpointNames(playerId, "world_nether", 0, 0, 10));
+        assertEquals(2.0, manager.getNearestCpDistanceSq(playerId, "world_nether", 0, 0), 1e-9);
+        assertEquals(Double.MAX_VALUE, manager.getNearestCpDistanceSq(playerId, "world_the_end", 0, 0));
+
+        manager.updateNamedCheckpoint(playerId, "Far", new Checkpoint("world", 1, 64, 0, 0, 0));
+        manager.renameNamedCheckpoint(playerId, "Near", "Moved");
+        manager.removeNamedCheckpoint(playerId, "Mid");
+        assertEquals(Arrays.asList("Far", "Moved"), manager.getNearestCheckpointNames(playerId, "world", 0, 0, 2));
+    }
+
+    @Test
+    @DisplayName("プレイヤー統計は変更のたびに更新され、全件から計算した値と一致する")
+    void shouldKeepPlayerStatsInSync() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        UUID clonerId = UUID.randomUUID();
+        Random random = new Random(5);
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        assertEquals(0, manager.getPlayerStats(playerId).namedCount());
+        assertFalse(manager.getLastActivityTime(playerId).isPresent());
+
+        for (int step = 0; step < 500; step++) {
+            String name = "cp" + random.nextInt(10);
+            // Few distinct times so that several checkpoints share the latest one
+            Instant time = base.plusSeconds(random.nextInt(6));
+            switch (random.nextInt(7)) {
+                case 0: manager.removeNamedCheckpoint(playerId, name); break;
+                case 1: manager.renameNamedCheckpoint(playerId, name, "cp" + random.nextInt(10)); break;
+                case 2: manager.markCleared(playerId, name); break;
+                case 3: manager.unmarkCleared(playerId, name); break;
+                case 4: manager.recordClone(clonerId, playerId); break;
+                case 5:
+                    if (step % 3 == 0) manager.getNamedCheckpointNames(playerId);  // sometimes with the update order built
+                    manager.removeNamedCheckpoint(playerId, name);
+                    // fall through
+                default:
+                    manager.addNamedCheckpoint(playerId, name, new Checkpoint("world", 0, 64, 0, 0, 0, time, time));
+                    break;
+            }
+            PlayerStats expected = PlayerStats.of(manager.getPlayerData(playerId));
+            PlayerStats actual = manager.getPlayerStats(playerId);
+            assertEquals(expected.namedCount(), actual.namedCount(), "step " + step);
+            assertEquals(expected.lastActivity(), actual.lastActivity(), "step " + step);
+            assertEquals(expected.clearedCount(), actual.clearedCount(), "step " + step);
+            assertEquals(expected.clonedCount(), actual.clonedCount(), "step " + step);
+        }
+    }
+
+    @Test
+    @DisplayName("プレイヤーの距離順は変更のたびに索引が追従し、全件比較と同じ順序になる")
+    void shouldKeepPlayersByNearestCheckpointInSync() {
+        CheckpointManager manager = new CheckpointManager();
+        Random random = new Random(11);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) ids.add(UUID.randomUUID());
+        // Build the server-wide index up front so every change below has to maintain it
+        assertTrue(manager.getPlayersByNearestCheckpoint("world", 0, 0).isEmpty());
+
+        for (int step = 0; step < 400; step++) {
+            UUID id = ids.get(random.nextInt(ids.size()));
+            String name = "cp" + random.nextInt(8);
+            Checkpoint cp = new Checkpoint(random.nextBoolean() ? "world" : "world_nether",
+                (random.nextDouble() - 0.5) * 2000, 64, (random.nextDouble() - 0.5) * 2000, 0, 0);
+            switch (random.nextInt(6)) {
+                case 0: manager.removeNamedCheckpoint(id, name); break;
+                case 1: manager.renameNamedCheckpoint(id, name, "cp" + random.nextInt(8)); break;
+                case 2: manager.updateNamedCheckpoint(id, name, cp); break;
+                case 3: if (random.nextInt(10) == 0) manager.unloadPlayer(id); break;
+                default: manager.addNamedCheckpoint(id, name, cp); break;
+            }
+            if (step % 20 != 0) continue;
+
+            double px = (random.nextDouble() - 0.5) * 2000;
+            double pz = (random.nextDouble() - 0.5) * 2000;
+            List<UUID> actual = manager.getPlayersByNearestCheckpoint("world", px, pz);
+            List<UUID> near = new ArrayList<>();
+            for (UUID player : manager.getAllPlayersWithData()) {
+                if (manager.getNearestCpDistanceSq(player, "world", px, pz) < Double.MAX_VALUE) near.add(player);
+            }
+            near.sort(Comparator.comparingDouble(player -> manager.getNearestCpDistanceSq(player, "world", px, pz)));
+
+            assertEquals(manager.getAllPlayersWithData().size(), actual.size());
+            assertEquals(near, actual.subList(0, near.size()));
+            assertEquals(manager.getAllPlayersWithData(), new HashSet<>(actual));
+        }
+    }
+
+    @Test
+    @DisplayName("空間索引の近傍検索は全件比較と同じ結果を返す")
+    void shouldMatchBruteForceNearestSearch() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            // Dense cluster plus a few far-away outliers
+            double spread = i % 40 == 0 ? 100_000 : 300;
+            manager.addNamedCheckpoint(playerId, "cp" + i, new Checkpoint(i % 3 == 0 ? "world_nether" : "world",
+                (random.nextDouble() - 0.5) * spread, 64, (random.nextDouble() - 0.5) * spread, 0, 0));
+        }
+        Map<String, Checkpoint> named = manager.getPlayerData(playerId).named();
+
+        for (int q = 0; q < 20; q++) {
+            double px = (random.nextDouble() - 0.5) * (q < 10 ? 600 : 300_000);
+            double pz = (random.nextDouble() - 0.5) * (q < 10 ? 600 : 300_000);
+            List<String> expected = new ArrayList<>();
+            for (Map.Entry<String, Checkpoint> e : named.entrySet()) {
+                if (e.getValue().worldName().equals("world")) expected.add(e.getKey());
+            }
+            expected.sort(Comparator.<String>comparingDouble(n -> {
+                double dx = named.get(n).x() - px;
+                double dz = named.get(n).z() - pz;
+                return dx * dx + dz * dz;
+            }).thenComparing(Comparator.naturalOrder()));
+
+            assertEquals(expected.subList(0, 15), manager.getNearestCheckpointNames(playerId, "world", px, pz, 15));
+            assertEquals(expected, manager.getSortedFilteredCheckpointNames(
+                playerId, SortOrder.DISTANCE_ASC, null, "world", px, pz).subList(0, expected.size()));
+        }
+    }
+
     @Test
     @DisplayName("updateNamedCheckpointはcreatedAtを保持しupdatedAtを更新する")
     void shouldPreserveCreatedAtOnUpdate() throws InterruptedException {
@@ -316,6 +605,19 @@ class CheckpointManagerTest {
         assertTrue(after.updatedAt().isAfter(before.updatedAt()), "renameでupdatedAtが更新されるはず");
     }
 
+    @Test
+    @DisplayName("Checkpointはワールド名と空の説明を共有し、日時をミリ秒で保持する")
+    void shouldKeepCheckpointCompact() {
+        Instant created = Instant.ofEpochMilli(1_700_000_000_123L).plusNanos(456_789);
+        Checkpoint a = new Checkpoint(new String("world"), 0, 64, 0, 0, 0, created, created, new String("  "));
+        Checkpoint b = new Checkpoint(new String("world"), 1, 64, 1, 0, 0, created, created, null);
+
+        assertSame(a.worldName(), b.worldName(), "同じワールド名は1つの文字列を共有するはず");
+        assertSame(a.description(), b.description(), "空の説明は共有されるはず");
+        assertEquals(Instant.ofEpochMilli(1_700_000_000_123L), a.createdAt(), "ミリ秒未満は切り捨てられるはず");
+        assertEquals(1_700_000_000_123L, a.updatedAtMillis());
+    }
+
     // -----------------------------------------------------------------------
     // Clone tracking tests
     // -----------------------------------------------------------------------
@@ -505,11 +807,11 @@ class CheckpointManagerTest {
     }
 
     @Test
-    @DisplayName("onDataChangedコールバックが変更時に呼ばれる")
-    void shouldInvokeOnDataChangedCallback() {
+    @DisplayName("変更のたびにイベントが届く")
+    void shouldPostEventOnEveryChange() {
         CheckpointManager manager = new CheckpointManager();
         AtomicInteger callCount = new AtomicInteger(0);
-        manager.setOnDataChanged(callCount::incrementAndGet);
+        manager.events().subscribe(CheckpointEvent.class, event -> callCount.incrementAndGet());
 
         UUID p = UUID.randomUUID();
         manager.setQuickCheckpoint(p, new Checkpoint("world", 0, 64, 0, 0, 0));
@@ -520,19 +822,19 @@ class CheckpointManagerTest {
         manager.removeNamedCheckpoint(p, "B");
         manager.clearQuickCheckpoint(p);
 
-        assertEquals(7, callCount.get(), "全ての変更操作でコールバックが呼ばれるはず");
+        assertEquals(7, callCount.get(), "全ての変更操作でイベントが届くはず");
     }
 
     @Test
-    @DisplayName("loadDataはonDataChangedを発火しない")
+    @DisplayName("loadDataはイベントを発火しない")
     void shouldNotFireCallbackOnLoad() {
         CheckpointManager manager = new CheckpointManager();
         AtomicInteger callCount = new AtomicInteger(0);
-        manager.setOnDataChanged(callCount::incrementAndGet);
+        manager.events().subscribe(CheckpointEvent.class, event -> callCount.incrementAndGet());
 
         manager.loadData(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
 
-        assertEquals(0, callCount.get(), "loadDataではコールバックは呼ばれないはず");
+        assertEquals(0, callCount.get(), "loadDataではイベントは届かないはず");
     }
 
     @Test
@@ -551,6 +853,82 @@ class CheckpointManagerTest {
         assertFalse(all.contains(p3));
     }
 
+    @Test
+    @DisplayName("snapshotは取得後の変更の影響を受けない")
+    void shouldKeepSnapshotUnchangedByLaterMutations() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        manager.addNamedCheckpoint(p1, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        manager.markCleared(p1, "A");
+
+        CheckpointSnapshot snapshot = manager.snapshot();
+        PlayerData before = snapshot.get(p1);
+        manager.renameNamedCheckpoint(p1, "A", "B");
+        manager.setQuickCheckpoint(p2, new Checkpoint("world", 1, 64, 1, 0, 0));
+        manager.recordClone(p2, p1);
+
+        assertEquals(1, snapshot.size());
+        assertSame(before, snapshot.get(p1));
+        assertEquals(Collections.singleton("A"), before.named().keySet());
+        assertEquals(Collections.singleton("A"), before.cleared());
+        assertEquals(0, before.clonedCount());
+        assertNull(snapshot.get(p2));
+
+        CheckpointSnapshot latest = manager.snapshot();
+        assertEquals(2, latest.size());
+        assertEquals(Collections.singleton("B"), latest.get(p1).cleared());
+        assertEquals(1, latest.get(p1).clonedCount());
+        assertTrue(latest.get(p2).cloneHistory().containsKey(p1));
+
+        manager.clearQuickCheckpoint(p2);
+        manager.unloadPlayer(p1);
+        assertEquals(1, manager.snapshot().size(), "クローン履歴のあるp2だけが残るはず");
+    }
+
+    @Test
+    @DisplayName("多数のプレイヤー（ハッシュ衝突を含む）を追加・削除してもスナップショットが一貫する")
+    void shouldKeepSnapshotConsistentAcrossManyPlayersAndHashCollisions() {
+        CheckpointManager manager = new CheckpointManager();
+        Random random = new Random(11);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) ids.add(new UUID(random.nextLong(), random.nextLong()));
+        // Same hashCode (most ^ least is equal), different ids
+        for (long i = 1; i <= 5; i++) ids.add(new UUID(i, i ^ 0x5DEECE66DL));
+
+        Set<UUID> expected = new HashSet<>();
+        for (int round = 0; round < 8000; round++) {
+            UUID id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                manager.unloadPlayer(id);
+                expected.remove(id);
+            } else {
+                manager.setQuickCheckpoint(id, new Checkpoint("world", round, 64, 0, 0, 0));
+                expected.add(id);
+            }
+        }
+
+        CheckpointSnapshot snapshot = manager.snapshot();
+        assertEquals(expected.size(), snapshot.size());
+        assertEquals(expected, new HashSet<>(snapshot.playerIds()));
+        int iterated = 0;
+        for (PlayerData data : snapshot) {
+            assertSame(data, snapshot.get(data.playerId()));
+            iterated++;
+        }
+        assertEquals(expected.size(), iterated);
+        for (UUID id : ids) assertEquals(expected.contains(id), snapshot.get(id) != null);
+
+        CheckpointManager.BulkLoader loader = manager.newBulkLoader();
+        for (UUID id : expected) loader.quick(id, snapshot.get(id).quick());
+        loader.commit();
+        assertEquals(expected, new HashSet<>(manager.snapshot().playerIds()), "一括構築でも同じ内容になるはず");
+        for (UUID id : ids) {
+            PlayerData data = manager.snapshot().get(id);
+            assertEquals(expected.contains(id) ? snapshot.get(id).quick() : null, data != null ? data.quick() : null);
+        }
+    }
+
     // -----------------------------------------------------------------------
     // Cleared checkpoint tests
     // -----------------------------------------------------------------------
@@ -625,6 +1003,25 @@ class CheckpointManagerTest {
         assertTrue(manager.isCleared(p, "NewName"));
     }
 
+    @Test
+    @DisplayName("クリアソートは検索で絞り込んだうえで、各グループ内の並び順を保ってまとめる")
+    void shouldGroupByClearedStatusKeepingOrder() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        for (String name : Arrays.asList("a1", "a2", "a3", "a4", "b1")) {
+            manager.addNamedCheckpoint(p, name, new Checkpoint("world", 0, 64, 0, 0, 0));
+        }
+        manager.markCleared(p, "A2");
+        manager.markCleared(p, "a4");
+        manager.markCleared(p, "b1");
+
+        assertEquals(Arrays.asList("a2", "a4", "a1", "a3"), manager.getSortedFilteredCheckpointNames(
+            p, SortOrder.NAME_ASC, "a", null, 0, 0, ClearSortOrder.CLEARED_FIRST));
+        assertEquals(Arrays.asList("a3", "a1", "b1", "a4", "a2"), manager.getSortedFilteredCheckpointNames(
+            p, SortOrder.NAME_DESC, null, null, 0, 0, ClearSortOrder.UNCLEARED_FIRST));
+        assertTrue(manager.isCleared(p, " A4 "));
+    }
+
     @Test
     @DisplayName("loadDataでクリア済みデータをインポートできる")
     void shouldLoadClearedData() {
@@ -653,20 +1050,318 @@ class CheckpointManagerTest {
     }
 
     @Test
-    @DisplayName("markCleared/unmarkClearedがonDataChangedを発火する")
+    @DisplayName("読み込んだクリア済みの名前は大文字小文字を無視してCPに結び付き、CPのないものは捨てられる")
+    void shouldAttachLoadedClearedMarksToCheckpoints() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        Map<String, Checkpoint> named = new HashMap<>();
+        named.put("Alpha", new Checkpoint("world", 0, 64, 0, 0, 0));
+        named.put("Beta", new Checkpoint("world", 1, 64, 0, 0, 0));
+        manager.loadData(null, Collections.singletonMap(p, named), null, null, null,
+            Collections.singletonMap(p, new HashSet<>(Arrays.asList("alpha", "Gone"))));
+
+        assertEquals(Collections.singleton("Alpha"), manager.getPlayerData(p).cleared(), "保存時の表記に揃うはず");
+        assertEquals(1, manager.getPlayerStats(p).clearedCount());
+
+        manager.renameNamedCheckpoint(p, "ALPHA", "Gamma");
+        assertEquals(Collections.singleton("Gamma"), manager.getPlayerData(p).cleared());
+        manager.removeNamedCheckpoint(p, "gamma");
+        assertTrue(manager.getPlayerData(p).cleared().isEmpty(), "CPと一緒に消えるはず");
+        manager.addNamedCheckpoint(p, "Gamma", new Checkpoint("world", 2, 64, 0, 0, 0));
+        assertFalse(manager.isCleared(p, "Gamma"));
+    }
+
+    @Test
+    @DisplayName("markCleared/unmarkClearedがイベントを発火する")
     void shouldFireCallbackOnClearedChange() {
         CheckpointManager manager = new CheckpointManager();
         AtomicInteger callCount = new AtomicInteger(0);
-        manager.setOnDataChanged(callCount::incrementAndGet);
+        manager.events().subscribe(CheckpointEvent.class, event -> callCount.incrementAndGet());
 
         UUID p = UUID.randomUUID();
         manager.addNamedCheckpoint(p, "X", new Checkpoint("world", 0, 64, 0, 0, 0));
         int before = callCount.get();
 
         manager.markCleared(p, "X");
-        assertEquals(before + 1, callCount.get(), "markClearedでコールバックが呼ばれるはず");
+        assertEquals(before + 1, callCount.get(), "markClearedでイベントが届くはず");
 
         manager.unmarkCleared(p, "X");
-        assertEquals(before + 2, callCount.get(), "unmarkClearedでコールバックが呼ばれるはず");
+        assertEquals(before + 2, callCount.get(), "unmarkClearedでイベントが届くはず");
+    }
+
+    // -----------------------------------------------------------------------
+    // Dirty player tracking tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    @DisplayName("変更されたプレイヤーのみがダーティとして報告される")
+    void shouldTrackDirtyPlayers() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        manager.addNamedCheckpoint(p1, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        manager.drainDirtyPlayers();
+
+        manager.markCleared(p1, "A");
+
+        Set<UUID> dirty = manager.drainDirtyPlayers();
+        assertEquals(Collections.singleton(p1), dirty);
+        assertFalse(dirty.contains(p2));
+        assertTrue(manager.drainDirtyPlayers().isEmpty(), "drain後は空になるはず");
+    }
+
+    @Test
+    @DisplayName("クローン記録はクローン元とクローン先の両方をダーティにする")
+    void shouldMarkBothPlayersDirtyOnClone() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID cloner = UUID.randomUUID();
+        UUID source = UUID.randomUUID();
+
+        manager.recordClone(cloner, source);
+
+        Set<UUID> dirty = manager.drainDirtyPlayers();
+        assertTrue(dirty.contains(cloner));
+        assertTrue(dirty.contains(source));
+    }
+
+    @Test
+    @DisplayName("getPlayerDataがプレイヤーの全データを返す")
+    void shouldExportPlayerData() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        Checkpoint quick = new Checkpoint("world", 1, 64, 1, 0, 0);
+        Checkpoint named = new Checkpoint("world", 2, 64, 2, 0, 0);
+        manager.setQuickCheckpoint(p, quick);
+        manager.addNamedCheckpoint(p, "Home", named);
+        manager.selectNamedCheckpoint(p, "home");
+        manager.markCleared(p, "Home");
+        manager.recordClone(p, other);
+        manager.recordClone(other, p);
+
+        PlayerData data = manager.getPlayerData(p);
+
+        assertEquals(quick, data.quick());
+        assertEquals(named, data.named().get("Home"));
+        assertEquals("Home", data.selected());
+        assertTrue(data.cleared().contains("Home"));
+        assertTrue(data.cloneHistory().containsKey(other));
+        assertEquals(1, data.clonedCount());
+        assertTrue(manager.getPlayerData(UUID.randomUUID()).isEmpty(), "未知のプレイヤーは空のはず");
+    }
+
+    @Test
+    @DisplayName("前方一致の補完候補が大文字小文字を区別せず名前順・件数上限つきで返る")
+    void shouldCompleteNamesByPrefix() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        Random random = new Random(7);
+        String[] stems = {"Home", "home2", "Hub", "Farm", "farm_old", "ネザー", "ネコ", ""};
+        for (int i = 0; i < 300; i++) {
+            String name = stems[random.nextInt(stems.length)] + Integer.toString(random.nextInt(50), 36);
+            if (random.nextBoolean()) name = name.toUpperCase(Locale.ROOT);
+            manager.addNamedCheckpoint(p, name, new Checkpoint("world", i, 64, 0, 0, 0));
+        }
+        manager.removeNamedCheckpoint(p, "home1");
+        manager.renameNamedCheckpoint(p, "hub2", "HUBX");
+
+        for (String prefix : Arrays.asList("", "h", "HO", "home", "hU", "farm_", "ネ", "ネザ", "zz", "home2z")) {
+            List<String> expected = new ArrayList<>();
+            for (String name : manager.getNamedCheckpointNames(p)) {
+                if (name.toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) expected.add(name);
+            }
+            assertEquals(expected, manager.getNamedCheckpointNamesStartingWith(p, prefix, Integer.MAX_VALUE), prefix);
+            assertEquals(expected.subList(0, Math.min(3, expected.size())),
+                manager.getNamedCheckpointNamesStartingWith(p, prefix, 3), prefix);
+        }
+        assertTrue(manager.getNamedCheckpointNamesStartingWith(UUID.randomUUID(), "h", 10).isEmpty());
+    }
+
+    // -----------------------------------------------------------------------
+    // Version tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    @DisplayName("プレイヤーのバージョンは変更のたびに増え、他人の変更や失敗した操作では変わらない")
+    void shouldBumpPlayerVersionOnEveryChange() {
+        CheckpointManager manager = new CheckpointManager(new CheckpointArena());
+        UUID p = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        long v0 = manager.getPlayerVersion(p);
+
+        manager.addNamedCheckpoint(p, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        long v1 = manager.getPlayerVersion(p);
+        assertTrue(v1 > v0);
+
+        manager.addNamedCheckpoint(other, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        assertFalse(manager.addNamedCheckpoint(p, "a", new Checkpoint("world", 1, 64, 0, 0, 0)));
+        assertEquals(RenameResult.OLD_NOT_FOUND, manager.renameNamedCheckpoint(p, "X", "Y"));
+        assertEquals(v1, manager.getPlayerVersion(p), "他人の変更・失敗した操作では変わらないはず");
+
+        manager.markCleared(p, "A");
+        long v2 = manager.getPlayerVersion(p);
+        assertTrue(v2 > v1);
+        manager.moveToArena();
+        assertEquals(v2, manager.getPlayerVersion(p), "表現が変わるだけなら変わらないはず");
+
+        manager.removeNamedCheckpoint(p, "A");
+        long v3 = manager.getPlayerVersion(p);
+        assertTrue(v3 > v2, "データが空になっても減らないはず");
+
+        manager.loadData(null, null, null, null, null, null);
+        assertTrue(manager.getPlayerVersion(p) > v3, "読み込みでも増えるはず");
+    }
+
+    // -----------------------------------------------------------------------
+    // Batch tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    @DisplayName("バッチ内の変更はコミット時にまとめて反映される")
+    void shouldCommitBatchWithSingleNotification() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID cloner = UUID.randomUUID();
+        UUID source = UUID.randomUUID();
+        List<String> events = new ArrayList<>();
+        manager.events().subscribe(CheckpointEvent.Added.class, e -> events.add("put " + e.name()));
+        manager.events().subscribe(CheckpointEvent.CloneRecorded.class,
+            e -> events.add("clone " + e.sourceClonedCount()));
+
+        boolean added = manager.batch(cm -> {
+            assertTrue(cm.addNamedCheckpoint(cloner, "Home", new Checkpoint("world", 0, 64, 0, 0, 0)));
+            assertTrue(cm.getNamedCheckpoint(cloner, "home").isPresent(), "バッチ内では自分の変更が見えるはず");
+            cm.recordClone(cloner, source);
+            assertTrue(manager.drainDirtyPlayers().isEmpty(), "コミット前はダーティにならないはず");
+            assertTrue(events.isEmpty(), "コミット前にイベントは届かないはず");
+            return true;
+        });
+
+        assertTrue(added);
+        assertEquals(Arrays.asList("put Home", "clone 1"), events);
+        assertEquals(new HashSet<>(Arrays.asList(cloner, source)), manager.drainDirtyPlayers());
+        assertTrue(manager.getPlayerData(cloner).cloneHistory().containsKey(source));
+    }
+
+    @Test
+    @DisplayName("バッチが例外で終わると変更は一切反映されない")
+    void shouldDiscardBatchOnException() {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p = UUID.randomUUID();
+        manager.addNamedCheckpoint(p, "Keep", new Checkpoint("world", 0, 64, 0, 0, 0));
+        manager.drainDirtyPlayers();
+        AtomicInteger callCount = new AtomicInteger(0);
+        manager.events().subscribe(CheckpointEvent.class, event -> callCount.incrementAndGet());
+        PlayerData before = manager.getPlayerData(p);
+
+        assertThrows(IllegalArgumentException.class, () -> manager.batch(cm -> {
+            cm.addNamedCheckpoint(p, "New", new Checkpoint("world", 1, 64, 1, 0, 0));
+            cm.removeNamedCheckpoint(p, "Keep");
+            return cm.addNamedCheckpoint(p, null, new Checkpoint("world", 2, 64, 2, 0, 0));
+        }));
+
+        assertEquals(before, manager.getPlayerData(p));
+        assertEquals(0, callCount.get());
+        assertTrue(manager.drainDirtyPlayers().isEmpty());
+
+        manager.markCleared(p, "Keep");
+        assertEquals(1, callCount.get(), "バッチ外の変更は従来どおり通知されるはず");
+    }
+
+    // -----------------------------------------------------------------------
+    // Concurrency tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    @DisplayName("複数スレッドから同時に変更しても複合操作が途中の状態を残さない")
+    void shouldKeepCompoundOperationsAtomicUnderContention() throws Exception {
+        CheckpointManager manager = new CheckpointManager();
+        int threads = 8;
+        int rounds = 2000;
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            UUID p = UUID.randomUUID();
+            players.add(p);
+            manager.addNamedCheckpoint(p, "A", new Checkpoint("world", i, 64, 0, 0, 0));
+            manager.selectNamedCheckpoint(p, "A");
+            manager.markCleared(p, "A");
+        }
+        Map<UUID, AtomicInteger> named = new HashMap<>();
+        Map<UUID, AtomicInteger> cloned = new HashMap<>();
+        for (UUID p : players) {
+            named.put(p, new AtomicInteger(1));
+            cloned.put(p, new AtomicInteger());
+        }
+
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+        List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(thread);
+                start.await();
+                for (int i = 0; i < rounds; i++) {
+                    UUID p = players.get(random.nextInt(players.size()));
+                    switch (random.nextInt(5)) {
+                        case 0:
+                            // Everyone fights over the one name that is selected and cleared
+                            if (manager.renameNamedCheckpoint(p, "A", "B") != RenameResult.SUCCESS) {
+                                manager.renameNamedCheckpoint(p, "B", "A");
+                            }
+                            break;
+                        case 1: {
+                            String name = "t" + thread + "-" + i;
+                            if (manager.addNamedCheckpoint(p, name, new Checkpoint("world", i, 64, thread, 0, 0))) {
+                                named.get(p).incrementAndGet();
+                            }
+                            if (manager.renameNamedCheckpoint(p, name, "r" + name) != RenameResult.SUCCESS) {
+                                fail("追加直後のCPはリネームできるはず");
+                            }
+                            manager.markCleared(p, "r" + name);
+                            break;
+                        }
+                        case 2: {
+                            String name = "rt" + thread + "-" + random.nextInt(i + 1);
+                            if (manager.removeNamedCheckpoint(p, name)) named.get(p).decrementAndGet();
+                            break;
+                        }
+                        case 3: {
+                            UUID source = players.get(random.nextInt(players.size()));
+                            manager.recordClone(p, source);
+                            cloned.get(source).incrementAndGet();
+                            break;
+                        }
+                        default:
+                            manager.batch(cm -> {
+                                cm.selectNamedCheckpoint(p, "A");
+                                return cm.selectNamedCheckpoint(p, "B");
+                            });
+                            break;
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (java.util.concurrent.Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        for (UUID p : players) {
+            PlayerData data = manager.getPlayerData(p);
+            Set<String> keys = data.named().keySet();
+            assertEquals(named.get(p).get(), keys.size(), "追加・削除が失われていないはず");
+            assertEquals(cloned.get(p).get(), data.clonedCount(), "クローン数が失われていないはず");
+            assertTrue(keys.contains("A") ^ keys.contains("B"), "AとBのどちらか一方だけがあるはず: " + keys);
+            String renamed = keys.contains("A") ? "A" : "B";
+            assertEquals(renamed, data.selected(), "選択はリネームに追従するはず");
+            assertTrue(keys.containsAll(data.cleared()), "クリア済みは存在するCPだけのはず");
+            assertTrue(data.cleared().contains(renamed), "クリア済みはリネームに追従するはず");
+            List<String> sorted = new ArrayList<>(keys);
+            sorted.sort(String.CASE_INSENSITIVE_ORDER);
+            assertEquals(sorted, manager.getNamedCheckpointNames(p));
+            PlayerStats stats = manager.getPlayerStats(p);
+            assertEquals(keys.size(), stats.namedCount());
+            assertEquals(data.cleared().size(), stats.clearedCount());
+        }
     }
 }
@@ -0,0 +1,114 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinarySnapshotTest {
+
+    private static final Logger LOGGER = Logger.getLogger("BinarySnapshotTest");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("バイナリスナップショットに保存したデータを読み込める")
+    void shouldRoundTripSnapshot() {
+        File file = tempDir.resolve("checkpoints.bin").toFile();
+        CheckpointManager source = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        Instant created = Instant.ofEpochMilli(1_700_000_000_000L);
+        source.setQuickCheckpoint(p1, new Checkpoint("world", 0.5, 70, -0.5, 180f, -15f, created, created, ""));
+        source.addNamedCheckpoint(p1, "ホーム", new Checkpoint("world_nether", 1, 64, 2, 0, 0, created, created, "説明"));
+        source.addNamedCheckpoint(p1, "Farm", new Checkpoint("world", 3, 64, 4, 0, 0, created, created, ""));
+        source.selectNamedCheckpoint(p1, "Farm");
+        source.markCleared(p1, "ホーム");
+        source.addNamedCheckpoint(p2, "Spawn", new Checkpoint("world_the_end", 5, 64, 6, 0, 0, created, created, ""));
+
+        assertTrue(BinarySnapshot.save(file, source, LOGGER));
+
+        CheckpointManager loaded = new CheckpointManager();
+        assertTrue(BinarySnapshot.load(file, loaded, LOGGER));
+        assertEquals(source.getPlayerData(p1), loaded.getPlayerData(p1));
+        assertEquals(source.getPlayerData(p2), loaded.getPlayerData(p2));
+    }
+
+    @Test
+    @DisplayName("メモリマップで読み込んでも同じデータになる")
+    void shouldLoadMappedSnapshot() {
+        File file = tempDir.resolve("checkpoints.bin").toFile();
+        CheckpointManager source = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        Instant t = Instant.ofEpochMilli(1_700_000_000_000L);
+        source.addNamedCheckpoint(p1, "A", new Checkpoint("world", 1, 64, 1, 0, 0, t, t, "長い説明文"));
+        source.addNamedCheckpoint(p1, "B", new Checkpoint("world_nether", 2, 64, 2, 0, 0, t, t, ""));
+        source.markCleared(p1, "B");
+        source.recordClone(p2, p1);
+        assertTrue(BinarySnapshot.save(file, source, LOGGER));
+
+        CheckpointManager mapped = new CheckpointManager();
+        assertTrue(BinarySnapshot.loadMapped(file, mapped, LOGGER));
+        CheckpointManager heap = new CheckpointManager();
+        assertTrue(BinarySnapshot.load(file, heap, LOGGER));
+        assertEquals(source.getPlayerData(p1), mapped.getPlayerData(p1));
+        assertEquals(heap.getPlayerData(p2), mapped.getPlayerData(p2));
+        assertEquals(1, mapped.getClonedCount(p1));
+
+        // Loaded data must stay mutable through the normal API
+        assertTrue(mapped.addNamedCheckpoint(p1, "C", new Checkpoint("world", 3, 64, 3, 0, 0)));
+        assertTrue(mapped.markCleared(p1, "A"));
+    }
+
+    @Test
+    @DisplayName("途中で切れたスナップショットは読み込まずに既存データを保持する")
+    void shouldRejectTruncatedSnapshot() throws IOException {
+        File file = tempDir.resolve("checkpoints.bin").toFile();
+        CheckpointManager source = new CheckpointManager();
+        source.addNamedCheckpoint(UUID.randomUUID(), "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        assertTrue(BinarySnapshot.save(file, source, LOGGER));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        CheckpointManager loaded = new CheckpointManager();
+        UUID existing = UUID.randomUUID();
+        loaded.addNamedCheckpoint(existing, "Keep", new Checkpoint("world", 0, 64, 0, 0, 0));
+        assertFalse(BinarySnapshot.load(file, loaded, LOGGER));
+        assertFalse(BinarySnapshot.loadMapped(file, loaded, LOGGER));
+        assertTrue(loaded.getNamedCheckpoint(existing, "Keep").isPresent());
+    }
+
+    @Test
+    @DisplayName("ワールド名は辞書化され、チェックポイントごとに繰り返し書き込まれない")
+    void shouldDictionaryEncodeWorldNames() {
+        String longName = "a_very_long_world_name_that_would_be_repeated_in_yaml";
+        long shortSize = snapshotSizeWithWorld("w");
+        long longSize = snapshotSizeWithWorld(longName);
+        assertEquals(longName.length() - 1, longSize - shortSize, "ワールド名が 1 回だけ書き込まれるはず");
+    }
+
+    private long snapshotSizeWithWorld(String world) {
+        File file = tempDir.resolve(world + ".bin").toFile();
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = new UUID(1, 1);
+        Instant t = Instant.ofEpochMilli(0);
+        for (int i = 0; i < 100; i++) {
+            manager.addNamedCheckpoint(p1, "cp" + i, new Checkpoint(world, i, 64, i, 0, 0, t, t, ""));
+        }
+        assertTrue(BinarySnapshot.save(file, manager, LOGGER));
+        return file.length();
+    }
+}
@@ -0,0 +1,132 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointEvent;
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.RenameResult;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger("CheckpointJournalTest");
+
+    @TempDir
+    Path tempDir;
+
+    private static Checkpoint cp(double x) {
+        return new Checkpoint("world", x, 64, 0, 0, 0);
+    }
+
+    @Test
+    @DisplayName("ジャーナルを再生すると変更がすべて復元される")
+    void shouldReplayAllMutations() {
+        File file = tempDir.resolve("checkpoints.journal").toFile();
+        CheckpointManager source = new CheckpointManager();
+        CheckpointJournal writer = new CheckpointJournal(file, Long.MAX_VALUE, LOGGER);
+        source.events().subscribe(CheckpointEvent.class, writer::append);
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+
+        source.setQuickCheckpoint(p1, cp(1));
+        source.addNamedCheckpoint(p1, "Alpha", cp(2));
+        source.addNamedCheckpoint(p1, "Beta", cp(3));
+        source.addNamedCheckpoint(p1, "Gamma", cp(4));
+        source.updateNamedCheckpoint(p1, "alpha", cp(5));
+        source.setNamedCheckpointDescription(p1, "Beta", "desc");
+        source.selectNamedCheckpoint(p1, "beta");
+        source.markCleared(p1, "Beta");
+        source.markCleared(p1, "Gamma");
+        source.unmarkCleared(p1, "Gamma");
+        assertEquals(RenameResult.SUCCESS, source.renameNamedCheckpoint(p1, "Beta", "Delta"));
+        source.removeNamedCheckpoint(p1, "Gamma");
+        source.recordClone(p2, p1);
+        source.recordClone(p2, p1);
+        source.addNamedCheckpoint(p2, "Tmp", cp(6));
+        source.removeNamedCheckpoint(p2, "Tmp");
+
+        assertTrue(writer.flush());
+
+        CheckpointManager restored = new CheckpointManager();
+        assertTrue(new CheckpointJournal(file, Long.MAX_VALUE, LOGGER).replay(restored) > 0);
+        assertEquals(source.getPlayerData(p1), restored.getPlayerData(p1));
+        assertEquals(2, restored.getClonedCount(p1));
+        assertEquals(source.getCloneTime(p2, p1).get().toEpochMilli(),
+            restored.getCloneTime(p2, p1).get().toEpochMilli());
+        assertEquals("Delta", restored.getSelectedNamedCheckpointName(p1).get());
+        assertTrue(restored.isCleared(p1, "Delta"));
+    }
+
+    @Test
+    @DisplayName("コンパクション後はスナップショットとジャーナル末尾から復元される")
+    void shouldCompactIntoSnapshot() {
+        File file = tempDir.resolve("checkpoints.journal").toFile();
+        File snapshotDir = tempDir.resolve("snapshot").toFile();
+        CheckpointManager source = new CheckpointManager();
+        CheckpointJournal journal = new CheckpointJournal(file, 1, LOGGER);
+        source.events().subscribe(CheckpointEvent.class, journal::append);
+        UUID p1 = UUID.randomUUID();
+
+        source.addNamedCheckpoint(p1, "A", cp(1));
+        source.addNamedCheckpoint(p1, "B", cp(2));
+        journal.flushOrCompact(() -> {
+            ShardedStorage.saveAll(snapshotDir, source, LOGGER);
+            return true;
+        });
+        assertFalse(file.exists(), "しきい値を超えたらジャーナルは切り詰められるはず");
+
+        source.removeNamedCheckpoint(p1, "A");
+        source.addNamedCheckpoint(p1, "C", cp(3));
+        assertTrue(journal.flush());
+        assertTrue(file.length() > 0);
+
+        CheckpointManager restored = new CheckpointManager();
+        ShardedStorage.load(snapshotDir, restored, LOGGER);
+        new CheckpointJournal(file, 1, LOGGER).replay(restored);
+        assertEquals(source.getPlayerData(p1), restored.getPlayerData(p1));
+    }
+
+    @Test
+    @DisplayName("スナップショットの書き込みに失敗したらジャーナルを残す")
+    void shouldKeepJournalWhenSnapshotFails() {
+        File file = tempDir.resolve("checkpoints.journal").toFile();
+        CheckpointManager manager = new CheckpointManager();
+        CheckpointJournal journal = new CheckpointJournal(file, 1, LOGGER);
+        manager.events().subscribe(CheckpointEvent.class, journal::append);
+        manager.setQuickCheckpoint(UUID.randomUUID(), cp(1));
+
+        assertFalse(journal.compact(() -> false));
+        assertTrue(file.length() > 0);
+    }
+
+    @Test
+    @DisplayName("末尾の壊れたレコードは無視して切り捨てる")
+    void shouldDiscardTornTail() throws IOException {
+        File file = tempDir.resolve("checkpoints.journal").toFile();
+        CheckpointManager source = new CheckpointManager();
+        CheckpointJournal journal = new CheckpointJournal(file, Long.MAX_VALUE, LOGGER);
+        source.events().subscribe(CheckpointEvent.class, journal::append);
+        UUID p1 = UUID.randomUUID();
+        source.addNamedCheckpoint(p1, "A", cp(1));
+        assertTrue(journal.flush());
+        long validLength = file.length();
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+        }
+
+        CheckpointManager restored = new CheckpointManager();
+        assertEquals(1, new CheckpointJournal(file, Long.MAX_VALUE, LOGGER).replay(restored));
+        assertTrue(restored.getNamedCheckpoint(p1, "A").isPresent());
+        assertEquals(validLength, file.length());
+    }
+}
@@ -0,0 +1,85 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LanguagePreferenceStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger("LanguagePreferenceStoreTest");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("変更はメモリにだけ記録され、保存時にまとめて languages.yml に書き込まれる")
+    void shouldBatchChangesIntoOneFileWrite() throws IOException {
+        File file = tempDir.resolve("languages.yml").toFile();
+        UUID existing = UUID.randomUUID();
+        // Format written by the previous YamlConfiguration-based implementation
+        Files.write(file.toPath(), Arrays.asList("'" + existing + "': EN"), StandardCharsets.UTF_8);
+
+        LanguagePreferenceStore store = new LanguagePreferenceStore(file, null, LOGGER);
+        AtomicInteger notifications = new AtomicInteger();
+        store.setOnChanged(notifications::incrementAndGet);
+        assertEquals("EN", store.load().get(existing));
+
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        store.set(a, "EN");
+        store.set(b, "EN");
+        store.set(b, "JP");
+        assertEquals(3, notifications.get());
+        assertTrue(store.isDirty());
+        assertEquals(1, Files.readAllLines(file.toPath()).size());
+
+        store.saveIfDirty();
+        assertFalse(store.isDirty());
+        assertEquals(3, Files.readAllLines(file.toPath()).size());
+
+        Map<UUID, String> reloaded = new LanguagePreferenceStore(file, null, LOGGER).load();
+        assertEquals(3, reloaded.size());
+        assertEquals("EN", reloaded.get(existing));
+        assertEquals("EN", reloaded.get(a));
+        assertEquals("JP", reloaded.get(b));
+    }
+
+    @Test
+    @DisplayName("SQLite バックエンドでは languages.yml を取り込み、以後はデータベースに保存する")
+    void shouldImportFileIntoBackendAndSaveThere() throws IOException {
+        File file = tempDir.resolve("languages.yml").toFile();
+        UUID imported = UUID.randomUUID();
+        Files.write(file.toPath(), Arrays.asList(imported + ": EN"), StandardCharsets.UTF_8);
+        SqliteCheckpointStore backend = new SqliteCheckpointStore(tempDir.resolve("checkpoints.db").toFile(), LOGGER);
+        try {
+            LanguagePreferenceStore store = new LanguagePreferenceStore(file, backend, LOGGER);
+            assertEquals("EN", store.load().get(imported));
+            assertTrue(store.isDirty());
+
+            UUID changed = UUID.randomUUID();
+            store.set(changed, "JP");
+            store.saveIfDirty();
+            Files.delete(file.toPath());
+
+            Map<UUID, String> stored = backend.loadLanguagePreferences();
+            assertEquals(2, stored.size());
+            assertEquals("EN", stored.get(imported));
+            assertEquals("JP", stored.get(changed));
+            assertFalse(file.exists());
+        } finally {
+            backend.close(null);
+        }
+    }
+}
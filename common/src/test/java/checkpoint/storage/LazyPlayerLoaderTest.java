@@ -0,0 +1,208 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LazyPlayerLoaderTest {
+
+    private static final Logger LOGGER = Logger.getLogger("LazyPlayerLoaderTest");
+    private static final Instant T = Instant.ofEpochMilli(1_700_000_000_000L);
+    private static final long IDLE_MILLIS = 60_000L;
+
+    /** Minimal per-player store backed by a map, counting reads. */
+    private static final class MapStore implements CheckpointStore {
+        final Map<UUID, PlayerData> stored = new HashMap<>();
+        final AtomicInteger reads = new AtomicInteger();
+        volatile boolean failing;
+        /** If set, reads wait for it. */
+        volatile CountDownLatch gate;
+
+        @Override public void loadAll(CheckpointManager manager) { throw new UnsupportedOperationException(); }
+        @Override public boolean saveChanges(CheckpointManager manager) {
+            for (UUID playerId : manager.drainDirtyPlayers()) stored.put(playerId, manager.getPlayerData(playerId));
+            return true;
+        }
+        @Override public boolean openLazy(CheckpointManager manager) { return true; }
+        @Override public Set<UUID> listPlayers() { return new HashSet<>(stored.keySet()); }
+        @Override public PlayerData load(UUID playerId) throws IOException {
+            reads.incrementAndGet();
+            CountDownLatch wait = gate;
+            if (wait != null) {
+                try {
+                    wait.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failing) throw new IOException("unreadable");
+            return stored.get(playerId);
+        }
+        @Override public void save(PlayerData data) { stored.put(data.playerId(), data); }
+        @Override public void delete(UUID playerId) { stored.remove(playerId); }
+    }
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private MapStore store;
+    private CheckpointManager manager;
+    private LazyPlayerLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        store = new MapStore();
+        manager = new CheckpointManager();
+        loader = new LazyPlayerLoader(store, manager, Runnable::run, IDLE_MILLIS, now::get, LOGGER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.shutdown();
+    }
+
+    private static Checkpoint cp(double x) {
+        return new Checkpoint("world", x, 64, 0, 0, 0, T, T, "");
+    }
+
+    private void storeNamed(UUID playerId, String name) {
+        CheckpointManager scratch = new CheckpointManager();
+        scratch.addNamedCheckpoint(playerId, name, cp(1));
+        store.stored.put(playerId, scratch.getPlayerData(playerId));
+    }
+
+    private void awaitLoaded(UUID... playerIds) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        loader.ensureLoaded(Arrays.asList(playerIds), done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("起動時には読み込まず、必要になったプレイヤーだけを一度だけ読み込む")
+    void shouldLoadPlayersOnDemandOnce() throws InterruptedException {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        storeNamed(a, "Home");
+        storeNamed(b, "Base");
+        loader.start();
+
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), loader.getKnownPlayers());
+        assertFalse(loader.isLoaded(a));
+        assertTrue(manager.getNamedCheckpointNames(a).isEmpty());
+
+        awaitLoaded(a);
+        assertEquals(Arrays.asList("Home"), manager.getNamedCheckpointNames(a));
+        assertFalse(loader.isLoaded(b));
+
+        awaitLoaded(a);
+        assertTrue(loader.loadBlocking(a, 1000L));
+        assertEquals(1, store.reads.get());
+    }
+
+    @Test
+    @DisplayName("放置されたオフラインのプレイヤーだけを解放し、再度読み込める")
+    void shouldEvictOnlyIdleOfflineCleanPlayers() throws InterruptedException, IOException {
+        UUID online = UUID.randomUUID();
+        UUID idle = UUID.randomUUID();
+        UUID dirty = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        for (UUID id : Arrays.asList(online, idle, dirty, recent)) storeNamed(id, "Home");
+        loader.start();
+        awaitLoaded(online, idle, dirty, recent);
+        loader.pin(online);
+
+        now.addAndGet(IDLE_MILLIS + 1);
+        manager.addNamedCheckpoint(dirty, "New", cp(2));
+        loader.touch(recent);
+
+        assertEquals(1, loader.evictIdle());
+        assertFalse(loader.isLoaded(idle));
+        assertTrue(manager.getNamedCheckpointNames(idle).isEmpty());
+        assertTrue(loader.isLoaded(online));
+        assertTrue(loader.isLoaded(dirty));
+        assertTrue(loader.isLoaded(recent));
+        assertTrue(loader.getKnownPlayers().contains(idle));
+
+        // Once saved, the dirty player becomes evictable like any other
+        store.saveChanges(manager);
+        assertEquals(1, loader.evictIdle());
+        assertEquals(Arrays.asList("Home", "New"),
+            store.load(dirty).named().keySet().stream().sorted().collect(Collectors.toList()));
+
+        awaitLoaded(idle);
+        assertEquals(Arrays.asList("Home"), manager.getNamedCheckpointNames(idle));
+    }
+
+    @Test
+    @DisplayName("読み込みに失敗したプレイヤーは保存せず、次のアクセスで読み込み直して変更を合わせる")
+    void shouldHoldPlayerWhoseLoadFailed() throws InterruptedException, IOException {
+        UUID playerId = UUID.randomUUID();
+        storeNamed(playerId, "Home");
+        loader.start();
+
+        store.failing = true;
+        assertFalse(loader.loadBlocking(playerId, 1000L));
+        assertFalse(loader.isLoaded(playerId));
+
+        manager.addNamedCheckpoint(playerId, "New", cp(2));
+        store.saveChanges(manager);
+        assertEquals(Arrays.asList("Home"), new ArrayList<>(store.stored.get(playerId).named().keySet()));
+        assertTrue(manager.isPlayerDirty(playerId));
+
+        store.failing = false;
+        awaitLoaded(playerId);
+        assertTrue(loader.isLoaded(playerId));
+        assertEquals(Arrays.asList("Home", "New"), manager.getNamedCheckpointNames(playerId));
+
+        store.saveChanges(manager);
+        assertEquals(Arrays.asList("Home", "New"),
+            store.load(playerId).named().keySet().stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("ログイン時の読み込みが間に合わなくても、それまでの変更は読み込んだデータと合わせて残る")
+    void shouldMergeChangesMadeBeforeLateLoad() throws InterruptedException {
+        UUID playerId = UUID.randomUUID();
+        storeNamed(playerId, "Home");
+        loader.start();
+        AtomicInteger changed = new AtomicInteger();
+        loader.setOnChanged(changed::incrementAndGet);
+
+        store.gate = new CountDownLatch(1);
+        assertFalse(loader.loadBlocking(playerId, 10L));
+        manager.setQuickCheckpoint(playerId, cp(5));
+        manager.addNamedCheckpoint(playerId, "home", cp(6));
+        manager.addNamedCheckpoint(playerId, "Spawn", cp(7));
+        store.saveChanges(manager);
+        assertEquals(1, store.stored.get(playerId).named().size());
+
+        store.gate.countDown();
+        awaitLoaded(playerId);
+        assertEquals(1, changed.get());
+        assertEquals(Arrays.asList("home", "Spawn"), manager.getNamedCheckpointNames(playerId));
+        assertEquals(6.0, manager.getNamedCheckpoint(playerId, "Home").orElseThrow(AssertionError::new).x());
+        assertEquals(5.0, manager.getQuickCheckpoint(playerId).orElseThrow(AssertionError::new).x());
+
+        store.saveChanges(manager);
+        assertEquals(2, store.stored.get(playerId).named().size());
+    }
+}
@@ -0,0 +1,118 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardedStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger("ShardedStorageTest");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("シャードに保存したデータを読み込める")
+    void shouldRoundTripPlayerShards() {
+        File dataDir = tempDir.toFile();
+        CheckpointManager source = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        Instant created = Instant.ofEpochMilli(1_700_000_000_000L);
+        Checkpoint home = new Checkpoint("world_nether", 1.5, 64, -3.25, 90f, 10f, created, created, "base");
+        source.setQuickCheckpoint(p1, new Checkpoint("world", 0, 70, 0, 0, 0));
+        source.addNamedCheckpoint(p1, "Home", home);
+        source.selectNamedCheckpoint(p1, "Home");
+        source.markCleared(p1, "Home");
+        source.recordClone(p2, p1);
+
+        ShardedStorage.saveDirty(dataDir, source, LOGGER);
+
+        assertTrue(ShardedStorage.shardFile(dataDir, p1).isFile());
+        assertTrue(ShardedStorage.shardFile(dataDir, p2).isFile());
+
+        CheckpointManager loaded = new CheckpointManager();
+        ShardedStorage.load(dataDir, loaded, LOGGER);
+        assertEquals(source.getPlayerData(p1), loaded.getPlayerData(p1));
+        assertEquals(source.getCloneTime(p2, p1).get().toEpochMilli(),
+            loaded.getCloneTime(p2, p1).get().toEpochMilli(), "クローン時刻はミリ秒単位で保存されるはず");
+        assertEquals(created, loaded.getNamedCheckpoint(p1, "Home").get().createdAt());
+    }
+
+    @Test
+    @DisplayName("変更されたプレイヤーのシャードだけを書き換え、空になったシャードは削除する")
+    void shouldRewriteOnlyDirtyShards() {
+        File dataDir = tempDir.toFile();
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        manager.addNamedCheckpoint(p1, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        manager.addNamedCheckpoint(p2, "B", new Checkpoint("world", 0, 64, 0, 0, 0));
+        ShardedStorage.saveDirty(dataDir, manager, LOGGER);
+        File p2Shard = ShardedStorage.shardFile(dataDir, p2);
+        assertTrue(p2Shard.setLastModified(0L));
+
+        manager.removeNamedCheckpoint(p1, "A");
+        ShardedStorage.saveDirty(dataDir, manager, LOGGER);
+
+        assertFalse(ShardedStorage.shardFile(dataDir, p1).exists(), "空になったシャードは削除されるはず");
+        assertEquals(0L, p2Shard.lastModified(), "変更のないシャードは書き換えられないはず");
+    }
+
+    @Test
+    @DisplayName("読めないシャードは .broken として残し、他のプレイヤーは読み込む")
+    void shouldKeepUnreadableShardAside() throws IOException {
+        File dataDir = tempDir.toFile();
+        CheckpointManager manager = new CheckpointManager();
+        UUID good = UUID.randomUUID();
+        UUID bad = UUID.randomUUID();
+        manager.addNamedCheckpoint(good, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        manager.addNamedCheckpoint(bad, "B", new Checkpoint("world", 0, 64, 0, 0, 0));
+        ShardedStorage.saveDirty(dataDir, manager, LOGGER);
+        File badShard = ShardedStorage.shardFile(dataDir, bad);
+        byte[] garbage = {1, 2, 3};
+        Files.write(badShard.toPath(), garbage);
+
+        CheckpointManager loaded = new CheckpointManager();
+        ShardedStorage.load(dataDir, loaded, LOGGER);
+
+        assertEquals(manager.getPlayerData(good), loaded.getPlayerData(good));
+        assertTrue(loaded.getPlayerData(bad).isEmpty());
+        File broken = new File(badShard.getParentFile(), badShard.getName() + BinaryCheckpointStore.BROKEN_SUFFIX);
+        assertArrayEquals(garbage, Files.readAllBytes(broken.toPath()));
+        assertEquals(2, ShardedStorage.listShardFiles(dataDir).size(), "退避したファイルはシャードとして数えないはず");
+    }
+
+    @Test
+    @DisplayName("プレイヤーのいない旧ファイルは移行済みにし、既存のシャードは残す")
+    void shouldMarkEmptyLegacyFileMigrated() {
+        File dataDir = new File(tempDir.toFile(), "data");
+        File yamlFile = new File(tempDir.toFile(), "checkpoints.yml");
+        File binaryFile = new File(tempDir.toFile(), "checkpoints.bin");
+        CheckpointManager existing = new CheckpointManager();
+        UUID playerId = UUID.randomUUID();
+        existing.addNamedCheckpoint(playerId, "A", new Checkpoint("world", 0, 64, 0, 0, 0));
+        ShardedStorage.saveDirty(dataDir, existing, LOGGER);
+        assertTrue(BinarySnapshot.save(binaryFile, new CheckpointManager(), LOGGER));
+
+        CheckpointManager manager = new CheckpointManager();
+        assertFalse(ShardMigrator.migrateIfNeeded(yamlFile, binaryFile, dataDir, manager, LOGGER));
+
+        assertFalse(binaryFile.exists());
+        assertTrue(new File(tempDir.toFile(), "checkpoints.bin" + ShardMigrator.MIGRATED_SUFFIX).isFile());
+        assertTrue(ShardedStorage.shardFile(dataDir, playerId).isFile());
+        ShardedStorage.load(dataDir, manager, LOGGER);
+        assertEquals(existing.getPlayerData(playerId), manager.getPlayerData(playerId));
+    }
+}
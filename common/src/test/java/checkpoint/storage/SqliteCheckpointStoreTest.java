@@ -0,0 +1,239 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import checkpoint.model.PlayerData;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SqliteCheckpointStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SqliteCheckpointStoreTest");
+    private static final Instant T = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    private File dbFile;
+    private SqliteCheckpointStore store;
+
+    @BeforeEach
+    void setUp() {
+        dbFile = tempDir.resolve("checkpoints.db").toFile();
+        store = new SqliteCheckpointStore(dbFile, LOGGER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close(null);
+    }
+
+    private static Checkpoint cp(String world, double x) {
+        return new Checkpoint(world, x, 64, 0, 0, 0, T, T, "");
+    }
+
+    @Test
+    @DisplayName("変更されたプレイヤーだけを保存し、別の接続から全件読み込める")
+    void shouldSaveDirtyPlayersAndLoadAll() {
+        CheckpointManager source = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        source.setQuickCheckpoint(p1, cp("world", 0));
+        source.addNamedCheckpoint(p1, "Home", cp("world", 1));
+        source.addNamedCheckpoint(p1, "Mine", cp("world_nether", 2));
+        source.selectNamedCheckpoint(p1, "Mine");
+        source.markCleared(p1, "Home");
+        source.recordClone(p2, p1);
+        store.saveChanges(source);
+
+        source.removeNamedCheckpoint(p1, "Mine");
+        store.saveChanges(source);
+        assertTrue(source.drainDirtyPlayers().isEmpty());
+
+        SqliteCheckpointStore reopened = new SqliteCheckpointStore(dbFile, LOGGER);
+        try {
+            CheckpointManager loaded = new CheckpointManager();
+            reopened.loadAll(loaded);
+            assertEquals(source.getPlayerData(p1), loaded.getPlayerData(p1));
+            assertFalse(loaded.getSelectedNamedCheckpointName(p1).isPresent());
+            assertEquals(1, loaded.getClonedCount(p1));
+            assertEquals(source.getCloneTime(p2, p1).get().toEpochMilli(),
+                loaded.getCloneTime(p2, p1).get().toEpochMilli());
+        } finally {
+            reopened.close(null);
+        }
+    }
+
+    @Test
+    @DisplayName("プレイヤー単位で読み込み・保存・削除できる")
+    void shouldSupportPerPlayerOperations() throws IOException {
+        UUID p1 = UUID.randomUUID();
+        assertNull(store.load(p1));
+
+        CheckpointManager manager = new CheckpointManager();
+        manager.addNamedCheckpoint(p1, "A", cp("world", 1));
+        manager.markCleared(p1, "A");
+        PlayerData data = manager.getPlayerData(p1);
+        store.save(data);
+        assertEquals(data, store.load(p1));
+        assertEquals(1, store.load(p1).cleared().size());
+
+        store.delete(p1);
+        assertNull(store.load(p1));
+    }
+
+    @Test
+    @DisplayName("全件読み込みに失敗したら保存せず、開けないDBでは遅延読み込みを断る")
+    void shouldNotSaveAfterFailedLoad() throws Exception {
+        UUID p1 = UUID.randomUUID();
+        CheckpointManager source = new CheckpointManager();
+        source.addNamedCheckpoint(p1, "A", cp("world", 1));
+        source.addNamedCheckpoint(p1, "B", cp("world", 2));
+        store.save(source.getPlayerData(p1));
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+             Statement st = c.createStatement()) {
+            st.execute("INSERT INTO players (uuid, selected, cloned_count) VALUES ('not-a-uuid', NULL, 0)");
+        }
+
+        SqliteCheckpointStore reopened = new SqliteCheckpointStore(dbFile, LOGGER);
+        try {
+            CheckpointManager loaded = new CheckpointManager();
+            reopened.loadAll(loaded);
+            assertTrue(loaded.getAllPlayerUuids().isEmpty());
+            loaded.addNamedCheckpoint(p1, "C", cp("world", 3));
+            reopened.saveChanges(loaded);
+            assertEquals(source.getPlayerData(p1), reopened.load(p1), "読めなかった行は上書きされないはず");
+        } finally {
+            reopened.close(null);
+        }
+
+        File directory = tempDir.resolve("directory.db").toFile();
+        assertTrue(directory.mkdir());
+        SqliteCheckpointStore unopenable = new SqliteCheckpointStore(directory, LOGGER);
+        assertFalse(unopenable.openLazy(new CheckpointManager()));
+        unopenable.close(null);
+    }
+
+    private String description(String playerId, String name) throws Exception {
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+             PreparedStatement ps = c.prepareStatement(
+                 "SELECT description FROM named_checkpoints WHERE uuid = ? AND name = ?")) {
+            ps.setString(1, playerId);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("読み込み後の保存では変更のあった行だけを書き換える")
+    void shouldWriteOnlyChangedRows() throws Exception {
+        UUID p1 = UUID.randomUUID();
+        CheckpointManager manager = new CheckpointManager();
+        store.loadAll(manager);
+        manager.addNamedCheckpoint(p1, "A", cp("world", 1));
+        manager.addNamedCheckpoint(p1, "B", cp("world", 2));
+        assertTrue(store.saveChanges(manager));
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+             Statement st = c.createStatement()) {
+            st.execute("UPDATE named_checkpoints SET description = 'untouched' WHERE name = 'B'");
+        }
+
+        manager.updateNamedCheckpoint(p1, "A", cp("world", 5));
+        assertTrue(store.saveChanges(manager));
+
+        assertEquals("untouched", description(p1.toString(), "B"), "変更のない行は書き換えないはず");
+        assertEquals(5.0, store.load(p1).named().get("A").x());
+    }
+
+    @Test
+    @DisplayName("行単位の保存を重ねても、読み直した内容はメモリ上と一致する")
+    void shouldMatchManagerAfterRowLevelSaves() throws IOException {
+        CheckpointManager manager = new CheckpointManager();
+        store.loadAll(manager);
+        Random random = new Random(3);
+        List<UUID> ids = Arrays.asList(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        for (int step = 0; step < 1000; step++) {
+            UUID id = ids.get(random.nextInt(ids.size()));
+            String name = "cp" + random.nextInt(5);
+            Checkpoint cp = cp("world", random.nextInt(100));
+            switch (random.nextInt(9)) {
+                case 0: manager.removeNamedCheckpoint(id, name); break;
+                case 1: manager.renameNamedCheckpoint(id, name, (random.nextBoolean() ? "cp" : "CP") + random.nextInt(5)); break;
+                case 2: manager.updateNamedCheckpoint(id, name, cp); break;
+                case 3: manager.selectNamedCheckpoint(id, name); break;
+                case 4: if (random.nextBoolean()) manager.markCleared(id, name); else manager.unmarkCleared(id, name); break;
+                case 5: manager.recordClone(id, ids.get(random.nextInt(ids.size()))); break;
+                case 6: if (random.nextBoolean()) manager.setQuickCheckpoint(id, cp); else manager.clearQuickCheckpoint(id); break;
+                case 7: manager.clearSelectedNamedCheckpoint(id); break;
+                default: manager.addNamedCheckpoint(id, name, cp); break;
+            }
+            if (step % 3 == 0) assertStored(manager, ids);
+        }
+        assertStored(manager, ids);
+    }
+
+    /** Saves, then compares what the database holds for each player with the manager. */
+    private void assertStored(CheckpointManager manager, List<UUID> ids) throws IOException {
+        assertTrue(store.saveChanges(manager));
+        for (UUID id : ids) {
+            PlayerData expected = manager.getPlayerData(id);
+            PlayerData actual = store.load(id);
+            if (actual == null) actual = PlayerData.empty(id);
+            assertEquals(expected.quick(), actual.quick());
+            assertEquals(expected.named(), actual.named());
+            assertEquals(expected.selected(), actual.selected());
+            assertEquals(expected.cleared(), actual.cleared());
+            assertEquals(expected.clonedCount(), actual.clonedCount());
+            // Clone times are stored in milliseconds
+            assertEquals(expected.cloneHistory().keySet(), actual.cloneHistory().keySet());
+            for (UUID source : expected.cloneHistory().keySet()) {
+                assertEquals(expected.cloneHistory().get(source).toEpochMilli(),
+                    actual.cloneHistory().get(source).toEpochMilli());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("保留中のプレイヤーは保存せず、読み込みで合わせた後にまとめて書き込む")
+    void shouldNotWriteHeldPlayerUntilMerged() throws IOException {
+        UUID p1 = UUID.randomUUID();
+        CheckpointManager scratch = new CheckpointManager();
+        scratch.addNamedCheckpoint(p1, "Home", cp("world", 1));
+        store.save(scratch.getPlayerData(p1));
+
+        CheckpointManager manager = new CheckpointManager();
+        assertTrue(store.openLazy(manager));
+        manager.holdPlayer(p1);
+        manager.addNamedCheckpoint(p1, "home", cp("world", 2));
+        assertTrue(store.saveChanges(manager));
+        assertEquals(scratch.getPlayerData(p1), store.load(p1), "保留中の変更は書き込まないはず");
+
+        assertTrue(manager.mergeLoadedPlayerData(store.load(p1)));
+        manager.releasePlayer(p1);
+        assertTrue(store.saveChanges(manager));
+        assertEquals(manager.getPlayerData(p1), store.load(p1));
+        assertEquals(Arrays.asList("home"), new ArrayList<>(store.load(p1).named().keySet()));
+    }
+}
@@ -0,0 +1,119 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class WriteBehindSaverTest {
+
+    private static final Logger LOGGER = Logger.getLogger("WriteBehindSaverTest");
+
+    @Test
+    @DisplayName("連続した変更は1回の書き込みにまとめられる")
+    void shouldCoalesceBurstIntoSingleSave() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        CountDownLatch saved = new CountDownLatch(1);
+        WriteBehindSaver saver = new WriteBehindSaver(() -> {
+            saves.incrementAndGet();
+            saved.countDown();
+            return true;
+        }, 200L, LOGGER);
+
+        for (int i = 0; i < 100; i++) {
+            saver.markDirty();
+        }
+
+        assertTrue(saved.await(5, TimeUnit.SECONDS), "バックグラウンドで保存されるはず");
+        Thread.sleep(300L);
+        assertEquals(1, saves.get(), "バースト中の変更は1回の保存にまとめられるべき");
+        assertFalse(saver.isDirty(), "保存後はダーティではないはず");
+        saver.shutdown();
+    }
+
+    @Test
+    @DisplayName("シャットダウン時に未保存の変更を同期的にフラッシュする")
+    void shouldFlushPendingChangesOnShutdown() {
+        AtomicInteger saves = new AtomicInteger();
+        WriteBehindSaver saver = new WriteBehindSaver(() -> saves.incrementAndGet() > 0, 60_000L, LOGGER);
+
+        saver.markDirty();
+        saver.shutdown();
+
+        assertEquals(1, saves.get(), "シャットダウン時に1回だけ保存されるべき");
+        assertFalse(saver.isDirty());
+    }
+
+    @Test
+    @DisplayName("変更がなければ保存しない")
+    void shouldNotSaveWhenClean() {
+        AtomicInteger saves = new AtomicInteger();
+        WriteBehindSaver saver = new WriteBehindSaver(() -> saves.incrementAndGet() > 0, 10L, LOGGER);
+
+        saver.flush();
+        saver.shutdown();
+
+        assertEquals(0, saves.get(), "ダーティでなければ保存は実行されないはず");
+    }
+
+    @Test
+    @DisplayName("保存に失敗した場合はダーティ状態を維持する")
+    void shouldStayDirtyWhenSaveFails() {
+        WriteBehindSaver saver = new WriteBehindSaver(() -> {
+            throw new IllegalStateException("disk full");
+        }, 60_000L, LOGGER);
+
+        saver.markDirty();
+        assertFalse(saver.flush());
+
+        assertTrue(saver.isDirty(), "失敗した保存は次回再試行されるべき");
+        saver.shutdown();
+    }
+
+    @Test
+    @DisplayName("失敗を報告した保存は新しい変更がなくても再試行され、終了時にも書き込む")
+    void shouldRetryReportedFailureWithoutNewChanges() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch retried = new CountDownLatch(2);
+        WriteBehindSaver saver = new WriteBehindSaver(() -> {
+            retried.countDown();
+            return attempts.incrementAndGet() > 1;
+        }, 10L, LOGGER);
+
+        saver.markDirty();
+        assertTrue(retried.await(5, TimeUnit.SECONDS), "失敗した保存は自動で再試行されるはず");
+        Thread.sleep(100L);
+        assertFalse(saver.isDirty(), "再試行が成功したらダーティではないはず");
+        assertEquals(2, attempts.get());
+        saver.shutdown();
+
+        AtomicInteger finalSaves = new AtomicInteger();
+        WriteBehindSaver failing = new WriteBehindSaver(() -> finalSaves.incrementAndGet() > 1, 60_000L, LOGGER);
+        failing.markDirty();
+        assertFalse(failing.flush());
+        failing.shutdown();
+        assertEquals(2, finalSaves.get(), "失敗したままならシャットダウン時にもう一度保存するはず");
+    }
+
+    @Test
+    @DisplayName("定期タスクは保存とは別に実行され、データをダーティにしない")
+    void shouldRunPeriodicTaskWithoutMarkingDirty() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        CountDownLatch ran = new CountDownLatch(2);
+        WriteBehindSaver saver = new WriteBehindSaver(() -> saves.incrementAndGet() > 0, 10L, LOGGER);
+
+        saver.schedulePeriodic(() -> {
+            ran.countDown();
+            throw new IllegalStateException("broken task");
+        }, 20L);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS), "例外を投げても次の周期で再実行されるはず");
+        assertFalse(saver.isDirty(), "定期タスクはデータをダーティにしないはず");
+        saver.shutdown();
+        assertEquals(0, saves.get(), "変更がなければ保存は実行されないはず");
+    }
+}
@@ -0,0 +1,99 @@
+package checkpoint.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import checkpoint.manager.CheckpointManager;
+import checkpoint.model.Checkpoint;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class YamlSnapshotWriterTest {
+
+    private static final Instant T = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    private Map<?, ?> writeAndParse(CheckpointManager manager) throws IOException {
+        File file = tempDir.resolve("checkpoints.yml").toFile();
+        YamlSnapshotWriter.write(file, manager);
+        assertFalse(new File(file.getParentFile(), "checkpoints.yml.tmp").exists());
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return (Map<?, ?>) new Yaml().load(reader);
+        }
+    }
+
+    @Test
+    @DisplayName("すべてのセクションを YAML として読み戻せる形で書き出す")
+    void shouldWriteAllSectionsAsParsableYaml() throws IOException {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        manager.setQuickCheckpoint(p1, new Checkpoint("world", 30_000_000.0, 64, -0.00001, 90f, -12.5f, T, T, ""));
+        manager.addNamedCheckpoint(p1, "Home", new Checkpoint("world_nether", 1.5, 70, 2, 0, 0, T, T.plusMillis(5), "入口"));
+        manager.selectNamedCheckpoint(p1, "Home");
+        manager.markCleared(p1, "Home");
+        manager.recordClone(p2, p1);
+
+        Map<?, ?> root = writeAndParse(manager);
+
+        Map<?, ?> quick = (Map<?, ?>) ((Map<?, ?>) root.get("quick")).get(p1.toString());
+        assertEquals("world", quick.get("world"));
+        assertEquals(30_000_000.0, ((Number) quick.get("x")).doubleValue());
+        assertEquals(-0.00001, ((Number) quick.get("z")).doubleValue());
+        assertEquals(-12.5, ((Number) quick.get("pitch")).doubleValue());
+        assertEquals(T.toEpochMilli(), ((Number) quick.get("createdAt")).longValue());
+
+        List<?> named = (List<?>) ((Map<?, ?>) root.get("named")).get(p1.toString());
+        Map<?, ?> home = (Map<?, ?>) named.get(0);
+        assertEquals("Home", home.get("name"));
+        assertEquals("world_nether", home.get("world"));
+        assertEquals("入口", home.get("description"));
+        assertEquals(T.toEpochMilli() + 5, ((Number) home.get("updatedAt")).longValue());
+
+        assertEquals("Home", ((Map<?, ?>) root.get("selected")).get(p1.toString()));
+        assertEquals(Arrays.asList("Home"), ((Map<?, ?>) root.get("cleared")).get(p1.toString()));
+        assertEquals(1, ((Map<?, ?>) root.get("clonedCounts")).get(p1.toString()));
+        Map<?, ?> clone = (Map<?, ?>) ((List<?>) ((Map<?, ?>) root.get("cloneHistory")).get(p2.toString())).get(0);
+        assertEquals(p1.toString(), clone.get("source"));
+    }
+
+    @Test
+    @DisplayName("引用符・改行・絵文字などを含む名前や説明もそのまま読み戻せる")
+    void shouldEscapeSpecialCharacters() throws IOException {
+        CheckpointManager manager = new CheckpointManager();
+        UUID p1 = UUID.randomUUID();
+        String description = "say \"hi\"\\ \n\ttab: - # {x} \u0007 😀";
+        manager.addNamedCheckpoint(p1, "yes", new Checkpoint("w: 1", 0, 0, 0, 0, 0, T, T, description));
+
+        Map<?, ?> root = writeAndParse(manager);
+
+        Map<?, ?> cp = (Map<?, ?>) ((List<?>) ((Map<?, ?>) root.get("named")).get(p1.toString())).get(0);
+        assertEquals("yes", cp.get("name"));
+        assertEquals("w: 1", cp.get("world"));
+        assertEquals(description, cp.get("description"));
+        assertNull(root.get("quick"));
+    }
+
+    @Test
+    @DisplayName("座標は指数表記を使わずに書き出す")
+    void shouldFormatNumbersWithoutExponent() {
+        assertEquals("1.5", YamlSnapshotWriter.number(1.5));
+        assertEquals("30000000", YamlSnapshotWriter.number(3.0E7));
+        assertEquals("0.00001", YamlSnapshotWriter.number(1.0E-5));
+        assertEquals("-12345678.25", YamlSnapshotWriter.number(-12345678.25));
+    }
+}